@@ -0,0 +1,111 @@
+package com.amica.billing.benchmark;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.db.CachingPersistence;
+import com.amica.billing.generate.DataGenerator;
+
+/**
+ * Synthetic data sets for the benchmarks, built by the
+ * {@link DataGenerator}. We ask for one customer for every hundred
+ * invoices (at least 100), and spread invoices over the two years before
+ * {@link #AS_OF}. The random seed is fixed, so that runs against
+ * different builds see the same data.
+ * Data sets are cached by size, so that benchmarks that share a fork
+ * don't pay to build them more than once.
+ *
+ * @author Will Provost
+ */
+public class BenchmarkData {
+
+	public static final LocalDate AS_OF = LocalDate.of(2022, 1, 8);
+	public static final long SEED = 8675309;
+	public static final int INVOICES_PER_CUSTOMER = 100;
+	public static final int MIN_CUSTOMERS = 100;
+
+	private static Map<Integer,BenchmarkData> cache = new HashMap<>();
+
+	/**
+	 * Returns the data set of the given size, building it if necessary.
+	 */
+	public static synchronized BenchmarkData forSize(int invoiceCount) {
+		return cache.computeIfAbsent(invoiceCount, BenchmarkData::new);
+	}
+
+	/**
+	 * Persistence service that "reads" the synthetic data and discards
+	 * writes, so that {@link CachingPersistence#load load} times reflect
+	 * only the work of building the caches.
+	 */
+	public static class InMemoryPersistence extends CachingPersistence {
+
+		private BenchmarkData data;
+
+		public InMemoryPersistence(BenchmarkData data) {
+			this.data = data;
+		}
+
+		protected Stream<Customer> readCustomers() {
+			return data.getCustomers().stream();
+		}
+
+		protected Stream<Invoice> readInvoices() {
+			return data.getInvoices().stream();
+		}
+
+		protected void writeCustomer(Customer customer) {
+		}
+
+		protected void writeInvoice(Invoice invoice) {
+		}
+	}
+
+	private List<Customer> customers;
+	private List<Invoice> invoices;
+
+	private BenchmarkData(int invoiceCount) {
+		DataGenerator generator = new DataGenerator();
+		generator.setInvoiceCount(invoiceCount);
+		generator.setCustomerCount(Math.max(MIN_CUSTOMERS,
+				invoiceCount / INVOICES_PER_CUSTOMER));
+		generator.setStartDate(AS_OF.minusYears(2));
+		generator.setEndDate(AS_OF);
+		generator.setSeed(SEED);
+
+		customers = generator.generateCustomers();
+		invoices = generator.generateInvoices(customers).toList();
+	}
+
+	public List<Customer> getCustomers() {
+		return customers;
+	}
+
+	public List<Invoice> getInvoices() {
+		return invoices;
+	}
+
+	/**
+	 * Returns a fresh map of customers by name, as a parser would need it.
+	 */
+	public Map<String,Customer> getCustomerMap() {
+		return customers.stream().collect(Collectors.toMap
+				(Customer::getName, Function.identity()));
+	}
+
+	/**
+	 * Returns a persistence service that's already loaded with this data.
+	 */
+	public CachingPersistence createPersistence() {
+		CachingPersistence persistence = new InMemoryPersistence(this);
+		persistence.load();
+		return persistence;
+	}
+}
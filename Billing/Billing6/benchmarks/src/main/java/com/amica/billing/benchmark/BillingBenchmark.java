@@ -0,0 +1,129 @@
+package com.amica.billing.benchmark;
+
+import static com.amica.billing.benchmark.BenchmarkData.AS_OF;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amica.billing.Billing;
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.InvoiceQuery;
+import com.amica.billing.Terms;
+
+/**
+ * Times for each of the query methods on {@link Billing}.
+ * Streams are consumed in full, so that we measure the whole query.
+ * The {@link Billing} object is shared over all iterations, as it is
+ * in the application, so any indexes that it builds on first use
+ * are built during warmup.
+ *
+ * @author Will Provost
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class BillingBenchmark {
+
+	@Param({ "10000", "1000000", "10000000" })
+	private int invoiceCount;
+
+	private Billing billing;
+	private Customer customer;
+	private InvoiceQuery query;
+
+	@Setup
+	public void setUp() {
+		BenchmarkData data = BenchmarkData.forSize(invoiceCount);
+		billing = new Billing(data.createPersistence());
+		customer = data.getCustomers().get(0);
+		query = new InvoiceQuery()
+				.withTerms(Terms.CREDIT_30, Terms.CREDIT_45)
+				.issuedBetween(AS_OF.minusMonths(3), AS_OF)
+				.unpaid()
+				.orderByDescending(InvoiceQuery.Order.AMOUNT)
+				.limit(100);
+	}
+
+	@Benchmark
+	public void getInvoicesOrderedByNumber(Blackhole blackhole) {
+		billing.getInvoicesOrderedByNumber().forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void getInvoicesOrderedByDate(Blackhole blackhole) {
+		billing.getInvoicesOrderedByDate().forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void getInvoicesForCustomer(Blackhole blackhole) {
+		billing.getInvoicesForCustomer(customer).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public Map<Customer,List<Invoice>> getInvoicesGroupedByCustomer() {
+		return billing.getInvoicesGroupedByCustomer();
+	}
+
+	@Benchmark
+	public void getOverdueInvoices(Blackhole blackhole) {
+		billing.getOverdueInvoices(AS_OF).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public double getVolumeForCustomer() {
+		return billing.getVolumeForCustomer(customer);
+	}
+
+	@Benchmark
+	public Map<Customer,Double> getCustomersAndVolume() {
+		return billing.getCustomersAndVolume();
+	}
+
+	@Benchmark
+	public void getCustomersAndVolumeStream(Blackhole blackhole) {
+		billing.getCustomersAndVolumeStream().forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void getTopCustomersByVolume(Blackhole blackhole) {
+		billing.getTopCustomersByVolume(10).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public Map<Customer,Billing.CustomerAging> getReceivablesAging() {
+		return billing.getReceivablesAging(AS_OF);
+	}
+
+	@Benchmark
+	public void findInvoices(Blackhole blackhole) {
+		billing.findInvoices(query).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public double getAmountIssued() {
+		return billing.getAmountIssued(AS_OF.minusYears(1), AS_OF);
+	}
+
+	@Benchmark
+	public double getAmountPaid() {
+		return billing.getAmountPaid(AS_OF.minusYears(1), AS_OF);
+	}
+}
@@ -0,0 +1,107 @@
+package com.amica.billing.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.parse.CSVParser;
+import com.amica.billing.parse.FlatParser;
+import com.amica.billing.parse.Parser;
+import com.amica.billing.parse.QuotedCSVParser;
+
+/**
+ * Parse and produce throughput for each of the parsers, for customers
+ * and invoices. Text lines are produced once per trial and held in
+ * memory, so that we measure parsing and formatting, not I/O.
+ * The flat format only has room for four-digit invoice numbers,
+ * so for that format we number invoices modulo 10,000.
+ *
+ * @author Will Provost
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class ParserBenchmark {
+
+	public static final int FLAT_INVOICE_NUMBERS = 10000;
+
+	@Param({ "10000", "1000000", "10000000" })
+	private int invoiceCount;
+
+	@Param({ "csv", "quoted", "flat" })
+	private String format;
+
+	private Parser parser;
+	private List<Customer> customers;
+	private List<Invoice> invoices;
+	private Map<String,Customer> customerMap;
+	private List<String> customerLines;
+	private List<String> invoiceLines;
+
+	@Setup
+	public void setUp() {
+		BenchmarkData data = BenchmarkData.forSize(invoiceCount);
+		customers = data.getCustomers();
+		invoices = data.getInvoices();
+		customerMap = data.getCustomerMap();
+
+		switch (format) {
+		case "quoted":
+			parser = new QuotedCSVParser();
+			break;
+		case "flat":
+			parser = new FlatParser();
+			invoices = invoices.stream()
+				.map(invoice -> new Invoice
+						(invoice.getNumber() % FLAT_INVOICE_NUMBERS,
+						invoice.getCustomer(), invoice.getAmount(),
+						invoice.getIssueDay(), invoice.getPaidDay()))
+				.toList();
+			break;
+		default:
+			parser = new CSVParser();
+		}
+
+		customerLines = parser.produceCustomers(customers.stream()).toList();
+		invoiceLines = parser.produceInvoices(invoices.stream()).toList();
+	}
+
+	@Benchmark
+	public void parseCustomers(Blackhole blackhole) {
+		parser.parseCustomers(customerLines.stream()).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void parseInvoices(Blackhole blackhole) {
+		parser.parseInvoices(invoiceLines.stream(), customerMap)
+			.forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void produceCustomers(Blackhole blackhole) {
+		parser.produceCustomers(customers.stream()).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void produceInvoices(Blackhole blackhole) {
+		parser.produceInvoices(invoices.stream()).forEach(blackhole::consume);
+	}
+}
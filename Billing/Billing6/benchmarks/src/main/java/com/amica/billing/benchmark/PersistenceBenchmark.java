@@ -0,0 +1,87 @@
+package com.amica.billing.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amica.billing.db.CachingPersistence;
+import com.amica.billing.parse.CSVParser;
+import com.amica.billing.parse.Parser;
+import com.amica.billing.parse.ParserPersistence;
+
+/**
+ * Times for {@link CachingPersistence#load}: once from memory, which
+ * isolates the cost of building the caches, and once from CSV files
+ * through {@link ParserPersistence}, which adds reading and parsing.
+ *
+ * @author Will Provost
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class PersistenceBenchmark {
+
+	@Param({ "10000", "1000000", "10000000" })
+	private int invoiceCount;
+
+	private BenchmarkData data;
+	private Path folder;
+	private Path customersFile;
+	private Path invoicesFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		data = BenchmarkData.forSize(invoiceCount);
+
+		folder = Files.createTempDirectory("billing-benchmark");
+		customersFile = folder.resolve("customers.csv");
+		invoicesFile = folder.resolve("invoices.csv");
+		Parser parser = new CSVParser();
+		Files.write(customersFile, (Iterable<String>)
+				parser.produceCustomers(data.getCustomers().stream())::iterator);
+		Files.write(invoicesFile, (Iterable<String>)
+				parser.produceInvoices(data.getInvoices().stream())::iterator);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try ( Stream<Path> paths = Files.walk(folder); ) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public CachingPersistence loadFromMemory() {
+		CachingPersistence persistence = new BenchmarkData.InMemoryPersistence(data);
+		persistence.load();
+		return persistence;
+	}
+
+	@Benchmark
+	public CachingPersistence loadFromCSV() {
+		ParserPersistence persistence = new ParserPersistence();
+		persistence.setCustomersFile(customersFile.toString());
+		persistence.setInvoicesFile(invoicesFile.toString());
+		persistence.load();
+		return persistence;
+	}
+}
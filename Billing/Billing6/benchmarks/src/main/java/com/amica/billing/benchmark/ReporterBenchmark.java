@@ -0,0 +1,88 @@
+package com.amica.billing.benchmark;
+
+import static com.amica.billing.benchmark.BenchmarkData.AS_OF;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amica.billing.Billing;
+import com.amica.billing.Reporter;
+
+/**
+ * Times for each of the reports generated by {@link Reporter},
+ * written to files in a temporary folder.
+ *
+ * @author Will Provost
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class ReporterBenchmark {
+
+	@Param({ "10000", "1000000", "10000000" })
+	private int invoiceCount;
+
+	private Path folder;
+	private Reporter reporter;
+
+	@Setup
+	public void setUp() throws IOException {
+		folder = Files.createTempDirectory("billing-benchmark");
+		reporter = new Reporter(new Billing
+				(BenchmarkData.forSize(invoiceCount).createPersistence()));
+		reporter.setOutputFolder(folder);
+		reporter.setAsOf(AS_OF);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try ( Stream<Path> paths = Files.walk(folder); ) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void reportInvoicesOrderedByNumber() {
+		reporter.reportInvoicesOrderedByNumber();
+	}
+
+	@Benchmark
+	public void reportInvoicesGroupedByCustomer() {
+		reporter.reportInvoicesGroupedByCustomer();
+	}
+
+	@Benchmark
+	public void reportOverdueInvoices() {
+		reporter.reportOverdueInvoices();
+	}
+
+	@Benchmark
+	public void reportCustomersAndVolume() {
+		reporter.reportCustomersAndVolume();
+	}
+
+	@Benchmark
+	public void reportReceivablesAging() {
+		reporter.reportReceivablesAging();
+	}
+}
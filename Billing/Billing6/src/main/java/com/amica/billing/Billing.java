@@ -4,21 +4,29 @@ import static java.util.function.Function.identity;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.function.Consumer;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.springframework.stereotype.Component;
 
 import com.amica.billing.db.Persistence;
+import com.amica.billing.metrics.Metrics;
+import com.amica.billing.metrics.Timer;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 
 /**
  * Offers a few useful queries on the loaded data;
@@ -40,9 +48,29 @@ public class Billing {
 	 * Reusable comparator of invoices by issue date.
 	 */
 	public static Comparator<Invoice> compareByDate =
-			Comparator.comparing(Invoice::getIssueDate);
+			Comparator.comparingInt(Invoice::getIssueDay);
+	
+	private static final Timer CREATE_CUSTOMER_TIMER = 
+			Metrics.timer("Billing.createCustomer");
+	private static final Timer CREATE_INVOICE_TIMER = 
+			Metrics.timer("Billing.createInvoice");
+	private static final Timer PAY_INVOICE_TIMER = 
+			Metrics.timer("Billing.payInvoice");
+	private static final Timer CUSTOMER_LISTENERS_TIMER = 
+			Metrics.timer("Billing.customerListeners");
+	private static final Timer INVOICE_LISTENERS_TIMER = 
+			Metrics.timer("Billing.invoiceListeners");
+	private static final Timer BUILD_INDEX_TIMER = 
+			Metrics.timer("Billing.buildIndex");
+	private static final Timer GROUPED_BY_CUSTOMER_TIMER = 
+			Metrics.timer("Billing.getInvoicesGroupedByCustomer");
+	private static final Timer CUSTOMERS_AND_VOLUME_TIMER = 
+			Metrics.timer("Billing.getCustomersAndVolume");
+	private static final Timer RECEIVABLES_AGING_TIMER = 
+			Metrics.timer("Billing.getReceivablesAging");
 			
 	private Persistence persistence;
+	private InvoiceIndex index;
 	private List<Consumer<Customer>> customerListeners = new ArrayList<>();
 	private List<Consumer<Invoice>> invoiceListeners = new ArrayList<>();
 	
@@ -88,14 +116,18 @@ public class Billing {
 	 * the customer-change event.
 	 */
 	public void createCustomer(String firstName, String lastName, Terms terms) {
+		long start = System.nanoTime();
 		Customer customer = new Customer(firstName, lastName, terms);
 		if (!getCustomers().containsKey(customer.getName())) {
 			persistence.saveCustomer(customer);
 			synchronized(this) {
+				long dispatchStart = System.nanoTime();
 				for (Consumer<Customer> listener : customerListeners) {
 					listener.accept(customer);
 				}
+				CUSTOMER_LISTENERS_TIMER.recordSince(dispatchStart);
 			}
+			CREATE_CUSTOMER_TIMER.recordSince(start);
 		} else {
 			throw new IllegalArgumentException
 				("There is already a customer with the name " + 
@@ -110,6 +142,7 @@ public class Billing {
 	 */
 	public Invoice createInvoice(String customerName, double amount) {
 		
+		long start = System.nanoTime();
 		int nextInvoiceNumber = getInvoices().keySet().stream()
 				.mapToInt(Integer::intValue).max().orElse(0) + 1;
 
@@ -119,10 +152,17 @@ public class Billing {
 					LocalDate.now());
 			persistence.saveInvoice(invoice);
 			synchronized(this) {
+				if (index != null && 
+						!index.isCurrentFor(persistence.getInvoices())) {
+					index.add(invoice);
+				}
+				long dispatchStart = System.nanoTime();
 				for (Consumer<Invoice> listener : invoiceListeners) {
 					listener.accept(invoice);
 				}
+				INVOICE_LISTENERS_TIMER.recordSince(dispatchStart);
 			}
+			CREATE_INVOICE_TIMER.recordSince(start);
 			return invoice;
 		} else {
 			throw new IllegalArgumentException("No such customer: " + customerName);
@@ -135,16 +175,26 @@ public class Billing {
 	 */
 	public void payInvoice(int invoiceNumber) {
 		
+		long start = System.nanoTime();
 		if (getInvoices().containsKey(invoiceNumber)) {
 			Invoice invoice = getInvoices().get(invoiceNumber);
-			if (!invoice.getPaidDate().isPresent()) {
-				invoice.setPaidDate(Optional.of(LocalDate.now()));
+			if (!invoice.isPaid()) {
+				synchronized(this) {
+					invoice.setPaidDate(Optional.of(LocalDate.now()));
+					if (index != null &&
+							index.isCurrentFor(persistence.getInvoices())) {
+						index.paid(invoice);
+					}
+				}
 				persistence.saveInvoice(invoice);
 				synchronized(this) {
+					long dispatchStart = System.nanoTime();
 					for (Consumer<Invoice> listener : invoiceListeners) {
 						listener.accept(invoice);
 					}
+					INVOICE_LISTENERS_TIMER.recordSince(dispatchStart);
 				}
+				PAY_INVOICE_TIMER.recordSince(start);
 			} else {
 				throw new IllegalStateException("Invoice " + invoiceNumber + 
 						" has already been paid.");
@@ -168,6 +218,32 @@ public class Billing {
 		return Collections.unmodifiableMap(persistence.getInvoices());
 	}
 	
+	/**
+	 * Returns indexes over the current invoices, building them if we
+	 * haven't yet, or if the invoices have changed other than through
+	 * this object.
+	 */
+	private synchronized InvoiceIndex getIndex() {
+		Map<Integer,Invoice> invoices = persistence.getInvoices();
+		if (index == null || !index.isCurrentFor(invoices)) {
+			long start = System.nanoTime();
+			index = new InvoiceIndex(invoices);
+			BUILD_INDEX_TIMER.recordSince(start);
+		}
+		return index;
+	}
+	
+	/**
+	 * Return a stream of invoices that satisfy the given query.
+	 * If the persistence service can evaluate the query itself, we 
+	 * rely on that; otherwise we use our own indexes to avoid 
+	 * scanning all invoices where possible.
+	 */
+	public Stream<Invoice> findInvoices(InvoiceQuery query) {
+		return persistence.findInvoices(query)
+				.orElseGet(() -> getIndex().find(query));
+	}
+	
 	/**
 	 * Return a stream of all invoices, sorted by number.
 	 */
@@ -186,8 +262,7 @@ public class Billing {
 	 * Return a stream of all invoices for a given customer.
 	 */
 	public Stream<Invoice> getInvoicesForCustomer(Customer customer) {
-		return getInvoices().values().stream()
-				.filter(inv -> inv.getCustomer().equals(customer))
+		return getIndex().getInvoicesForCustomer(customer).stream()
 				.sorted(compareByNumber);
 	}
 	
@@ -195,17 +270,22 @@ public class Billing {
 	 * Return a map of customers and their invoices, sorted by number.
 	 */
 	public Map<Customer,List<Invoice>> getInvoicesGroupedByCustomer() {
-		return getInvoices().values().stream().sorted(compareByNumber)
-			.collect(Collectors.groupingBy(Invoice::getCustomer, 
-				Collectors.toList()));
+		long start = System.nanoTime();
+		Map<Customer,List<Invoice>> result = 
+			getInvoices().values().stream().sorted(compareByNumber)
+				.collect(Collectors.groupingBy(Invoice::getCustomer, 
+					Collectors.toList()));
+		GROUPED_BY_CUSTOMER_TIMER.recordSince(start);
+		return result;
 	}
 	
 	/**
 	 * Return a stream of overdue invoices, sorted by issue date.
 	 */
 	public Stream<Invoice> getOverdueInvoices(LocalDate asOf) {
+		final int asOfDay = (int) asOf.toEpochDay();
 		return getInvoices().values().stream()
-				.filter(inv -> inv.isOverdue(asOf))
+				.filter(inv -> inv.isOverdue(asOfDay))
 				.sorted(compareByDate);
 	}
 	
@@ -213,9 +293,7 @@ public class Billing {
 	 * Return the volume of business (sum of all invoices) for a customer. 
 	 */
 	public double getVolumeForCustomer(Customer customer) {
-		return getInvoicesForCustomer(customer)
-				.mapToDouble(Invoice::getAmount)
-				.sum();
+		return getIndex().getVolumeForCustomer(customer);
 	}
 	
 	/**
@@ -223,8 +301,12 @@ public class Billing {
 	 * The map is not sorted. 
 	 */
 	public Map<Customer,Double> getCustomersAndVolume() {
-		return getCustomers().values().stream().collect(Collectors.toMap
-			(identity(), this::getVolumeForCustomer));
+		long start = System.nanoTime();
+		InvoiceIndex index = getIndex();
+		Map<Customer,Double> result = getCustomers().values().stream()
+				.collect(Collectors.toMap(identity(), index::getVolumeForCustomer));
+		CUSTOMERS_AND_VOLUME_TIMER.recordSince(start);
+		return result;
 	}
 	
 	/**
@@ -239,8 +321,12 @@ public class Billing {
 		private double volume;
 		
 		public CustomerAndVolume(Customer customer) {
+			this(customer, getVolumeForCustomer(customer));
+		}
+		
+		public CustomerAndVolume(Customer customer, double volume) {
 			this.customer = customer;
-			this.volume = getVolumeForCustomer(customer);
+			this.volume = volume;
 		}
 		
 		public int compareTo(CustomerAndVolume other) {
@@ -253,6 +339,155 @@ public class Billing {
 	 * sorted in descending order of volume.
 	 */
 	public Stream<CustomerAndVolume> getCustomersAndVolumeStream() {
-		return getCustomers().values().stream().map(CustomerAndVolume::new).sorted();
+		InvoiceIndex index = getIndex();
+		return getCustomers().values().stream()
+				.map(c -> new CustomerAndVolume(c, index.getVolumeForCustomer(c)))
+				.sorted();
+	}
+	
+	/**
+	 * Return a stream of the N customers with the highest volumes of business,
+	 * in descending order of volume. Rather than sorting all customers,
+	 * we keep a min-heap of the best N seen so far, so this takes
+	 * O(customers * log N) time, using volumes that are maintained as 
+	 * invoices are added rather than computed for this query. 
+	 */
+	public Stream<CustomerAndVolume> getTopCustomersByVolume(int n) {
+		if (n <= 0) {
+			return Stream.empty();
+		}
+		
+		InvoiceIndex index = getIndex();
+		PriorityQueue<CustomerAndVolume> top = 
+				new PriorityQueue<>(n + 1, Comparator.reverseOrder());
+		for (Customer customer : getCustomers().values()) {
+			double volume = index.getVolumeForCustomer(customer);
+			if (top.size() < n || volume > top.peek().getVolume()) {
+				top.offer(new CustomerAndVolume(customer, volume));
+				if (top.size() > n) {
+					top.poll();
+				}
+			}
+		}
+		
+		CustomerAndVolume[] result = new CustomerAndVolume[top.size()];
+		for (int i = result.length - 1; i >= 0; --i) {
+			result[i] = top.poll();
+		}
+		return Arrays.stream(result);
+	}
+	
+	/**
+	 * Standard accounts-receivable aging buckets, by days past due.
+	 */
+	public enum AgingBucket {
+		CURRENT, DAYS_1_TO_30, DAYS_31_TO_60, DAYS_61_TO_90, OVER_90;
+		
+		public static AgingBucket forDaysPastDue(int days) {
+			if (days <= 0) {
+				return CURRENT;
+			} else if (days <= 30) {
+				return DAYS_1_TO_30;
+			} else if (days <= 60) {
+				return DAYS_31_TO_60;
+			} else if (days <= 90) {
+				return DAYS_61_TO_90;
+			}
+			return OVER_90;
+		}
+	}
+	
+	private static final int AGING_BUCKETS = AgingBucket.values().length;
+	
+	/**
+	 * This class encapsulates a customer and the total unpaid amounts
+	 * in each {@link AgingBucket aging bucket}.
+	 */
+	@Getter
+	public static class CustomerAging {
+		private Customer customer;
+		@Getter(AccessLevel.NONE)
+		private double[] amounts;
+		
+		public CustomerAging(Customer customer, double[] amounts) {
+			this.customer = customer;
+			this.amounts = amounts.clone();
+		}
+		
+		public double[] getAmounts() {
+			return amounts.clone();
+		}
+		
+		public double getAmount(AgingBucket bucket) {
+			return amounts[bucket.ordinal()];
+		}
+		
+		public double getTotal() {
+			return Arrays.stream(amounts).sum();
+		}
+	}
+	
+	/**
+	 * Return the unpaid amounts for each customer with unpaid invoices,
+	 * broken down by aging bucket as of the given date. An invoice counts
+	 * if it had been issued by that date and was still unpaid on it,
+	 * so the aging for a past date includes invoices paid since then.
+	 * This is a single pass over the invoices, which can run in parallel:
+	 * each invoice adds its amount to a per-customer array of bucket totals,
+	 * using its precomputed due date, so there is no allocation per invoice.
+	 */
+	public Map<Customer,CustomerAging> getReceivablesAging(LocalDate asOf) {
+		long start = System.nanoTime();
+		final int asOfDay = (int) asOf.toEpochDay();
+		Collector<Invoice,Map<Customer,double[]>,Map<Customer,double[]>> 
+			collector = Collector.of(HashMap::new, 
+				(totals, invoice) -> totals.computeIfAbsent
+					(invoice.getCustomer(), c -> new double[AGING_BUCKETS])
+						[AgingBucket.forDaysPastDue(asOfDay - invoice.getDueDay())
+							.ordinal()] += invoice.getAmount(),
+				(totals, others) -> {
+					others.forEach((customer, amounts) -> totals.merge
+						(customer, amounts, (a, b) -> {
+							for (int i = 0; i < a.length; ++i) {
+								a[i] += b[i];
+							}
+							return a;
+						}));
+					return totals;
+				});
+		
+		Map<Customer,CustomerAging> result = getInvoices().values().parallelStream()
+				.filter(invoice -> invoice.isOpen(asOfDay))
+				.collect(collector)
+				.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, 
+					entry -> new CustomerAging(entry.getKey(), entry.getValue())));
+		RECEIVABLES_AGING_TIMER.recordSince(start);
+		return result;
+	}
+	
+	/**
+	 * Return running totals of issued and paid amounts by day and by
+	 * month, from which any range of dates or months can be summed
+	 * without scanning invoices. The totals are built along with our
+	 * other indexes and kept current by {@link #createInvoice createInvoice}
+	 * and {@link #payInvoice payInvoice}.
+	 */
+	public RevenueRollup getRevenueRollup() {
+		return getIndex().getRevenueRollup();
+	}
+	
+	/**
+	 * Return the total amount invoiced between the given dates, inclusive.
+	 */
+	public double getAmountIssued(LocalDate from, LocalDate to) {
+		return getRevenueRollup().getTotal(RevenueRollup.Measure.ISSUED, from, to);
+	}
+	
+	/**
+	 * Return the total amount paid between the given dates, inclusive.
+	 */
+	public double getAmountPaid(LocalDate from, LocalDate to) {
+		return getRevenueRollup().getTotal(RevenueRollup.Measure.PAID, from, to);
 	}
 }
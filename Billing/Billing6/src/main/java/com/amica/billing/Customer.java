@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 /**
  * Simple JavaBean representing a customer.
@@ -14,6 +15,7 @@ import lombok.NoArgsConstructor;
 @EqualsAndHashCode(of={"firstName", "lastName"})
 @NoArgsConstructor
 public class Customer {
+    @Setter
     private String _id;
     private String firstName;
     private String lastName;
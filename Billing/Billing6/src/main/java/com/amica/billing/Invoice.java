@@ -3,57 +3,155 @@ package com.amica.billing;
 import java.time.LocalDate;
 import java.util.Optional;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
 /**
  * Simple JavaBean representing an invoice.
+ * Dates are held as epoch days (see {@link LocalDate#toEpochDay()}),
+ * and the due date is computed once the customer's terms are known,
+ * so that overdue checks are simple integer comparisons.
+ * {@link LocalDate} objects are only created when asked for by the
+ * date-typed getters, i.e. for display and formatting.
  *
  * @author Will Provost
  */
 @Data
 @EqualsAndHashCode(of="number")
 @NoArgsConstructor
-@AllArgsConstructor
 public class Invoice {
+
+	/**
+	 * Epoch-day value that marks an invoice as not yet paid.
+	 */
+	public static final int NOT_PAID = Integer.MIN_VALUE;
+
+	/**
+	 * Epoch-day value that marks a due date as not yet computed,
+	 * because we don't yet know the customer's terms.
+	 */
+	private static final int NOT_KNOWN = Integer.MIN_VALUE;
+
     @Id
 	private int number;
     @DBRef
     private Customer customer;
     private double amount;
-    private LocalDate issueDate;
-    private LocalDate paidDate;
-    
-    public Invoice(int number, Customer customer, double amount, 
+    private int issueDay;
+    private int paidDay = NOT_PAID;
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private int dueDay = NOT_KNOWN;
+
+    @PersistenceCreator
+    public Invoice(int number, Customer customer, double amount,
+    		int issueDay, int paidDay) {
+    	this.number = number;
+    	this.customer = customer;
+    	this.amount = amount;
+    	this.issueDay = issueDay;
+    	this.paidDay = paidDay;
+    	computeDueDay();
+    }
+
+    public Invoice(int number, Customer customer, double amount,
+    		LocalDate issueDate, LocalDate paidDate) {
+    	this(number, customer, amount, (int) issueDate.toEpochDay(),
+    			paidDate != null ? (int) paidDate.toEpochDay() : NOT_PAID);
+    }
+
+    public Invoice(int number, Customer customer, double amount,
     		LocalDate issueDate) {
     	this(number, customer, amount, issueDate, Optional.empty());
     }
-    
-    public Invoice(int number, Customer customer, double amount, 
+
+    public Invoice(int number, Customer customer, double amount,
     		LocalDate issueDate, Optional<LocalDate> paidDate) {
     	this(number, customer, amount, issueDate, paidDate.orElse(null));
     }
-    
+
+    /**
+     * Helper to derive the due date from the issue date and the
+     * customer's terms, if we have both.
+     */
+    private void computeDueDay() {
+    	dueDay = customer != null && customer.getTerms() != null
+    			? issueDay + customer.getTerms().getDays()
+    			: NOT_KNOWN;
+    }
+
+    public void setCustomer(Customer customer) {
+    	this.customer = customer;
+    	computeDueDay();
+    }
+
+    public void setIssueDay(int issueDay) {
+    	this.issueDay = issueDay;
+    	computeDueDay();
+    }
+
+    public LocalDate getIssueDate() {
+    	return LocalDate.ofEpochDay(issueDay);
+    }
+
+    public void setIssueDate(LocalDate issueDate) {
+    	setIssueDay((int) issueDate.toEpochDay());
+    }
+
+    public boolean isPaid() {
+    	return paidDay != NOT_PAID;
+    }
+
     public Optional<LocalDate> getPaidDate() {
-    	return Optional.ofNullable(paidDate);
+    	return isPaid()
+    			? Optional.of(LocalDate.ofEpochDay(paidDay))
+    			: Optional.empty();
     }
-    
+
     public void setPaidDate(Optional<LocalDate> paidDate) {
-    	this.paidDate = paidDate.orElse(null);
+    	this.paidDay = paidDate.map(pd -> (int) pd.toEpochDay()).orElse(NOT_PAID);
     }
-    
+
+    /**
+     * Returns the due date as an epoch day, computing it now if we
+     * couldn't do so when the issue date and customer were set.
+     */
+    public int getDueDay() {
+    	if (dueDay == NOT_KNOWN) {
+    		dueDay = issueDay + customer.getTerms().getDays();
+    	}
+    	return dueDay;
+    }
+
     public LocalDate getDueDate() {
-    	int daysAllowed = customer.getTerms().getDays();
-    	return issueDate.plusDays(daysAllowed);
+    	return LocalDate.ofEpochDay(getDueDay());
+    }
+
+    /**
+     * Primitive form of {@link #isOverdue(LocalDate)}, for callers that
+     * check many invoices against the same date.
+     */
+    public boolean isOverdue(int asOfDay) {
+    	return (isPaid() ? paidDay : asOfDay) > getDueDay();
     }
-    
+
     public boolean isOverdue(LocalDate asOf) {
-		LocalDate endDate = getPaidDate().orElse(asOf);
-		return endDate.isAfter(getDueDate());		
+    	return isOverdue((int) asOf.toEpochDay());
+    }
+
+    /**
+     * Returns true if the invoice had been issued, and was not yet paid,
+     * on the given epoch day.
+     */
+    public boolean isOpen(int asOfDay) {
+    	return issueDay <= asOfDay && (paidDay == NOT_PAID || paidDay > asOfDay);
     }
 
     @Override
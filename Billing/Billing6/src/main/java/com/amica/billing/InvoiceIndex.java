@@ -0,0 +1,217 @@
+package com.amica.billing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Secondary indexes over a map of invoices keyed by number: one by
+ * issue date, and one by customer. The invoice map itself serves as the
+ * index by number. We also act as a simple query planner for
+ * {@link InvoiceQuery}: we estimate how many candidates each applicable
+ * index would produce, read candidates from the most selective one, and
+ * apply the query's remaining filters to those candidates only.
+ * A full scan is only necessary when the query doesn't constrain
+ * number, date, customer, or terms.
+ *
+ * @author Will Provost
+ */
+public class InvoiceIndex {
+
+	private Map<Integer,Invoice> byNumber;
+	private NavigableMap<Integer,List<Invoice>> byIssueDay = new TreeMap<>();
+	private Map<Customer,List<Invoice>> byCustomer = new HashMap<>();
+	private Map<Customer,Double> volumeByCustomer = new HashMap<>();
+	private RevenueRollup rollup;
+	private int size;
+
+	/**
+	 * Build indexes over all of the invoices in the given map.
+	 */
+	public InvoiceIndex(Map<Integer,Invoice> invoices) {
+		this.byNumber = invoices;
+		this.rollup = new RevenueRollup(invoices.values());
+		invoices.values().forEach(this::addToIndexes);
+	}
+
+	/**
+	 * Adds a new invoice to the secondary indexes and to the issued
+	 * revenue totals. It's assumed that the invoice is also in the map
+	 * by number.
+	 */
+	public synchronized void add(Invoice invoice) {
+		addToIndexes(invoice);
+		rollup.issued(invoice);
+		if (invoice.isPaid()) {
+			rollup.paid(invoice);
+		}
+	}
+
+	/**
+	 * Records payment of an indexed invoice in the paid revenue totals.
+	 */
+	public synchronized void paid(Invoice invoice) {
+		rollup.paid(invoice);
+	}
+
+	/**
+	 * Returns the revenue totals for the indexed invoices, which we keep
+	 * up to date as invoices are added and paid.
+	 */
+	public RevenueRollup getRevenueRollup() {
+		return rollup;
+	}
+
+	/**
+	 * Helper to add an invoice to the secondary indexes.
+	 */
+	private void addToIndexes(Invoice invoice) {
+		byIssueDay.computeIfAbsent(invoice.getIssueDay(),
+				k -> new ArrayList<>()).add(invoice);
+		byCustomer.computeIfAbsent(invoice.getCustomer(),
+				k -> new ArrayList<>()).add(invoice);
+		volumeByCustomer.merge(invoice.getCustomer(), 
+				invoice.getAmount(), Double::sum);
+		++size;
+	}
+
+	/**
+	 * Returns true if we were built on the given map and have seen
+	 * every invoice that it holds.
+	 */
+	public boolean isCurrentFor(Map<Integer,Invoice> invoices) {
+		return invoices == byNumber && invoices.size() == size;
+	}
+
+	/**
+	 * Returns the invoices for the given customer, in the order in which
+	 * they were indexed.
+	 */
+	public synchronized List<Invoice> getInvoicesForCustomer(Customer customer) {
+		return Collections.unmodifiableList(new ArrayList<>
+				(byCustomer.getOrDefault(customer, Collections.emptyList())));
+	}
+
+	/**
+	 * Returns the total amount of all invoices for the given customer,
+	 * which we keep up to date as invoices are added.
+	 */
+	public synchronized double getVolumeForCustomer(Customer customer) {
+		return volumeByCustomer.getOrDefault(customer, 0.0);
+	}
+
+	/**
+	 * Helper to find the customers that satisfy the query's customer
+	 * and terms filters.
+	 */
+	private Stream<Customer> getCandidateCustomers(InvoiceQuery query) {
+		Stream<Customer> customers = query.getCustomer() != null
+				? Stream.of(query.getCustomer())
+				: byCustomer.keySet().stream();
+		return query.getTerms() == null ? customers
+				: customers.filter(c -> query.getTerms().contains(c.getTerms()));
+	}
+
+	/**
+	 * Helper to count the candidates that the customer index would produce.
+	 */
+	private long countByCustomer(InvoiceQuery query) {
+		return getCandidateCustomers(query)
+				.map(byCustomer::get)
+				.filter(Objects::nonNull)
+				.mapToLong(List::size)
+				.sum();
+	}
+
+	/**
+	 * Helper to get the range of the date index that the query selects.
+	 */
+	private NavigableMap<Integer,List<Invoice>> getDateRange(InvoiceQuery query) {
+		return query.getIssuedFromDay() <= query.getIssuedToDay()
+				? byIssueDay.subMap(query.getIssuedFromDay(), true,
+						query.getIssuedToDay(), true)
+				: Collections.emptyNavigableMap();
+	}
+
+	/**
+	 * Helper to count the candidates that the date index would produce.
+	 */
+	private long countByDate(InvoiceQuery query) {
+		return getDateRange(query).values().stream()
+				.mapToLong(List::size).sum();
+	}
+
+	/**
+	 * Helper to count the candidates that the number index would produce.
+	 */
+	private long countByNumber(InvoiceQuery query) {
+		return Math.max(0L, (long) query.getMaxNumber() - query.getMinNumber() + 1);
+	}
+
+	/**
+	 * Finds all invoices that match the given query, in the requested order
+	 * and up to the requested limit. See the class comment for the approach.
+	 * If we read from the date index and the query is ordered by ascending
+	 * issue date, candidates are already in order, and we skip the sort.
+	 */
+	public synchronized Stream<Invoice> find(InvoiceQuery query) {
+		long bestCount = byNumber.size();
+		Collection<Invoice> candidates = byNumber.values();
+		boolean inDateOrder = false;
+
+		if (query.hasNumberRange()) {
+			long count = countByNumber(query);
+			if (count < bestCount) {
+				bestCount = count;
+				candidates = IntStream.rangeClosed
+						(query.getMinNumber(), query.getMaxNumber())
+					.mapToObj(byNumber::get)
+					.filter(Objects::nonNull)
+					.toList();
+			}
+		}
+
+		if (query.getCustomer() != null || query.getTerms() != null) {
+			long count = countByCustomer(query);
+			if (count < bestCount) {
+				bestCount = count;
+				candidates = getCandidateCustomers(query)
+						.map(byCustomer::get)
+						.filter(Objects::nonNull)
+						.flatMap(List::stream)
+						.toList();
+			}
+		}
+
+		if (query.hasIssueDateRange()) {
+			long count = countByDate(query);
+			if (count < bestCount) {
+				bestCount = count;
+				candidates = getDateRange(query).values().stream()
+						.flatMap(List::stream)
+						.toList();
+				inDateOrder = true;
+			}
+		}
+
+		Stream<Invoice> result = candidates.stream()
+				.filter(query::matches);
+		if (query.getOrder() != null && !(inDateOrder &&
+				query.getOrder() == InvoiceQuery.Order.ISSUE_DATE &&
+				!query.isDescending())) {
+			result = result.sorted(query.getComparator());
+		}
+		if (query.hasLimit()) {
+			result = result.limit(query.getLimit());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,211 @@
+package com.amica.billing;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * Describes a query over invoices: any combination of filters by customer,
+ * customer terms, invoice number range, issue-date range, amount range,
+ * and paid state; plus an optional sort order and limit.
+ * Build one by chaining the filter methods, each of which returns this
+ * object, and pass it to {@link Billing#findInvoices findInvoices}.
+ * Date ranges are held as epoch days, consistent with {@link Invoice}.
+ * All ranges are inclusive.
+ *
+ * @author Will Provost
+ */
+@Getter
+public class InvoiceQuery {
+
+	/**
+	 * Possible sort orders for query results.
+	 */
+	public enum Order {
+		NUMBER(Billing.compareByNumber),
+		ISSUE_DATE(Billing.compareByDate),
+		AMOUNT(Comparator.comparingDouble(Invoice::getAmount));
+
+		private Comparator<Invoice> comparator;
+
+		private Order(Comparator<Invoice> comparator) {
+			this.comparator = comparator;
+		}
+
+		public Comparator<Invoice> getComparator() {
+			return comparator;
+		}
+	}
+
+	public static final int NO_LIMIT = -1;
+
+	private Customer customer;
+	private Set<Terms> terms;
+	private int minNumber = Integer.MIN_VALUE;
+	private int maxNumber = Integer.MAX_VALUE;
+	private int issuedFromDay = Integer.MIN_VALUE;
+	private int issuedToDay = Integer.MAX_VALUE;
+	private double minAmount = Double.NEGATIVE_INFINITY;
+	private double maxAmount = Double.POSITIVE_INFINITY;
+	private Boolean paid;
+	private Order order;
+	private boolean descending;
+	private int limit = NO_LIMIT;
+
+	/**
+	 * Only invoices for the given customer.
+	 */
+	public InvoiceQuery forCustomer(Customer customer) {
+		this.customer = customer;
+		return this;
+	}
+
+	/**
+	 * Only invoices for customers with any of the given terms.
+	 */
+	public InvoiceQuery withTerms(Terms... terms) {
+		this.terms = EnumSet.noneOf(Terms.class);
+		this.terms.addAll(Arrays.asList(terms));
+		return this;
+	}
+
+	/**
+	 * Only invoices with numbers in the given range.
+	 */
+	public InvoiceQuery numberedBetween(int minNumber, int maxNumber) {
+		this.minNumber = minNumber;
+		this.maxNumber = maxNumber;
+		return this;
+	}
+
+	/**
+	 * Only invoices issued on or after the given date.
+	 */
+	public InvoiceQuery issuedOnOrAfter(LocalDate from) {
+		issuedFromDay = (int) from.toEpochDay();
+		return this;
+	}
+
+	/**
+	 * Only invoices issued on or before the given date.
+	 */
+	public InvoiceQuery issuedOnOrBefore(LocalDate to) {
+		issuedToDay = (int) to.toEpochDay();
+		return this;
+	}
+
+	/**
+	 * Only invoices issued within the given range of dates.
+	 */
+	public InvoiceQuery issuedBetween(LocalDate from, LocalDate to) {
+		return issuedOnOrAfter(from).issuedOnOrBefore(to);
+	}
+
+	/**
+	 * Only invoices for at least the given amount.
+	 */
+	public InvoiceQuery amountAtLeast(double minAmount) {
+		this.minAmount = minAmount;
+		return this;
+	}
+
+	/**
+	 * Only invoices for no more than the given amount.
+	 */
+	public InvoiceQuery amountAtMost(double maxAmount) {
+		this.maxAmount = maxAmount;
+		return this;
+	}
+
+	/**
+	 * Only paid invoices.
+	 */
+	public InvoiceQuery paid() {
+		paid = true;
+		return this;
+	}
+
+	/**
+	 * Only unpaid invoices.
+	 */
+	public InvoiceQuery unpaid() {
+		paid = false;
+		return this;
+	}
+
+	/**
+	 * Sort results in ascending order of the given property.
+	 */
+	public InvoiceQuery orderBy(Order order) {
+		this.order = order;
+		this.descending = false;
+		return this;
+	}
+
+	/**
+	 * Sort results in descending order of the given property.
+	 */
+	public InvoiceQuery orderByDescending(Order order) {
+		this.order = order;
+		this.descending = true;
+		return this;
+	}
+
+	/**
+	 * Return no more than the given number of invoices.
+	 */
+	public InvoiceQuery limit(int limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	public boolean hasNumberRange() {
+		return minNumber != Integer.MIN_VALUE || maxNumber != Integer.MAX_VALUE;
+	}
+
+	public boolean hasIssueDateRange() {
+		return issuedFromDay != Integer.MIN_VALUE ||
+				issuedToDay != Integer.MAX_VALUE;
+	}
+
+	public boolean hasAmountRange() {
+		return minAmount != Double.NEGATIVE_INFINITY ||
+				maxAmount != Double.POSITIVE_INFINITY;
+	}
+
+	public boolean hasLimit() {
+		return limit != NO_LIMIT;
+	}
+
+	/**
+	 * Returns the comparator for the requested order, or null if
+	 * no order was requested.
+	 */
+	public Comparator<Invoice> getComparator() {
+		if (order == null) {
+			return null;
+		}
+		return descending
+				? order.getComparator().reversed()
+				: order.getComparator();
+	}
+
+	/**
+	 * Returns true if the given invoice passes all of our filters.
+	 */
+	public boolean matches(Invoice invoice) {
+		return (customer == null || customer.equals(invoice.getCustomer())) &&
+			(terms == null || terms.contains(invoice.getCustomer().getTerms())) &&
+			invoice.getNumber() >= minNumber &&
+			invoice.getNumber() <= maxNumber &&
+			invoice.getIssueDay() >= issuedFromDay &&
+			invoice.getIssueDay() <= issuedToDay &&
+			invoice.getAmount() >= minAmount &&
+			invoice.getAmount() <= maxAmount &&
+			(paid == null || paid == invoice.isPaid());
+	}
+}
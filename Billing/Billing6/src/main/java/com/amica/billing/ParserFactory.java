@@ -1,13 +1,21 @@
 package com.amica.billing;
 
-import java.util.HashMap;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 
 import com.amica.billing.parse.CSVParser;
 import com.amica.billing.parse.FlatParser;
+import com.amica.billing.parse.FormatDetector;
+import com.amica.billing.parse.FormatDetector.Format;
 import com.amica.billing.parse.Parser;
+import com.amica.billing.parse.QuotedCSVParser;
 import com.amica.esa.componentconfiguration.manager.ComponentConfigurationManager;
 import com.amica.escm.configuration.api.Configuration;
 
@@ -15,7 +23,12 @@ import lombok.extern.java.Log;
 
 /**
  * A factory for parsers that determines which type of parser to create
- * based on the extension of given filenames.
+ * based on the extension of given filenames, or on the content of given
+ * files as identified by the {@link FormatDetector}. The registry is safe
+ * for concurrent registration and lookup: lookups don't lock, while
+ * registration and resetting are serialized. Parsers that are stateless
+ * are created once, when first requested, and shared, so creating
+ * a parser is cheap.
  * 
  * @author Will Provost
  */
@@ -26,32 +39,131 @@ public class ParserFactory {
 	public static final String BASE_PROPERTY_NAME = 
 			ParserFactory.class.getSimpleName();
 
-	private static Map<String,Supplier<Parser>> parsers = new HashMap<>();
+	public static final String DEFAULT_KEY = "";
+	
+	private static volatile Map<String,Supplier<Parser>> parsers;
+	private static volatile Map<Format,Supplier<Parser>> formatParsers;
+	private static final Map<Format,String> FORMAT_EXTENSIONS = 
+			Map.of(Format.CSV, "csv", Format.FLAT, "flat");
+	private static Map<String,Supplier<Parser>> classSuppliers = 
+			new ConcurrentHashMap<>();
 	static {
 		resetParsers();
 	}
 	
 	/**
-	 * Helper function to use the Java Reflection API to create a class
-	 * of the requested name, and to handle any exceptions.
+	 * Helper to resolve a parser class, by name, to a supplier of parsers.
+	 * We look up the no-argument constructor once, as a method handle,
+	 * but don't create a parser until the supplier is first called.
+	 * If that first parser says that it's stateless, we share it;
+	 * otherwise we invoke the constructor on each call.
+	 * 
+	 * @throws IllegalStateException If the class can't be found,
+	 *   so that the failure isn't cached
+	 */
+	private static Supplier<Parser> resolveClassName(String className) {
+		MethodHandle constructor;
+		try {
+			constructor = MethodHandles.publicLookup()
+					.findConstructor(Class.forName(className), 
+						MethodType.methodType(void.class))
+					.asType(MethodType.methodType(Parser.class));
+		} catch (Throwable ex) {
+			throw new IllegalStateException
+					("Couldn't resolve parser class " + className, ex);
+		}
+		
+		return new Supplier<>() {
+			private volatile Parser shared;
+			private volatile boolean stateful;
+			
+			private Parser create() {
+				try {
+					return (Parser) constructor.invokeExact();
+				} catch (Throwable ex) {
+					log.log(Level.WARNING, ex, () -> 
+							"Couldn't create parser of class " + className);
+					return null;
+				}
+			}
+			
+			public Parser get() {
+				Parser parser = shared;
+				if (parser != null) {
+					return parser;
+				} else if (stateful) {
+					return create();
+				}
+				
+				synchronized (this) {
+					if (shared != null) {
+						return shared;
+					}
+					parser = create();
+					if (parser != null && !stateful) {
+						if (parser.isStateless()) {
+							shared = parser;
+						} else {
+							stateful = true;
+						}
+					}
+					return parser;
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Returns a supplier of parsers of the given class, resolving the class
+	 * only the first time we're asked for it. If the class can't be resolved
+	 * yet, the supplier tries again each time it's called.
+	 */
+	public static Supplier<Parser> getSupplierForClassName(String className) {
+		Supplier<Parser> supplier = classSuppliers.get(className);
+		if (supplier == null) {
+			try {
+				supplier = classSuppliers.computeIfAbsent
+						(className, ParserFactory::resolveClassName);
+			} catch (IllegalStateException ex) {
+				log.log(Level.WARNING, 
+						"Couldn't create parser factory as configured", ex.getCause());
+				supplier = () -> createParserWithClassName(className);
+			}
+		}
+		return supplier;
+	}
+	
+	/**
+	 * Creates (or shares) a parser of the requested class. 
+	 * Returns null if the class can't be found or instantiated.
 	 */
 	public static Parser createParserWithClassName(String className) {
 		try {
-			return (Parser) Class.forName(className)
-					.getConstructor(new Class<?>[0])
-					.newInstance();
-		} catch (Exception ex) {
+			return classSuppliers.computeIfAbsent
+					(className, ParserFactory::resolveClassName).get();
+		} catch (IllegalStateException ex) {
 			log.log(Level.WARNING, 
-					"Couldn't create parser factory as configured", ex);
+					"Couldn't create parser factory as configured", ex.getCause());
+			return null;
 		}
-		
-		return null;
 	}
 	
-	public static void resetParsers() {
-		parsers.put("csv", CSVParser::new);
-		parsers.put("flat", FlatParser::new);
-		parsers.put(null, CSVParser::new);
+	/**
+	 * Rebuilds the registry from the standard parsers and configuration.
+	 * We build a new map and then swap it in, so that concurrent
+	 * lookups never see a partially populated registry. Resetting and
+	 * registration share one lock, so that a parser registered while we
+	 * rebuild goes into the new map, and isn't written to the old one and lost.
+	 */
+	public static synchronized void resetParsers() {
+		Map<String,Supplier<Parser>> parsers = new ConcurrentHashMap<>();
+		parsers.put("csv", getSupplierForClassName(CSVParser.class.getName()));
+		parsers.put("flat", getSupplierForClassName(FlatParser.class.getName()));
+		parsers.put(DEFAULT_KEY, parsers.get("csv"));
+		
+		Map<Format,Supplier<Parser>> formatParsers = new ConcurrentHashMap<>();
+		formatParsers.put(Format.QUOTED_CSV, 
+				getSupplierForClassName(QuotedCSVParser.class.getName()));
 
 		if (System.getProperty("env.name") != null) {
 			Configuration configuration = ComponentConfigurationManager.getInstance()
@@ -63,8 +175,8 @@ public class ParserFactory {
 					String extension = key.substring(BASE_PROPERTY_NAME.length());
 					if (extension.length() != 0) {
 						if (extension.startsWith(".")) {
-							parsers.put(extension.substring(1),
-								() -> createParserWithClassName
+							parsers.put(extension.substring(1).toLowerCase(),
+								getSupplierForClassName
 									(configuration.getString(key)));
 							log.info(String.format("Configured parser %s=%s",
 									extension, configuration.getString(key)));
@@ -74,7 +186,7 @@ public class ParserFactory {
 									" or " + BASE_PROPERTY_NAME + ".extension");
 						}
 					} else {
-						parsers.put(null, () -> createParserWithClassName
+						parsers.put(DEFAULT_KEY, getSupplierForClassName
 								(configuration.getString(key)));
 						log.info(String.format("Configured default parser %s",
 								configuration.getString(key)));
@@ -83,46 +195,87 @@ public class ParserFactory {
 
 			}
 		}
+		
+		ParserFactory.parsers = parsers;
+		ParserFactory.formatParsers = formatParsers;
 	}
 
-	public static void addParser(String extension, Supplier<Parser> factory) {
-		if (!parsers.containsKey(extension)) {
-			parsers.put(extension.toLowerCase(), factory);
-		} else {
+	public static synchronized void addParser
+			(String extension, Supplier<Parser> factory) {
+		if (parsers.putIfAbsent(extension.toLowerCase(), factory) != null) {
 			throw new IllegalArgumentException
 				("There is already a parser for extension " + extension + 
 					"; use replaceParser() to replace it.");
 		}
 	}
 	
-	public static void replaceParser(String extension, Supplier<Parser> factory) {
-		if (parsers.containsKey(extension)) {
-			parsers.put(extension.toLowerCase(), factory);
-		} else {
+	public static synchronized void replaceParser
+			(String extension, Supplier<Parser> factory) {
+		if (parsers.replace(extension.toLowerCase(), factory) == null) {
 			throw new IllegalArgumentException
 				("There is no parser for extension " + extension + 
 					"; use addParser() to add one.");
 		}
 	}
 	
-	public static void replaceDefaultParser(Supplier<Parser> factory) {
-		parsers.put(null, factory);
+	public static synchronized void replaceDefaultParser(Supplier<Parser> factory) {
+		parsers.put(DEFAULT_KEY, factory);
+	}
+	
+	/**
+	 * Sets the parser to be used for files detected to be of the given format.
+	 * There is no parser for {@link Format#BINARY} files by default.
+	 * Unless set here, files detected as CSV or flat get whatever parser
+	 * is registered for the "csv" or "flat" extension at the time.
+	 */
+	public static synchronized void replaceFormatParser
+			(Format format, Supplier<Parser> factory) {
+		formatParsers.put(format, factory);
 	}
 	
 	/**
 	 * Looks up the file extension to find a 
 	 * <code>Supplier&lt;Parser&gt;</code>, invokes it, and returns the result. 
+	 * The extension is the text after the last dot in the filename,
+	 * so "invoices.2024.csv" has the extension "csv".
 	 */
 	public static Parser createParser(String filename) {
 		if (filename != null) {
-			int index = filename.indexOf(".");
-			if (index  != -1 && index != filename.length() - 1) {
+			int start = Math.max(filename.lastIndexOf('/'), 
+					filename.lastIndexOf(File.separatorChar)) + 1;
+			int index = filename.lastIndexOf(".");
+			if (index > start && index != filename.length() - 1) {
 				String extension = filename.substring(index + 1).toLowerCase();
-				if (parsers.containsKey(extension)) {
-					return parsers.get(extension).get();
+				Supplier<Parser> supplier = parsers.get(extension);
+				if (supplier != null) {
+					return supplier.get();
 				}
 			}
 		}
-		return parsers.get(null).get();
+		return parsers.get(DEFAULT_KEY).get();
+	}
+	
+	/**
+	 * Samples the content of the given file to determine its format,
+	 * and returns a parser for that format. If the format can't be
+	 * determined, we fall back to the file extension.
+	 * 
+	 * @throws IllegalArgumentException If the file appears to be binary
+	 *   and no parser has been set for binary files
+	 */
+	public static Parser createParser(Path file) {
+		Format format = FormatDetector.detect(file);
+		Supplier<Parser> supplier = formatParsers.get(format);
+		if (supplier == null && FORMAT_EXTENSIONS.containsKey(format)) {
+			supplier = parsers.get(FORMAT_EXTENSIONS.get(format));
+		}
+		if (supplier != null) {
+			return supplier.get();
+		} else if (format == Format.BINARY) {
+			throw new IllegalArgumentException(file + 
+					" appears to be a binary file, and there is no parser for it");
+		}
+		
+		return createParser(file.getFileName().toString());
 	}
 }
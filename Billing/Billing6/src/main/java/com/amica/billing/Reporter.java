@@ -1,10 +1,12 @@
 package com.amica.billing;
 
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -13,6 +15,10 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.amica.billing.metrics.CountingOutputStream;
+import com.amica.billing.metrics.Metrics;
+import com.amica.billing.metrics.Timer;
+
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.java.Log;
@@ -38,6 +44,26 @@ public class Reporter {
 			"overdue_invoices.txt";
 	public static final String FILENAME_CUSTOMERS_AND_VOLUME = 
 			"customer_and_volume.txt";
+	public static final String FILENAME_RECEIVABLES_AGING = 
+			"receivables_aging.txt";
+	
+	/**
+	 * We count bytes written to each report file, in a counter whose name
+	 * is this prefix plus the filename; and we time each report method in
+	 * a timer named for the method.
+	 */
+	public static final String BYTES_WRITTEN_PREFIX = "Reporter.bytesWritten.";
+	
+	private static final Timer BY_NUMBER_TIMER = 
+			Metrics.timer("Reporter.reportInvoicesOrderedByNumber");
+	private static final Timer BY_CUSTOMER_TIMER = 
+			Metrics.timer("Reporter.reportInvoicesGroupedByCustomer");
+	private static final Timer OVERDUE_TIMER = 
+			Metrics.timer("Reporter.reportOverdueInvoices");
+	private static final Timer CUSTOMERS_AND_VOLUME_TIMER = 
+			Metrics.timer("Reporter.reportCustomersAndVolume");
+	private static final Timer RECEIVABLES_AGING_TIMER = 
+			Metrics.timer("Reporter.reportReceivablesAging");
 	
 	/**
 	 * Factory for a date formatter that we use consistently in a few reports. 
@@ -106,6 +132,7 @@ public class Reporter {
 		reportInvoicesGroupedByCustomer();
 		reportOverdueInvoices();
 		reportCustomersAndVolume();
+		reportReceivablesAging();
 	}
 	
 	/**
@@ -131,8 +158,10 @@ public class Reporter {
 			return new NonCloser(); 
 		} else {
 			try {
-				return new PrintWriter(new FileWriter
-						(outputFolder.resolve(filename).toFile()));
+				return new PrintWriter(new OutputStreamWriter
+						(new CountingOutputStream(new FileOutputStream
+							(outputFolder.resolve(filename).toFile()),
+						Metrics.counter(BYTES_WRITTEN_PREFIX + filename))));
 			} catch (Exception ex) {
 				
 				log.log(Level.SEVERE, ex,
@@ -147,6 +176,7 @@ public class Reporter {
 	 * Generates a report of all invoices, ordered by number.
 	 */
 	public void reportInvoicesOrderedByNumber() {
+		long start = System.nanoTime();
 		try ( PrintWriter out = getWriter(FILENAME_INVOICES_BY_NUMBER); ) {
 			out.println("All invoices, ordered by invoice number");
 			out.println("=".repeat(66));
@@ -160,6 +190,7 @@ public class Reporter {
 					.map(Reporter::formatInvoice)
 					.collect(Collectors.joining("\n")));
 		}
+		BY_NUMBER_TIMER.recordSince(start);
 	}
 	
 	/**
@@ -167,6 +198,7 @@ public class Reporter {
 	 * then ordered by number.
 	 */
 	public void reportInvoicesGroupedByCustomer() {
+		long start = System.nanoTime();
 		try ( PrintWriter out = getWriter(FILENAME_INVOICES_BY_CUSTOMER); ) {
 			out.println("All invoices, grouped by customer and ordered by invoice number");
 			out.println("=".repeat(66));
@@ -185,12 +217,14 @@ public class Reporter {
 						.collect(Collectors.joining("\n")));
 			}
 		}
+		BY_CUSTOMER_TIMER.recordSince(start);
 	}
 	
 	/**
 	 * Generates a report of overdue invoices, ordered by invoice date.
 	 */
 	public void reportOverdueInvoices() {
+		long start = System.nanoTime();
 		try ( PrintWriter out = getWriter(FILENAME_OVERDUE_INVOICES); ) {
 			out.println("Overdue invoices, ordered by issue date");
 			out.println("=".repeat(78));
@@ -205,12 +239,14 @@ public class Reporter {
 					.map(Reporter::formatOverdueInvoice)
 					.collect(Collectors.joining("\n")));
 		}
+		OVERDUE_TIMER.recordSince(start);
 		}
 	
 	/**
 	 * Generates a report of all customers and their total volume of business.
 	 */
 	public void reportCustomersAndVolume() {
+		long start = System.nanoTime();
 		try ( PrintWriter out = getWriter(FILENAME_CUSTOMERS_AND_VOLUME); ) {
 			out.println("All customers and total volume of business");
 			out.println("=".repeat(66));
@@ -230,5 +266,53 @@ public class Reporter {
 //						entry.getKey().getName(), entry.getValue());
 //			}
 		}
+		CUSTOMERS_AND_VOLUME_TIMER.recordSince(start);
+	}
+	
+	/**
+	 * Helper method to format a row of the receivables-aging report.
+	 */
+	private static String formatAging(String label, double[] amounts) {
+		StringBuilder builder = new StringBuilder(String.format("%-24s", label));
+		double total = 0;
+		for (double amount : amounts) {
+			builder.append(String.format("  %,10.2f", amount));
+			total += amount;
+		}
+		builder.append(String.format("  %,10.2f", total));
+		return builder.toString();
+	}
+	
+	/**
+	 * Generates a report of unpaid amounts for each customer, broken down
+	 * by how long past due they are, ordered by customer name.
+	 */
+	public void reportReceivablesAging() {
+		long start = System.nanoTime();
+		try ( PrintWriter out = getWriter(FILENAME_RECEIVABLES_AGING); ) {
+			out.println("Receivables aging as of " + asOf.format(getFormatter()));
+			out.println("=".repeat(96));
+			out.println();
+			out.format("%-24s  %10s  %10s  %10s  %10s  %10s  %10s%n", "Customer",
+					"Current", "1-30", "31-60", "61-90", "90+", "Total");
+			String rule = "-".repeat(24) + ("  " + "-".repeat(10)).repeat(6);
+			out.println(rule);
+			
+			double[] totals = new double[Billing.AgingBucket.values().length];
+			billing.getReceivablesAging(asOf).values().stream()
+				.sorted(Comparator.comparing
+					((Billing.CustomerAging ca) -> ca.getCustomer().getName()))
+				.forEach(ca -> {
+					out.println(formatAging
+							(ca.getCustomer().getName(), ca.getAmounts()));
+					for (int i = 0; i < totals.length; ++i) {
+						totals[i] += ca.getAmounts()[i];
+					}
+				});
+			
+			out.println(rule);
+			out.println(formatAging("Total", totals));
+		}
+		RECEIVABLES_AGING_TIMER.recordSince(start);
 	}
 }
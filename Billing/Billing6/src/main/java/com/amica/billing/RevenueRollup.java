@@ -0,0 +1,206 @@
+package com.amica.billing;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps running totals of invoiced ("issued") and collected ("paid")
+ * amounts per day and per month. Each series is held as a Fenwick tree
+ * (binary indexed tree), so adding an amount and summing any range of
+ * days or months both take O(log n) time, where n is the number of days
+ * or months covered. The covered range grows as needed when amounts
+ * arrive for days outside of it.
+ *
+ * @author Will Provost
+ */
+public class RevenueRollup {
+
+	/**
+	 * The two amounts that we track.
+	 */
+	public enum Measure { ISSUED, PAID }
+
+	/**
+	 * A Fenwick tree over a contiguous range of integer keys, starting at
+	 * <code>first</code>. We also hold the plain values per key, which lets us
+	 * answer point queries directly and rebuild the tree in linear time
+	 * when the range has to grow.
+	 */
+	private static class Series {
+
+		public static final int MINIMUM_SLACK = 32;
+
+		private int first;
+		private double[] values = new double[0];
+		private double[] tree = new double[1];
+
+		/**
+		 * Helper to grow our range so that it includes the given key,
+		 * leaving some room to grow further in the same direction.
+		 */
+		private void ensureRange(int key) {
+			if (values.length == 0) {
+				first = key - MINIMUM_SLACK;
+				values = new double[2 * MINIMUM_SLACK + 1];
+			} else if (key < first || key >= first + values.length) {
+				int slack = Math.max(MINIMUM_SLACK, values.length / 2);
+				int newFirst = key < first ? key - slack : first;
+				int newLast = key >= first + values.length
+						? key + slack : first + values.length - 1;
+				double[] newValues = new double[newLast - newFirst + 1];
+				System.arraycopy(values, 0, newValues, first - newFirst,
+						values.length);
+				first = newFirst;
+				values = newValues;
+			} else {
+				return;
+			}
+
+			tree = new double[values.length + 1];
+			for (int i = 1; i < tree.length; ++i) {
+				tree[i] += values[i - 1];
+				int parent = i + (i & -i);
+				if (parent < tree.length) {
+					tree[parent] += tree[i];
+				}
+			}
+		}
+
+		public void add(int key, double amount) {
+			ensureRange(key);
+			values[key - first] += amount;
+			for (int i = key - first + 1; i < tree.length; i += i & -i) {
+				tree[i] += amount;
+			}
+		}
+
+		public double get(int key) {
+			return key >= first && key < first + values.length
+					? values[key - first] : 0;
+		}
+
+		/**
+		 * Returns the sum of values for all keys up to and including
+		 * the given key.
+		 */
+		private double sumThrough(int key) {
+			if (key < first) {
+				return 0;
+			}
+			double sum = 0;
+			for (int i = Math.min(key - first + 1, values.length); i > 0; i -= i & -i) {
+				sum += tree[i];
+			}
+			return sum;
+		}
+
+		/**
+		 * Returns the sum of values for the given range of keys, inclusive.
+		 */
+		public double sum(int from, int to) {
+			return from <= to ? sumThrough(to) - sumThrough(from - 1) : 0;
+		}
+	}
+
+	/**
+	 * Helper to convert a month to a simple integer key.
+	 */
+	private static int monthKey(YearMonth month) {
+		return month.getYear() * 12 + month.getMonthValue() - 1;
+	}
+
+	/**
+	 * Helper to convert an epoch day to the key for its month.
+	 */
+	private static int monthKey(int epochDay) {
+		return monthKey(YearMonth.from(LocalDate.ofEpochDay(epochDay)));
+	}
+
+	private Series[] daily = { new Series(), new Series() };
+	private Series[] monthly = { new Series(), new Series() };
+
+	/**
+	 * Build totals for all of the given invoices.
+	 */
+	public RevenueRollup(Collection<Invoice> invoices) {
+		for (Invoice invoice : invoices) {
+			issued(invoice);
+			if (invoice.isPaid()) {
+				paid(invoice);
+			}
+		}
+	}
+
+	/**
+	 * Helper to add an amount to the daily and monthly series
+	 * for one measure.
+	 */
+	private void add(Measure measure, int epochDay, double amount) {
+		daily[measure.ordinal()].add(epochDay, amount);
+		monthly[measure.ordinal()].add(monthKey(epochDay), amount);
+	}
+
+	/**
+	 * Adds the invoice's amount to the issued totals for its issue date.
+	 */
+	public synchronized void issued(Invoice invoice) {
+		add(Measure.ISSUED, invoice.getIssueDay(), invoice.getAmount());
+	}
+
+	/**
+	 * Adds the invoice's amount to the paid totals for its paid date.
+	 */
+	public synchronized void paid(Invoice invoice) {
+		add(Measure.PAID, invoice.getPaidDay(), invoice.getAmount());
+	}
+
+	/**
+	 * Returns the total for the given measure over the given range
+	 * of dates, inclusive.
+	 */
+	public synchronized double getTotal(Measure measure,
+			LocalDate from, LocalDate to) {
+		return daily[measure.ordinal()].sum
+				((int) from.toEpochDay(), (int) to.toEpochDay());
+	}
+
+	/**
+	 * Returns the total for the given measure over the given range
+	 * of months, inclusive.
+	 */
+	public synchronized double getTotal(Measure measure,
+			YearMonth from, YearMonth to) {
+		return monthly[measure.ordinal()].sum(monthKey(from), monthKey(to));
+	}
+
+	/**
+	 * Returns the total for the given measure for each day in the given
+	 * range, inclusive, in date order; days with no activity are included
+	 * with a total of zero.
+	 */
+	public synchronized SortedMap<LocalDate,Double> getDailyTotals
+			(Measure measure, LocalDate from, LocalDate to) {
+		SortedMap<LocalDate,Double> result = new TreeMap<>();
+		for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+			result.put(day, daily[measure.ordinal()].get((int) day.toEpochDay()));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the total for the given measure for each month in the given
+	 * range, inclusive, in order; months with no activity are included
+	 * with a total of zero.
+	 */
+	public synchronized SortedMap<YearMonth,Double> getMonthlyTotals
+			(Measure measure, YearMonth from, YearMonth to) {
+		SortedMap<YearMonth,Double> result = new TreeMap<>();
+		for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+			result.put(month, monthly[measure.ordinal()].get(monthKey(month)));
+		}
+		return result;
+	}
+}
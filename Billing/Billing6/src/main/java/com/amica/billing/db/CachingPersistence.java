@@ -1,38 +1,253 @@
 package com.amica.billing.db;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import com.amica.billing.*;
+import com.amica.billing.metrics.Metrics;
+import com.amica.billing.metrics.Timer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 @Getter
 public abstract class CachingPersistence implements Persistence{
 
+    private static final Timer LOAD_TIMER = Metrics.timer("CachingPersistence.load");
+    private static final Timer WRITE_CUSTOMER_TIMER = Metrics.timer("CachingPersistence.writeCustomer");
+    private static final Timer WRITE_INVOICE_TIMER = Metrics.timer("CachingPersistence.writeInvoice");
+    private static final Timer WRITE_CUSTOMERS_TIMER = Metrics.timer("CachingPersistence.writeCustomers");
+    private static final Timer WRITE_INVOICES_TIMER = Metrics.timer("CachingPersistence.writeInvoices");
+
     protected Map<String, Customer> customers;
     protected Map<Integer, Invoice> invoices;
 
+    //Optional journal of changes, so they can be shipped elsewhere
+    //by a ChangeSync; every saved record is appended before it's written,
+    //so a crash after the write can't leave it unshipped.  If the write
+    //fails, the record is shipped anyway, which the target's upserts allow
+    @Setter
+    protected ChangeJournal journal;
+
+    //Optional write-ahead log: every saved record is appended and forced
+    //to disk before we update the cache or write it, and the log is
+    //replayed over what we read at load().  Once that many changes have
+    //been written successfully, we discard them from the log.
+    @Setter
+    protected ChangeJournal writeAheadLog;
+    @Setter
+    private int logCompactionInterval = 1000;
+    @Getter(AccessLevel.NONE)
+    private long lastCompacted;
+
+    //Sequence numbers of records that have been logged but not yet
+    //written, by any thread; we never compact the log past the first.
+    //Also guards logging and compaction, so that a sequence number is
+    //in here from the moment it's handed out
+    @Getter(AccessLevel.NONE)
+    private final NavigableSet<Long> unwritten = new TreeSet<>();
+
     //Loads stream of customers & invoices into map.  Separating
     //logic into two try blocks in case one of them fails
     public void load(){
+        long start = System.nanoTime();
         try( Stream<Customer> customerStream = readCustomers() ){
             customers = customerStream.collect(Collectors.toMap(Customer::getName, Function.identity()));
         }
         try( Stream<Invoice> invoiceStream = readInvoices() ){
             invoices = invoiceStream.collect(Collectors.toMap(Invoice::getNumber, Function.identity()));
         }
+        if( writeAheadLog != null ){
+            recover();
+        }
+        LOAD_TIMER.recordSince(start);
+    }
+
+    //Replays the write-ahead log over what we've just read, writes the
+    //recovered records, and then empties the log
+    private void recover(){
+        try{
+            List<ChangeJournal.Change> changes = writeAheadLog.read(0, Integer.MAX_VALUE);
+            if( changes.isEmpty() ){
+                return;
+            }
+
+            Map<String,Customer> recoveredCustomers = ChangeJournal.customersIn(changes);
+            customers.putAll(recoveredCustomers);
+            Map<Integer,Invoice> recoveredInvoices = ChangeJournal.invoicesIn(changes, customers);
+            invoices.putAll(recoveredInvoices);
+
+            recoveredCustomers.values().forEach(this::journal);
+            recoveredInvoices.values().forEach(this::journal);
+            writeCustomers(recoveredCustomers.values());
+            writeInvoices(recoveredInvoices.values());
+            if( canCompactLog() ){
+                writeAheadLog.compact(writeAheadLog.getLastSequence());
+                lastCompacted = writeAheadLog.getLastSequence();
+            }
+        }catch(IOException ex){
+            throw new UncheckedIOException("Couldn't recover from write-ahead log", ex);
+        }
+    }
+
+    //Appends to the write-ahead log, if we have one, and returns the
+    //sequence number, without forcing it to disk
+    private long log(Customer customer){
+        if( writeAheadLog == null ){
+            return 0;
+        }
+        try{
+            synchronized( unwritten ){
+                long sequence = writeAheadLog.append(customer);
+                unwritten.add(sequence);
+                return sequence;
+            }
+        }catch(IOException ex){
+            throw new UncheckedIOException("Couldn't log " + customer, ex);
+        }
+    }
+
+    private long log(Invoice invoice){
+        if( writeAheadLog == null ){
+            return 0;
+        }
+        try{
+            synchronized( unwritten ){
+                long sequence = writeAheadLog.append(invoice);
+                unwritten.add(sequence);
+                return sequence;
+            }
+        }catch(IOException ex){
+            throw new UncheckedIOException("Couldn't log " + invoice, ex);
+        }
+    }
+
+    private void sync(long sequence){
+        if( sequence != 0 ){
+            try{
+                writeAheadLog.sync(sequence);
+            }catch(IOException ex){
+                throw new UncheckedIOException("Couldn't sync write-ahead log", ex);
+            }
+        }
+    }
+
+    //Called once the records with the given sequence numbers have been
+    //written; every so often, discards from the log everything before
+    //the first record that another save has logged but not yet written.
+    //If a write fails, its records stay in the log until the next load()
+    private void written(long... sequences){
+        if( writeAheadLog == null ){
+            return;
+        }
+        synchronized( unwritten ){
+            for( long sequence : sequences ){
+                unwritten.remove(sequence);
+            }
+            long through = unwritten.isEmpty()
+                    ? LongStream.of(sequences).max().orElse(0)
+                    : unwritten.first() - 1;
+            if( through - lastCompacted >= logCompactionInterval && canCompactLog() ){
+                try{
+                    writeAheadLog.compact(through);
+                    lastCompacted = through;
+                }catch(IOException ex){
+                    throw new UncheckedIOException("Couldn't compact write-ahead log", ex);
+                }
+            }
+        }
+    }
+
+    //Subclasses whose writes can fail without throwing should say
+    //when the log can't yet be compacted, because those writes are lost
+    protected boolean canCompactLog(){
+        return true;
     }
 
     public void saveCustomer(Customer customer){
+        long sequence = log(customer);
+        sync(sequence);
         customers.put(customer.getName(), customer);
+        journal(customer);
+        long start = System.nanoTime();
         writeCustomer(customer);
+        WRITE_CUSTOMER_TIMER.recordSince(start);
+        written(sequence);
     }
 
     public void saveInvoice(Invoice invoice){
+        long sequence = log(invoice);
+        sync(sequence);
         invoices.put(invoice.getNumber(), invoice);
+        journal(invoice);
+        long start = System.nanoTime();
         writeInvoice(invoice);
+        WRITE_INVOICE_TIMER.recordSince(start);
+        written(sequence);
+    }
+
+    //Batch forms update the cache and then make one call to write the batch
+    @Override
+    public void saveCustomers(Collection<Customer> batch){
+        long[] sequences = batch.stream().mapToLong(this::log).toArray();
+        sync(LongStream.of(sequences).max().orElse(0));
+        batch.forEach(customer -> customers.put(customer.getName(), customer));
+        batch.forEach(this::journal);
+        long start = System.nanoTime();
+        writeCustomers(batch);
+        WRITE_CUSTOMERS_TIMER.recordSince(start);
+        written(sequences);
+    }
+
+    @Override
+    public void saveInvoices(Collection<Invoice> batch){
+        long[] sequences = batch.stream().mapToLong(this::log).toArray();
+        sync(LongStream.of(sequences).max().orElse(0));
+        batch.forEach(invoice -> invoices.put(invoice.getNumber(), invoice));
+        batch.forEach(this::journal);
+        long start = System.nanoTime();
+        writeInvoices(batch);
+        WRITE_INVOICES_TIMER.recordSince(start);
+        written(sequences);
+    }
+
+    private void journal(Customer customer){
+        if( journal != null ){
+            try{
+                journal.append(customer);
+            }catch(IOException ex){
+                throw new UncheckedIOException("Couldn't journal " + customer, ex);
+            }
+        }
+    }
+
+    private void journal(Invoice invoice){
+        if( journal != null ){
+            try{
+                journal.append(invoice);
+            }catch(IOException ex){
+                throw new UncheckedIOException("Couldn't journal " + invoice, ex);
+            }
+        }
+    }
+
+    //Subclasses that can write a batch more cheaply than one record
+    //at a time should override these
+    protected void writeCustomers(Collection<Customer> batch){
+        batch.forEach(this::writeCustomer);
+    }
+
+    protected void writeInvoices(Collection<Invoice> batch){
+        batch.forEach(this::writeInvoice);
     }
 
     protected abstract Stream<Customer> readCustomers();
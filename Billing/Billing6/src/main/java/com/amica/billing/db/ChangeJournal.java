@@ -0,0 +1,428 @@
+package com.amica.billing.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.metrics.Metrics;
+import com.amica.billing.metrics.Timer;
+import com.amica.billing.parse.CSVParser;
+
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * Append-only local journal of changes to customers and invoices.
+ * Each change is one line: a sequence number, a record type, and the
+ * record in our CSV format, separated by tabs. Sequence numbers increase
+ * by one with each change, and carry on from the end of an existing
+ * journal when it's re-opened. Readers, such as the {@link ChangeSync},
+ * ask for changes after the last sequence number they've handled, and
+ * can then {@link #compact} the journal to discard what they've shipped.
+ * Compaction always keeps the latest change, so that sequence numbers
+ * carry on correctly after the journal is re-opened. We keep a sparse
+ * index from sequence numbers to positions in the file, so that reading
+ * a batch seeks close to where it starts instead of scanning the journal
+ * from the beginning.
+ *
+ * Appended changes are handed to the operating system right away, but
+ * only forced to disk by {@link #sync}. Callers that need a change to be
+ * durable before they go on, such as a write-ahead log, append and then
+ * sync. Syncs are group commits: while one thread is forcing the file,
+ * others append, and the next sync covers all of their changes at once.
+ *
+ * @author Will Provost
+ */
+public class ChangeJournal implements Closeable {
+
+	private static final CSVParser FORMAT = new CSVParser();
+	private static final String SEPARATOR = "\t";
+	private static final int INDEX_INTERVAL = 256;
+	private static final Timer SYNC_TIMER = Metrics.timer("ChangeJournal.sync");
+
+	/**
+	 * Types of record that we journal.
+	 */
+	public enum Type { CUSTOMER, INVOICE }
+
+	/**
+	 * One change, with the record still in its CSV form.
+	 */
+	@Value
+	public static class Change {
+		long sequence;
+		Type type;
+		String data;
+	}
+
+	@Getter
+	private Path file;
+	@Getter
+	private long lastSequence;
+	private FileChannel channel;
+	private OutputStream out;
+	private long size;
+	private NavigableMap<Long,Long> offsets = new TreeMap<>();
+	private long durableSequence;
+	private boolean syncing;
+
+	/**
+	 * Opens the journal in the given file, creating it if necessary.
+	 */
+	public ChangeJournal(Path file) throws IOException {
+		this.file = file;
+		if (Files.exists(file)) {
+			truncateTornTail();
+			index();
+		}
+		durableSequence = lastSequence;
+		open();
+	}
+
+	/**
+	 * Helper to discard a partial last line, left by a crash part-way
+	 * through an append, so that the next change starts on a new line.
+	 */
+	private void truncateTornTail() throws IOException {
+		try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE); ) {
+			long end = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			while (end > 0) {
+				long start = Math.max(0, end - buffer.capacity());
+				buffer.clear().limit((int) (end - start));
+				channel.read(buffer, start);
+				for (int i = buffer.position() - 1; i >= 0; --i) {
+					if (buffer.get(i) == '\n') {
+						channel.truncate(start + i + 1);
+						return;
+					}
+				}
+				end = start;
+			}
+			channel.truncate(0);
+		}
+	}
+
+	/**
+	 * Helper to scan the file for the position of each line, recording
+	 * the first and every {@link #INDEX_INTERVAL}th sequence number in
+	 * the index. We only need the leading digits of each line for this.
+	 */
+	private void index() throws IOException {
+		offsets.clear();
+		try ( InputStream in = new BufferedInputStream(Files.newInputStream(file)); ) {
+			long position = 0;
+			long lineStart = 0;
+			long sequence = 0;
+			boolean digits = true;
+			int b;
+			while ((b = in.read()) != -1) {
+				++position;
+				if (b == '\n') {
+					if (sequence != 0) {
+						indexLine(sequence, lineStart);
+					}
+					lineStart = position;
+					sequence = 0;
+					digits = true;
+				} else if (digits && b >= '0' && b <= '9') {
+					sequence = sequence * 10 + b - '0';
+				} else {
+					digits = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper to note the position of a line, if it belongs in the index.
+	 */
+	private void indexLine(long sequence, long position) {
+		if (offsets.isEmpty() || sequence % INDEX_INTERVAL == 0) {
+			offsets.put(sequence, position);
+		}
+		lastSequence = Math.max(lastSequence, sequence);
+	}
+
+	/**
+	 * Helper to open the file for appending.
+	 */
+	private void open() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		out = new BufferedOutputStream(Channels.newOutputStream(channel));
+		size = channel.size();
+	}
+
+	/**
+	 * Helper to read one line of the journal.
+	 */
+	private static Change parse(String line) {
+		String[] fields = line.split(SEPARATOR, 3);
+		return new Change(Long.parseLong(fields[0]),
+				Type.valueOf(fields[1]), fields[2]);
+	}
+
+	/**
+	 * Helper to write one change and hand it to the operating system.
+	 */
+	private synchronized long append(Type type, String data) throws IOException {
+		long sequence = lastSequence + 1;
+		byte[] line = (sequence + SEPARATOR + type + SEPARATOR + data +
+				System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+		out.write(line);
+		out.flush();
+		indexLine(sequence, size);
+		size += line.length;
+		return sequence;
+	}
+
+	/**
+	 * Records a new or changed customer, and returns its sequence number.
+	 */
+	public long append(Customer customer) throws IOException {
+		return append(Type.CUSTOMER, FORMAT.formatCustomer(customer));
+	}
+
+	/**
+	 * Records a new or changed invoice, and returns its sequence number.
+	 */
+	public long append(Invoice invoice) throws IOException {
+		return append(Type.INVOICE, FORMAT.formatInvoice(invoice));
+	}
+
+	/**
+	 * Returns once all changes up to the given sequence number have been
+	 * forced to disk. If another thread is already forcing the file, we
+	 * wait for it, and then force whatever has been appended since, if
+	 * that still doesn't cover our change.
+	 */
+	public void sync(long sequence) throws IOException {
+		long target;
+		FileChannel toForce;
+		synchronized (this) {
+			try {
+				while (syncing && durableSequence < sequence) {
+					wait();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for sync");
+			}
+			if (durableSequence >= sequence) {
+				return;
+			}
+
+			syncing = true;
+			out.flush();
+			target = lastSequence;
+			toForce = channel;
+		}
+
+		boolean forced = false;
+		try {
+			long start = System.nanoTime();
+			toForce.force(false);
+			SYNC_TIMER.recordSince(start);
+			forced = true;
+		} finally {
+			synchronized (this) {
+				syncing = false;
+				if (forced) {
+					durableSequence = Math.max(durableSequence, target);
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the last change known to be on disk.
+	 */
+	public synchronized long getDurableSequence() {
+		return durableSequence;
+	}
+
+	/**
+	 * Returns up to the given number of changes that come after
+	 * the given sequence number, in order. We start reading from the
+	 * nearest indexed line at or before the first change we want.
+	 * The file is opened while holding the lock, so that the position
+	 * we seek to is good for the file we read, even if the journal is
+	 * compacted while we're reading. We also note where the file ends
+	 * at that moment, and stop there, so that we never see a change that
+	 * another thread is still appending; and we ignore any bytes after
+	 * the last line break, since they can't be a whole change.
+	 */
+	public List<Change> read(long afterSequence, int max) throws IOException {
+		FileChannel in;
+		long remaining;
+		synchronized (this) {
+			out.flush();
+			Map.Entry<Long,Long> start = offsets.floorEntry(afterSequence + 1);
+			long position = start != null ? start.getValue() : 0;
+			in = FileChannel.open(file, StandardOpenOption.READ);
+			in.position(position);
+			remaining = size - position;
+		}
+
+		List<Change> result = new ArrayList<>();
+		try ( InputStream stream = new BufferedInputStream(Channels.newInputStream(in)); ) {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while (result.size() < max && remaining-- > 0 && (b = stream.read()) != -1) {
+				if (b != '\n') {
+					line.write(b);
+					continue;
+				}
+
+				String text = line.toString(StandardCharsets.UTF_8);
+				line.reset();
+				if (text.endsWith("\r")) {
+					text = text.substring(0, text.length() - 1);
+				}
+				if (!text.isBlank()) {
+					Change change = parse(text);
+					if (change.getSequence() > afterSequence) {
+						result.add(change);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Discards changes up to and including the given sequence number,
+	 * by copying the rest to a new file and renaming it over this one.
+	 */
+	public synchronized void compact(long throughSequence) throws IOException {
+		try {
+			while (syncing) {
+				wait();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for sync");
+		}
+
+		out.flush();
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try ( Stream<String> lines = Files.lines(file);
+				FileChannel tempChannel = FileChannel.open(temp,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+				Writer tempOut = new BufferedWriter(new OutputStreamWriter
+					(Channels.newOutputStream(tempChannel), StandardCharsets.UTF_8)); ) {
+			for (String line : (Iterable<String>) lines::iterator) {
+				long sequence = line.isBlank() ? 0 : parse(line).getSequence();
+				if (sequence > throughSequence || sequence == lastSequence) {
+					tempOut.write(line);
+					tempOut.write(System.lineSeparator());
+				}
+			}
+			tempOut.flush();
+			tempChannel.force(true);
+		}
+
+		out.close();
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		durableSequence = lastSequence;
+		index();
+		open();
+	}
+
+	/**
+	 * Helper to pick out the records of one type from the given changes.
+	 */
+	private static List<String> dataIn(List<Change> changes, Type type) {
+		return changes.stream()
+				.filter(change -> change.getType() == type)
+				.map(Change::getData)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Helper to make sure that every record of one type was parsed.
+	 * The parser skips records that it rejects, but we can't skip a change,
+	 * because whoever is reading the journal would then carry on past it.
+	 *
+	 * @throws IllegalStateException If any record was rejected
+	 */
+	private static <T> List<T> allParsed(List<String> data, Stream<T> parsed,
+			Type type) {
+		List<T> result = parsed.collect(Collectors.toList());
+		if (result.size() != data.size()) {
+			throw new IllegalStateException(String.format
+					("Couldn't parse %,d of %,d %s changes in the journal",
+						data.size() - result.size(), data.size(), type));
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the customers in the given changes, keeping only the latest
+	 * change to each customer, and returns them by name, in order of
+	 * their first appearance.
+	 *
+	 * @throws IllegalStateException If any customer can't be parsed
+	 */
+	public static Map<String,Customer> customersIn(List<Change> changes) {
+		List<String> data = dataIn(changes, Type.CUSTOMER);
+		return allParsed(data, FORMAT.parseCustomers(data.stream()), Type.CUSTOMER)
+			.stream()
+			.collect(Collectors.toMap(Customer::getName, c -> c,
+					(older, newer) -> newer, LinkedHashMap::new));
+	}
+
+	/**
+	 * Parses the invoices in the given changes, resolving customers by name
+	 * from the given map, and keeping only the latest change to each
+	 * invoice. Returns them by number, in order of first appearance.
+	 *
+	 * @throws IllegalStateException If any invoice can't be parsed,
+	 *   or refers to a customer that isn't in the map
+	 */
+	public static Map<Integer,Invoice> invoicesIn(List<Change> changes,
+			Map<String,Customer> customers) {
+		List<String> data = dataIn(changes, Type.INVOICE);
+		return allParsed(data, FORMAT.parseInvoices(data.stream(), customers),
+				Type.INVOICE)
+			.stream()
+			.collect(Collectors.toMap(Invoice::getNumber, i -> i,
+					(older, newer) -> newer, LinkedHashMap::new));
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,140 @@
+package com.amica.billing.db;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.db.ChangeJournal.Change;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+/**
+ * Ships changes from a {@link ChangeJournal} to a target {@link Persistence},
+ * such as the central Mongo database, in batches. The sequence number of
+ * the last change shipped is kept in a cursor file, which is only updated
+ * after the target has accepted a batch. So delivery is at least once:
+ * after a failure, the next sync sends the whole batch again. This is safe
+ * because the target's saves are upserts: invoices by number, and
+ * customers by name.
+ *
+ * We force each batch to disk in the journal before shipping it. Otherwise
+ * a power failure could lose changes that the cursor says were shipped,
+ * and the journal would then hand out their sequence numbers again to
+ * new changes, which we would never ship.
+ *
+ * Within a batch, customers are saved before invoices, so that invoices
+ * can refer to customers that are new in the same batch; and only the
+ * latest change to each record is sent. If any change in a batch can't
+ * be parsed, the whole batch fails, and the cursor stays where it was.
+ *
+ * @author Will Provost
+ */
+@Log
+public class ChangeSync {
+
+	private ChangeJournal journal;
+	private Persistence target;
+	private Path cursorFile;
+
+	@Getter
+	@Setter
+	private int batchSize = 1000;
+
+	@Getter
+	@Setter
+	private boolean compactWhenCaughtUp = true;
+
+	public ChangeSync(ChangeJournal journal, Persistence target, Path cursorFile) {
+		this.journal = journal;
+		this.target = target;
+		this.cursorFile = cursorFile;
+	}
+
+	/**
+	 * Returns the sequence number of the last change that the target
+	 * has accepted, or zero if none.
+	 */
+	public long getShippedSequence() throws IOException {
+		return Files.exists(cursorFile)
+				? Long.parseLong(Files.readString(cursorFile).trim())
+				: 0;
+	}
+
+	/**
+	 * Helper to record the cursor durably: write a temporary file, force it
+	 * to disk, and rename it over the old cursor.
+	 */
+	private void setShippedSequence(long sequence) throws IOException {
+		Path absolute = cursorFile.toAbsolutePath();
+		Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+		try ( FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING); ) {
+			channel.write(ByteBuffer.wrap
+					(Long.toString(sequence).getBytes(StandardCharsets.UTF_8)));
+			channel.force(true);
+		}
+		Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Ships the next batch of changes, if there are any, and returns
+	 * the number of changes shipped.
+	 */
+	public int syncBatch() throws IOException {
+		long shipped = getShippedSequence();
+		List<Change> changes = journal.read(shipped, batchSize);
+		if (changes.isEmpty()) {
+			return 0;
+		}
+
+		long last = changes.get(changes.size() - 1).getSequence();
+		journal.sync(last);
+
+		Map<String,Customer> customers = ChangeJournal.customersIn(changes);
+		if (!customers.isEmpty()) {
+			target.saveCustomers(customers.values());
+		}
+
+		Map<Integer,Invoice> invoices =
+				ChangeJournal.invoicesIn(changes, target.getCustomers());
+		if (!invoices.isEmpty()) {
+			target.saveInvoices(invoices.values());
+		}
+
+		setShippedSequence(last);
+		log.fine(() -> String.format("Shipped changes %,d to %,d: " +
+				"%,d customers and %,d invoices", shipped + 1, last,
+				customers.size(), invoices.size()));
+		return changes.size();
+	}
+
+	/**
+	 * Ships batches until the target has caught up with the journal,
+	 * and returns the number of changes shipped. If configured to do so,
+	 * we then compact the journal to discard the shipped changes.
+	 */
+	public long syncAll() throws IOException {
+		long total = 0;
+		int count;
+		while ((count = syncBatch()) != 0) {
+			total += count;
+		}
+
+		if (compactWhenCaughtUp && total != 0) {
+			journal.compact(getShippedSequence());
+		}
+		return total;
+	}
+}
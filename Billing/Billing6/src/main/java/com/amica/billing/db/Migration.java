@@ -2,38 +2,183 @@ package com.amica.billing.db;
 
 import com.amica.billing.Customer;
 import com.amica.billing.Invoice;
-import com.amica.billing.db.mongo.MongoPersistence;
-import com.amica.billing.parse.ParserPersistence;
+import com.amica.billing.ParserFactory;
+import com.amica.billing.parse.Parser;
+import lombok.Setter;
+import lombok.extern.java.Log;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Migrates customers and invoices from text files to the repositories,
+//in batches, recording a durable checkpoint after each batch.  If a run
+//fails, the next run resumes from the byte offset in the checkpoint.
+//Writes are idempotent: invoices are upserted by number, and customers
+//that already exist (by name) are reused rather than inserted again,
+//so re-migrating a batch after a crash does no harm.
 @Component
+@Log
 public class Migration {
 
-    @Autowired
     private CustomerRepository customerRepository;
-    @Autowired
     private InvoiceRepository invoiceRepository;
+
+    @Setter
+    @Value("${ParserPersistence.customersFile}")
+    private String customersFile;
+
+    @Setter
+    @Value("${ParserPersistence.invoicesFile}")
+    private String invoicesFile;
+
+    @Setter
+    @Value("${Migration.checkpointFile:migration.checkpoint}")
+    private String checkpointFile = "migration.checkpoint";
+
+    @Setter
+    @Value("${Migration.batchSize:10000}")
+    private int batchSize = 10000;
+
     @Autowired
-    private ParserPersistence source;
-    @Autowired
-    private MongoPersistence target;
+    public Migration(CustomerRepository customerRepository, InvoiceRepository invoiceRepository){
+        this.customerRepository = customerRepository;
+        this.invoiceRepository = invoiceRepository;
+    }
+
+    //Reads lines from a file channel, keeping track of the byte offset
+    //just past the last line read
+    private static class LineReader {
+
+        private InputStream in;
+        private long offset;
+        private ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        public LineReader(FileChannel channel, long offset) throws IOException {
+            channel.position(offset);
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), 65536);
+            this.offset = offset;
+        }
 
-    public void migrate(){
+        public String readLine() throws IOException {
+            line.reset();
+            int b;
+            while( (b = in.read()) != -1 ){
+                ++offset;
+                if( b == '\n' ){
+                    break;
+                }
+                line.write(b);
+            }
+            if( b == -1 && line.size() == 0 ){
+                return null;
+            }
+
+            String result = line.toString(StandardCharsets.UTF_8);
+            return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+        }
+    }
+
+    //Customers are few enough to migrate in one pass, every time.
+    //Returns all customers in the target, by name, for resolving invoices.
+    private Map<String,Customer> migrateCustomers(Parser parser) throws IOException {
+        Map<String,Customer> customers;
+        try( Stream<Customer> existing = customerRepository.streamAllBy() ){
+            customers = existing.collect(Collectors.toMap
+                    (Customer::getName, Function.identity(), (a, b) -> a));
+        }
+
+        List<Customer> newCustomers;
+        try( Stream<String> lines = Files.lines(Paths.get(customersFile)) ){
+            newCustomers = parser.parseCustomers(lines)
+                    .filter(customer -> !customers.containsKey(customer.getName()))
+                    .toList();
+        }
+        if( !newCustomers.isEmpty() ){
+            customerRepository.saveAll(newCustomers);
+            newCustomers.forEach(customer -> customers.put(customer.getName(), customer));
+        }
+
+        log.info(() -> String.format("Migrated %,d new customers; %,d in total",
+                newCustomers.size(), customers.size()));
+        return customers;
+    }
+
+    //Starts over from an empty target, as migrate() used to do every time
+    public void remigrate() throws IOException {
+        Files.deleteIfExists(Paths.get(checkpointFile));
         invoiceRepository.deleteAll();
         customerRepository.deleteAll();
+        migrate();
+    }
 
-        source.load();
-        target.load();
+    public void migrate() throws IOException {
+        Path source = Paths.get(invoicesFile);
+        Path checkpointPath = Paths.get(checkpointFile);
+        MigrationCheckpoint checkpoint = MigrationCheckpoint.load(checkpointPath)
+                .filter(loaded -> {
+                    try{
+                        return loaded.isFor(source);
+                    }catch(IOException ex){
+                        return false;
+                    }
+                })
+                .orElse(MigrationCheckpoint.start(source));
 
-        for( Customer customer : source.getCustomers().values() ){
-            target.saveCustomer(customer);
+        if( checkpoint.isComplete() ){
+            log.info(() -> "Migration of " + source + " is already complete");
+            return;
+        }
+        if( checkpoint.getOffset() != 0 ){
+            log.info(() -> String.format("Resuming migration of %s after %,d lines",
+                    source, checkpoint.getLines()));
         }
 
-        for( Invoice invoice : source.getInvoices().values() ){
-            target.saveInvoice(invoice);
+        Parser parser = ParserFactory.createParser(source);
+        Map<String,Customer> customers = migrateCustomers(parser);
+
+        try( FileChannel channel = FileChannel.open(source, StandardOpenOption.READ) ){
+            LineReader reader = new LineReader(channel, checkpoint.getOffset());
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            do{
+                line = reader.readLine();
+                if( line != null ){
+                    batch.add(line);
+                }
+                if( batch.size() == batchSize || (line == null && !batch.isEmpty()) ){
+                    List<Invoice> invoices = parser.parseInvoices(batch.stream(), customers).toList();
+                    invoiceRepository.saveAll(invoices);
+                    checkpoint.advance(reader.offset, batch.size(), invoices.size());
+                    checkpoint.save(checkpointPath);
+                    log.fine(() -> String.format("Checkpoint: %,d lines, %,d invoices",
+                            checkpoint.getLines(), checkpoint.getInvoices()));
+                    batch.clear();
+                }
+            }while( line != null );
         }
 
+        checkpoint.markComplete();
+        checkpoint.save(checkpointPath);
+        log.info(() -> String.format("Migrated %,d invoices from %,d lines of %s",
+                checkpoint.getInvoices(), checkpoint.getLines(), source));
     }
 
 }
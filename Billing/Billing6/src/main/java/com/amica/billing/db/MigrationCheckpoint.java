@@ -0,0 +1,128 @@
+package com.amica.billing.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.Properties;
+
+import lombok.Getter;
+
+/**
+ * Durable record of how far a {@link Migration} has gotten through its
+ * source file: the byte offset of the next line to migrate, and how many
+ * lines and invoices are behind it. We also record the size and
+ * modification time of the source file, so that a checkpoint taken
+ * against one version of the file isn't used to resume another.
+ * Checkpoints are written to a temporary file, forced to disk, and then
+ * renamed over the previous checkpoint, so that a crash leaves either
+ * the old checkpoint or the new one, never a partial file.
+ *
+ * @author Will Provost
+ */
+@Getter
+public class MigrationCheckpoint {
+
+	private String source;
+	private long sourceSize;
+	private long sourceModified;
+	private long offset;
+	private long lines;
+	private long invoices;
+	private boolean complete;
+
+	/**
+	 * Creates a checkpoint at the start of the given source file.
+	 */
+	public static MigrationCheckpoint start(Path sourceFile) throws IOException {
+		BasicFileAttributes attributes =
+				Files.readAttributes(sourceFile, BasicFileAttributes.class);
+		MigrationCheckpoint checkpoint = new MigrationCheckpoint();
+		checkpoint.source = sourceFile.toAbsolutePath().normalize().toString();
+		checkpoint.sourceSize = attributes.size();
+		checkpoint.sourceModified = attributes.lastModifiedTime().toMillis();
+		return checkpoint;
+	}
+
+	/**
+	 * Reads the checkpoint in the given file, if there is one.
+	 */
+	public static Optional<MigrationCheckpoint> load(Path checkpointFile)
+			throws IOException {
+		if (!Files.exists(checkpointFile)) {
+			return Optional.empty();
+		}
+
+		Properties properties = new Properties();
+		try ( InputStream in = Files.newInputStream(checkpointFile); ) {
+			properties.load(in);
+		}
+		MigrationCheckpoint checkpoint = new MigrationCheckpoint();
+		checkpoint.source = properties.getProperty("source");
+		checkpoint.sourceSize = Long.parseLong(properties.getProperty("sourceSize"));
+		checkpoint.sourceModified =
+				Long.parseLong(properties.getProperty("sourceModified"));
+		checkpoint.offset = Long.parseLong(properties.getProperty("offset"));
+		checkpoint.lines = Long.parseLong(properties.getProperty("lines"));
+		checkpoint.invoices = Long.parseLong(properties.getProperty("invoices"));
+		checkpoint.complete = Boolean.parseBoolean(properties.getProperty("complete"));
+		return Optional.of(checkpoint);
+	}
+
+	/**
+	 * Tells whether this checkpoint was taken against the given file,
+	 * as it is now.
+	 */
+	public boolean isFor(Path sourceFile) throws IOException {
+		MigrationCheckpoint current = start(sourceFile);
+		return current.source.equals(source) &&
+				current.sourceSize == sourceSize &&
+				current.sourceModified == sourceModified;
+	}
+
+	/**
+	 * Moves the checkpoint past a batch of lines.
+	 */
+	public void advance(long newOffset, long linesRead, long invoicesWritten) {
+		offset = newOffset;
+		lines += linesRead;
+		invoices += invoicesWritten;
+	}
+
+	public void markComplete() {
+		complete = true;
+	}
+
+	/**
+	 * Writes this checkpoint durably to the given file.
+	 */
+	public void save(Path checkpointFile) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("source", source);
+		properties.setProperty("sourceSize", Long.toString(sourceSize));
+		properties.setProperty("sourceModified", Long.toString(sourceModified));
+		properties.setProperty("offset", Long.toString(offset));
+		properties.setProperty("lines", Long.toString(lines));
+		properties.setProperty("invoices", Long.toString(invoices));
+		properties.setProperty("complete", Boolean.toString(complete));
+
+		Path absolute = checkpointFile.toAbsolutePath();
+		Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+		try ( FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				OutputStream out = Channels.newOutputStream(channel); ) {
+			properties.store(out, "Migration checkpoint");
+			out.flush();
+			channel.force(true);
+		}
+		Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
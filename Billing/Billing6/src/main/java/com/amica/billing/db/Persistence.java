@@ -1,9 +1,13 @@
 package com.amica.billing.db;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import com.amica.billing.Customer;
 import com.amica.billing.Invoice;
+import com.amica.billing.InvoiceQuery;
 
 /**
  * Strategy for loading and saving data.
@@ -31,4 +35,29 @@ public interface Persistence {
 	 * Updates an invoice with the same number, or inserts a new invoice.
 	 */
 	public void saveInvoice(Invoice invoice);
+	
+	/**
+	 * Saves a batch of customers. By default we save them one at a time;
+	 * implementations that can write in bulk should override this.
+	 */
+	public default void saveCustomers(Collection<Customer> customers) {
+		customers.forEach(this::saveCustomer);
+	}
+	
+	/**
+	 * Saves a batch of invoices. By default we save them one at a time;
+	 * implementations that can write in bulk should override this.
+	 */
+	public default void saveInvoices(Collection<Invoice> invoices) {
+		invoices.forEach(this::saveInvoice);
+	}
+	
+	/**
+	 * Evaluates the given query in the underlying store, if this service
+	 * is able to do that. Returns an empty optional by default, in which
+	 * case the caller should evaluate the query itself.
+	 */
+	public default Optional<Stream<Invoice>> findInvoices(InvoiceQuery query) {
+		return Optional.empty();
+	}
 }
@@ -0,0 +1,99 @@
+package com.amica.billing.db.mongo;
+
+import com.amica.billing.Invoice;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.java.Log;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+//Invoices used to be stored with LocalDate fields issueDate and paidDate,
+//which Spring Data writes as dates at the start of the day in the default
+//time zone.  Invoices are now stored with epoch-day ints issueDay and paidDay.
+//This rewrites any invoice documents still in the old form, in place,
+//and is safe to run again: documents already in the new form are skipped.
+@Component
+@Log
+public class InvoiceSchemaMigration {
+
+    public static final String OLD_ISSUE_FIELD = "issueDate";
+    public static final String OLD_PAID_FIELD = "paidDate";
+    public static final String ISSUE_FIELD = "issueDay";
+    public static final String PAID_FIELD = "paidDay";
+    public static final int BATCH_SIZE = 1000;
+
+    private MongoTemplate template;
+
+    @Autowired
+    public InvoiceSchemaMigration(MongoTemplate template){
+        this.template = template;
+    }
+
+    private static int toEpochDay(Date date){
+        return (int) date.toInstant().atZone(ZoneId.systemDefault())
+                .toLocalDate().toEpochDay();
+    }
+
+    //Builds the update for one document in the old form, or returns empty
+    //if the document is already in the new form
+    static Optional<Document> getUpdate(Document invoice){
+        if( !invoice.containsKey(OLD_ISSUE_FIELD) ){
+            return Optional.empty();
+        }
+
+        Object issued = invoice.get(OLD_ISSUE_FIELD);
+        Object paid = invoice.get(OLD_PAID_FIELD);
+        if( !(issued instanceof Date) || (paid != null && !(paid instanceof Date)) ){
+            throw new IllegalStateException("Can't migrate invoice " +
+                    invoice.get("_id") + " with dates " + issued + " and " + paid);
+        }
+
+        Document set = new Document(ISSUE_FIELD, toEpochDay((Date) issued))
+                .append(PAID_FIELD, paid != null ? toEpochDay((Date) paid) : Invoice.NOT_PAID);
+        Document unset = new Document(OLD_ISSUE_FIELD, "").append(OLD_PAID_FIELD, "");
+        return Optional.of(new Document("$set", set).append("$unset", unset));
+    }
+
+    //Returns the number of invoices migrated
+    public long migrate(){
+        MongoCollection<Document> collection =
+                template.getCollection(template.getCollectionName(Invoice.class));
+        long migrated = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+        try( MongoCursor<Document> cursor =
+                collection.find(Filters.exists(OLD_ISSUE_FIELD)).iterator() ){
+            while( cursor.hasNext() ){
+                Document invoice = cursor.next();
+                Optional<Document> update = getUpdate(invoice);
+                if( update.isPresent() ){
+                    batch.add(new UpdateOneModel<>(
+                            Filters.eq("_id", invoice.get("_id")), update.get()));
+                }
+                if( batch.size() == BATCH_SIZE ){
+                    migrated += collection.bulkWrite(batch).getModifiedCount();
+                    batch.clear();
+                }
+            }
+        }
+        if( !batch.isEmpty() ){
+            migrated += collection.bulkWrite(batch).getModifiedCount();
+        }
+
+        if( migrated != 0 ){
+            long count = migrated;
+            log.info(() -> String.format("Migrated %,d invoices to epoch-day dates", count));
+        }
+        return migrated;
+    }
+}
@@ -3,21 +3,27 @@ package com.amica.billing.db.mongo;
 import com.amica.billing.db.CustomerRepository;
 import com.amica.billing.db.InvoiceRepository;
 import com.amica.billing.db.Migration;
-import com.amica.billing.parse.ParserPersistence;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
-@ComponentScan(basePackageClasses={CustomerRepository.class, ParserPersistence.class})
+import java.io.IOException;
+
+//Migration reads the source files and writes the repositories directly,
+//so we don't scan the persistence components, which load everything
+@ComponentScan(basePackageClasses=CustomerRepository.class,
+        excludeFilters=@ComponentScan.Filter(type=FilterType.ASSIGNABLE_TYPE,
+                classes=MongoPersistence.class))
 @EnableAutoConfiguration
 @EnableMongoRepositories(basePackageClasses=CustomerRepository.class)
 @PropertySource(value= {"classpath:DB.properties","classpath:migration.properties"})
 public class MigrateCSVToMongo {
 
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException {
         try( ConfigurableApplicationContext context = SpringApplication.run(MigrateCSVToMongo.class) ){
             Migration migration = context.getBean(Migration.class);
             CustomerRepository customerRepo = context.getBean(CustomerRepository.class);
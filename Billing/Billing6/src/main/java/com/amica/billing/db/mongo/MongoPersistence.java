@@ -2,17 +2,28 @@ package com.amica.billing.db.mongo;
 
 import com.amica.billing.Customer;
 import com.amica.billing.Invoice;
+import com.amica.billing.InvoiceQuery;
 import com.amica.billing.db.CachingPersistence;
 import com.amica.billing.db.CustomerRepository;
 import com.amica.billing.db.InvoiceRepository;
+import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 @Component
@@ -22,12 +33,41 @@ public class MongoPersistence extends CachingPersistence {
     @Autowired
     private ApplicationContext context;
 
+    @Setter
+    @Value("${MongoPersistence.pushDownQueries:true}")
+    private boolean pushDownQueries = true;
+
+    //Brings any invoices stored in the old date format up to date
+    //before we read them
     @PostConstruct
     @Override
     public void load(){
+        context.getBean(InvoiceSchemaMigration.class).migrate();
         super.load();
     }
 
+    //Customers are keyed by name, but their documents by generated ID:
+    //a customer saved again under the same name takes over the ID,
+    //so that it updates the existing document rather than adding another
+    private void keepID(Customer customer){
+        Customer existing = customers.get(customer.getName());
+        if( existing != null && existing != customer && customer.get_id() == null ){
+            customer.set_id(existing.get_id());
+        }
+    }
+
+    @Override
+    public void saveCustomer(Customer customer){
+        keepID(customer);
+        super.saveCustomer(customer);
+    }
+
+    @Override
+    public void saveCustomers(Collection<Customer> batch){
+        batch.forEach(this::keepID);
+        super.saveCustomers(batch);
+    }
+
     protected Stream<Customer> readCustomers(){
         CustomerRepository customerRepo = context.getBean(CustomerRepository.class);
         return customerRepo.streamAllBy();
@@ -48,4 +88,91 @@ public class MongoPersistence extends CachingPersistence {
         invoiceRepo.save(invoice);
     }
 
+    @Override
+    protected void writeCustomers(Collection<Customer> batch){
+        CustomerRepository customerRepo = context.getBean(CustomerRepository.class);
+        customerRepo.saveAll(batch);
+    }
+
+    @Override
+    protected void writeInvoices(Collection<Invoice> batch){
+        InvoiceRepository invoiceRepo = context.getBean(InvoiceRepository.class);
+        invoiceRepo.saveAll(batch);
+    }
+
+    //Customer and terms filters become a single "in" criterion over the
+    //referenced customers, since terms live on the customer document.
+    //We can only refer to customers that have been saved, and so have IDs.
+    private Optional<List<Customer>> getCustomerCriterion(InvoiceQuery query){
+        Stream<Customer> candidates = query.getCustomer() != null
+                ? Stream.of(customers.get(query.getCustomer().getName()))
+                : customers.values().stream();
+        if( query.getTerms() != null ){
+            candidates = candidates.filter(c -> c == null || query.getTerms().contains(c.getTerms()));
+        }
+
+        List<Customer> result = candidates.toList();
+        return result.stream().allMatch(c -> c != null && c.get_id() != null)
+                ? Optional.of(result)
+                : Optional.empty();
+    }
+
+    private static String getSortField(InvoiceQuery.Order order){
+        switch( order ){
+            case NUMBER: return "_id";
+            case ISSUE_DATE: return "issueDay";
+            default: return "amount";
+        }
+    }
+
+    //Translates the query to Mongo criteria and asks only for invoice numbers,
+    //which we then resolve to our cached invoices.  Can be switched off,
+    //in which case Billing evaluates queries against the cache.
+    @Override
+    public Optional<Stream<Invoice>> findInvoices(InvoiceQuery query){
+        if( !pushDownQueries ){
+            return Optional.empty();
+        }
+
+        Query mongoQuery = new Query();
+        if( query.getCustomer() != null || query.getTerms() != null ){
+            Optional<List<Customer>> candidates = getCustomerCriterion(query);
+            if( candidates.isEmpty() ){
+                return Optional.empty();
+            }
+            mongoQuery.addCriteria(Criteria.where("customer").in(candidates.get()));
+        }
+        if( query.hasNumberRange() ){
+            mongoQuery.addCriteria(Criteria.where("_id")
+                    .gte(query.getMinNumber()).lte(query.getMaxNumber()));
+        }
+        if( query.hasIssueDateRange() ){
+            mongoQuery.addCriteria(Criteria.where("issueDay")
+                    .gte(query.getIssuedFromDay()).lte(query.getIssuedToDay()));
+        }
+        if( query.hasAmountRange() ){
+            mongoQuery.addCriteria(Criteria.where("amount")
+                    .gte(query.getMinAmount()).lte(query.getMaxAmount()));
+        }
+        if( query.getPaid() != null ){
+            mongoQuery.addCriteria(query.getPaid()
+                    ? Criteria.where("paidDay").ne(Invoice.NOT_PAID)
+                    : Criteria.where("paidDay").is(Invoice.NOT_PAID));
+        }
+        if( query.getOrder() != null ){
+            mongoQuery.with(Sort.by(query.isDescending() ? Sort.Direction.DESC : Sort.Direction.ASC,
+                    getSortField(query.getOrder())));
+        }
+        if( query.hasLimit() ){
+            mongoQuery.limit(query.getLimit());
+        }
+        mongoQuery.fields().include("_id");
+
+        MongoTemplate template = context.getBean(MongoTemplate.class);
+        List<Invoice> found = template.find(mongoQuery, Invoice.class);
+        return Optional.of(found.stream()
+                .map(invoice -> invoices.get(invoice.getNumber()))
+                .filter(Objects::nonNull));
+    }
+
 }
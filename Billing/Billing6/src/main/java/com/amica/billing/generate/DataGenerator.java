@@ -0,0 +1,316 @@
+package com.amica.billing.generate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.ParserFactory;
+import com.amica.billing.Terms;
+import com.amica.billing.parse.Parser;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+/**
+ * Generates realistic synthetic customers and invoices, at any scale,
+ * for load testing and capacity planning.
+ * <ul>
+ *   <li>Customer activity is skewed: the customer of each invoice is
+ *       drawn from a Zipf distribution, so a few customers account for
+ *       much of the business and many customers have few invoices.</li>
+ *   <li>Customers get a realistic mix of {@link Terms}.</li>
+ *   <li>Amounts follow a log-normal distribution.</li>
+ *   <li>A configurable share of invoices are paid, most of them on time
+ *       but some late; invoices that would be paid after the end of the
+ *       date range are left unpaid.</li>
+ * </ul>
+ * Invoices are generated in fixed-size chunks, each with its own random
+ * generator seeded from the chunk index; so chunks can be generated in
+ * parallel and the results are the same for a given seed regardless of
+ * the degree of parallelism. When writing files, we format a batch of
+ * chunks at a time in parallel, using whichever parser
+ * {@link ParserFactory} chooses for the filename, and write each chunk
+ * as a single buffer to a {@link FileChannel}; so memory use is bounded
+ * no matter how many invoices we write.
+ *
+ * @author Will Provost
+ */
+@Getter
+@Setter
+@Log
+public class DataGenerator {
+
+	public static final int CHUNK_SIZE = 10000;
+	public static final int CHUNKS_PER_BATCH =
+			ForkJoinPool.getCommonPoolParallelism() * 4;
+	public static final int DEFAULT_INVOICES_PER_CUSTOMER = 100;
+	public static final double AMOUNT_SIGMA = .75;
+
+	public static final List<String> FIRST_NAMES = List.of
+			("James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+			 "Michael", "Linda", "David", "Barbara", "William", "Susan",
+			 "Richard", "Jessica", "Joseph", "Sarah", "Thomas", "Karen",
+			 "Charles", "Lisa", "Daniel", "Nancy", "Matthew", "Betty",
+			 "Anthony", "Sandra", "Mark", "Ashley", "Steven", "Emily",
+			 "Paul", "Donna", "Andrew", "Michelle", "Joshua", "Carol");
+	public static final List<String> LAST_NAMES = List.of
+			("Smith", "Johnson", "Brown", "Jones", "Garcia", "Miller",
+			 "Davis", "Wilson", "Moore", "Taylor", "Thomas", "Jackson",
+			 "White", "Harris", "Martin", "Clark", "Lewis", "Lee",
+			 "Walker", "Hall", "Allen", "Young", "King", "Wright",
+			 "Scott", "Green", "Baker", "Adams", "Nelson", "Hill");
+
+	/**
+	 * Cumulative probabilities for the values of {@link Terms},
+	 * in declaration order: 10% cash, 40% 30 days, 20% 45 days,
+	 * 20% 60 days, 10% 90 days.
+	 */
+	private static final double[] TERMS_DISTRIBUTION =
+			{ .1, .5, .7, .9, 1.0 };
+
+	private int invoiceCount = 1000000;
+	private int customerCount = -1;
+	private double paidRatio = .7;
+	private double lateRatio = .2;
+	private double skew = 1.0;
+	private double medianAmount = 500;
+	private LocalDate startDate = LocalDate.of(2020, 1, 1);
+	private LocalDate endDate = LocalDate.of(2022, 1, 8);
+	private long seed = 8675309;
+
+	/**
+	 * Returns the configured number of customers, or one customer per
+	 * {@link #DEFAULT_INVOICES_PER_CUSTOMER} invoices if not configured.
+	 */
+	public int getCustomerCount() {
+		return customerCount > 0 ? customerCount
+				: Math.max(1, invoiceCount / DEFAULT_INVOICES_PER_CUSTOMER);
+	}
+
+	/**
+	 * Helper to derive a unique name for the customer at the given index.
+	 * Names are drawn from short lists of common names; once we run out
+	 * of combinations, we add a number to the last name.
+	 */
+	private static Customer createCustomer(int index, Terms terms) {
+		int combinations = FIRST_NAMES.size() * LAST_NAMES.size();
+		int round = index / combinations;
+		int combination = index % combinations;
+		String lastName = LAST_NAMES.get(combination / FIRST_NAMES.size());
+		return new Customer(FIRST_NAMES.get(combination % FIRST_NAMES.size()),
+				round == 0 ? lastName : lastName + round, terms);
+	}
+
+	/**
+	 * Helper to draw a value from a cumulative distribution.
+	 */
+	private static int draw(double[] cumulative, double value) {
+		int index = Arrays.binarySearch(cumulative, value);
+		return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+	}
+
+	/**
+	 * Generates the configured number of customers.
+	 */
+	public List<Customer> generateCustomers() {
+		SplittableRandom random = new SplittableRandom(seed);
+		Terms[] allTerms = Terms.values();
+		List<Customer> customers = new ArrayList<>(getCustomerCount());
+		for (int c = 0; c < getCustomerCount(); ++c) {
+			customers.add(createCustomer(c,
+					allTerms[draw(TERMS_DISTRIBUTION, random.nextDouble())]));
+		}
+		return customers;
+	}
+
+	/**
+	 * Helper to build the cumulative Zipf distribution over customers,
+	 * in which the customer at index i has weight 1 / (i + 1)^skew.
+	 */
+	private double[] getActivityDistribution(int customers) {
+		double[] cumulative = new double[customers];
+		double total = 0;
+		for (int c = 0; c < customers; ++c) {
+			total += 1.0 / Math.pow(c + 1, skew);
+			cumulative[c] = total;
+		}
+		for (int c = 0; c < customers; ++c) {
+			cumulative[c] /= total;
+		}
+		return cumulative;
+	}
+
+	/**
+	 * Helper to generate one chunk of invoices.
+	 */
+	private List<Invoice> generateChunk(int chunk, List<Customer> customers,
+			double[] activity) {
+		SplittableRandom random = new SplittableRandom(seed + chunk + 1);
+		int first = chunk * CHUNK_SIZE + 1;
+		int last = Math.min(first + CHUNK_SIZE - 1, invoiceCount);
+		int startDay = (int) startDate.toEpochDay();
+		int endDay = (int) endDate.toEpochDay();
+		double logMedian = Math.log(medianAmount);
+
+		List<Invoice> invoices = new ArrayList<>(last - first + 1);
+		for (int number = first; number <= last; ++number) {
+			Customer customer = customers.get(draw(activity, random.nextDouble()));
+			int issueDay = random.nextInt(startDay, endDay + 1);
+			double amount = Math.min(99999.99, Math.round
+					(Math.exp(logMedian + random.nextGaussian() * AMOUNT_SIGMA) * 100) / 100.0);
+
+			int paidDay = Invoice.NOT_PAID;
+			if (random.nextDouble() < paidRatio) {
+				int termsDays = customer.getTerms().getDays();
+				paidDay = issueDay + (random.nextDouble() < lateRatio
+						? termsDays + 1 + random.nextInt(60)
+						: random.nextInt(termsDays + 1));
+				if (paidDay > endDay) {
+					paidDay = Invoice.NOT_PAID;
+				}
+			}
+
+			invoices.add(new Invoice(number, customer, amount, issueDay, paidDay));
+		}
+		return invoices;
+	}
+
+	/**
+	 * Helper to find the number of chunks for the configured invoice count.
+	 */
+	private int getChunkCount() {
+		return (invoiceCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	/**
+	 * Generates the configured number of invoices for the given customers,
+	 * as a parallel stream in order of invoice number.
+	 */
+	public Stream<Invoice> generateInvoices(List<Customer> customers) {
+		double[] activity = getActivityDistribution(customers.size());
+		return IntStream.range(0, getChunkCount()).parallel()
+				.mapToObj(chunk -> generateChunk(chunk, customers, activity))
+				.flatMap(List::stream);
+	}
+
+	/**
+	 * Helper to check that the parser can represent the given invoice,
+	 * by producing it and parsing it back. This catches formats that
+	 * can't hold numbers as large as we want to generate.
+	 */
+	private static void checkFormat(Parser parser, Invoice invoice,
+			Map<String,Customer> customers, String filename) {
+		List<Invoice> roundTrip = parser.parseInvoices(parser.produceInvoices
+				(Stream.of(invoice)), customers).toList();
+		if (roundTrip.size() != 1 ||
+				roundTrip.get(0).getNumber() != invoice.getNumber()) {
+			throw new IllegalArgumentException("The format chosen for " +
+					filename + " can't represent invoice " + invoice.getNumber());
+		}
+	}
+
+	/**
+	 * Helper to encode lines of text as one buffer.
+	 */
+	private static ByteBuffer encode(Stream<String> lines) {
+		StringBuilder builder = new StringBuilder();
+		lines.forEach(line -> builder.append(line).append(System.lineSeparator()));
+		return ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Helper to write a buffer in full to the given channel.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Generates customers and invoices and writes them to the given files,
+	 * in the formats that {@link ParserFactory} selects for the filenames.
+	 */
+	public void write(Path customersFile, Path invoicesFile) throws IOException {
+		List<Customer> customers = generateCustomers();
+		Map<String,Customer> customerMap = customers.stream()
+				.collect(Collectors.toMap(Customer::getName, c -> c));
+		double[] activity = getActivityDistribution(customers.size());
+
+		Parser customerParser = ParserFactory.createParser
+				(customersFile.getFileName().toString());
+		try ( FileChannel channel = FileChannel.open(customersFile,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING); ) {
+			writeFully(channel, encode(customerParser.produceCustomers
+					(customers.stream())));
+		}
+
+		Parser invoiceParser = ParserFactory.createParser
+				(invoicesFile.getFileName().toString());
+		if (invoiceCount != 0) {
+			checkFormat(invoiceParser, new Invoice(invoiceCount, customers.get(0),
+					medianAmount, startDate), customerMap,
+					invoicesFile.getFileName().toString());
+		}
+
+		try ( FileChannel channel = FileChannel.open(invoicesFile,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING); ) {
+			for (int batch = 0; batch < getChunkCount(); batch += CHUNKS_PER_BATCH) {
+				List<ByteBuffer> buffers = IntStream.range(batch,
+						Math.min(batch + CHUNKS_PER_BATCH, getChunkCount()))
+					.parallel()
+					.mapToObj(chunk -> encode(invoiceParser.produceInvoices
+						(generateChunk(chunk, customers, activity).stream())))
+					.toList();
+				for (ByteBuffer buffer : buffers) {
+					writeFully(channel, buffer);
+				}
+			}
+		}
+
+		log.info(() -> String.format("Wrote %,d customers to %s and %,d invoices to %s",
+				customers.size(), customersFile, invoiceCount, invoicesFile));
+	}
+
+	/**
+	 * Generates data files. Arguments are the customers file, the invoices
+	 * file, the number of invoices, and optionally the number of customers.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java " + DataGenerator.class.getName() +
+					" <customersFile> <invoicesFile> <invoiceCount> [<customerCount>]");
+			System.exit(-1);
+		}
+
+		DataGenerator generator = new DataGenerator();
+		generator.setInvoiceCount(Integer.parseInt(args[2]));
+		if (args.length > 3) {
+			generator.setCustomerCount(Integer.parseInt(args[3]));
+		}
+
+		long start = System.currentTimeMillis();
+		generator.write(Paths.get(args[0]), Paths.get(args[1]));
+		System.out.format("Generated in %,d ms%n", System.currentTimeMillis() - start);
+	}
+}
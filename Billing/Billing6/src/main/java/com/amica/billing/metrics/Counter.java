@@ -0,0 +1,30 @@
+package com.amica.billing.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events, or a running total such as a number of bytes,
+ * that can be updated cheaply from many threads.
+ *
+ * @author Will Provost
+ */
+public class Counter {
+
+	private LongAdder value = new LongAdder();
+
+	public void increment() {
+		value.increment();
+	}
+
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	public long getValue() {
+		return value.sum();
+	}
+
+	public void reset() {
+		value.reset();
+	}
+}
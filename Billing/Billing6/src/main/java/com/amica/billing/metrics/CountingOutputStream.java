@@ -0,0 +1,32 @@
+package com.amica.billing.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adds the number of bytes written through it to a {@link Counter}.
+ *
+ * @author Will Provost
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+	private Counter counter;
+
+	public CountingOutputStream(OutputStream out, Counter counter) {
+		super(out);
+		this.counter = counter;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		counter.increment();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		counter.add(len);
+	}
+}
@@ -0,0 +1,179 @@
+package com.amica.billing.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import lombok.extern.java.Log;
+
+/**
+ * Registry of named {@link Counter}s and {@link Timer}s for the billing
+ * component. Instrumented classes look up their metrics once, typically
+ * into static fields, and then update them directly.
+ * Metric names follow the pattern <code>Class.operation</code>, as do our
+ * configuration properties.
+ * Current values are available as maps from {@link #getCounters} and
+ * {@link #getTimers}, and over JMX as attributes of the MBean
+ * {@value #OBJECT_NAME}: one attribute per counter, and for each timer,
+ * attributes for count, mean, max, and percentiles, in microseconds.
+ *
+ * @author Will Provost
+ */
+@Log
+public class Metrics {
+
+	public static final String OBJECT_NAME = "com.amica.billing:type=Metrics";
+
+	private static Map<String,Counter> counters = new ConcurrentHashMap<>();
+	private static Map<String,Timer> timers = new ConcurrentHashMap<>();
+
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean
+				(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+		} catch (Exception ex) {
+			log.log(Level.WARNING, "Couldn't register metrics over JMX", ex);
+		}
+	}
+
+	/**
+	 * Returns the counter of the given name, creating it if necessary.
+	 */
+	public static Counter counter(String name) {
+		return counters.computeIfAbsent(name, k -> new Counter());
+	}
+
+	/**
+	 * Returns the timer of the given name, creating it if necessary.
+	 */
+	public static Timer timer(String name) {
+		return timers.computeIfAbsent(name, k -> new Timer());
+	}
+
+	/**
+	 * Returns current values of all counters, ordered by name.
+	 */
+	public static SortedMap<String,Long> getCounters() {
+		SortedMap<String,Long> result = new TreeMap<>();
+		counters.forEach((name, counter) -> result.put(name, counter.getValue()));
+		return Collections.unmodifiableSortedMap(result);
+	}
+
+	/**
+	 * Returns snapshots of all timers, ordered by name.
+	 */
+	public static SortedMap<String,Timer.Snapshot> getTimers() {
+		SortedMap<String,Timer.Snapshot> result = new TreeMap<>();
+		timers.forEach((name, timer) -> result.put(name, timer.snapshot()));
+		return Collections.unmodifiableSortedMap(result);
+	}
+
+	/**
+	 * Sets all counters and timers back to zero.
+	 */
+	public static void reset() {
+		counters.values().forEach(Counter::reset);
+		timers.values().forEach(Timer::reset);
+	}
+
+	/**
+	 * Exposes our metrics as read-only JMX attributes. The set of
+	 * attributes is computed from the registry every time it's requested,
+	 * so metrics created after registration are visible.
+	 */
+	private static class MetricsMBean implements DynamicMBean {
+
+		private static final Map<String,ToLongFunction<Timer.Snapshot>> TIMER_ATTRIBUTES =
+			Map.of("count", Timer.Snapshot::getCount,
+				"meanMicros", s -> Math.round(s.getMean() / 1000),
+				"maxMicros", s -> s.getMax() / 1000,
+				"p50Micros", s -> s.getP50() / 1000,
+				"p95Micros", s -> s.getP95() / 1000,
+				"p99Micros", s -> s.getP99() / 1000);
+
+		public Object getAttribute(String attribute)
+				throws AttributeNotFoundException {
+			if (counters.containsKey(attribute)) {
+				return counters.get(attribute).getValue();
+			}
+			int dot = attribute.lastIndexOf('.');
+			if (dot != -1 && timers.containsKey(attribute.substring(0, dot)) &&
+					TIMER_ATTRIBUTES.containsKey(attribute.substring(dot + 1))) {
+				return TIMER_ATTRIBUTES.get(attribute.substring(dot + 1))
+						.applyAsLong(timers.get(attribute.substring(0, dot)).snapshot());
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList result = new AttributeList();
+			for (String attribute : attributes) {
+				try {
+					result.add(new Attribute(attribute, getAttribute(attribute)));
+				} catch (AttributeNotFoundException ex) {
+					// Omitted from the list, per the DynamicMBean contract
+				}
+			}
+			return result;
+		}
+
+		public void setAttribute(Attribute attribute)
+				throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Metrics are read-only");
+		}
+
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		public Object invoke(String actionName, Object[] params, String[] signature)
+				throws ReflectionException {
+			if (actionName.equals("reset")) {
+				reset();
+				return null;
+			}
+			throw new ReflectionException(new NoSuchMethodException(actionName),
+					"No such operation: " + actionName);
+		}
+
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> attributes = new ArrayList<>();
+			for (String name : new TreeMap<>(counters).keySet()) {
+				attributes.add(new MBeanAttributeInfo(name, "long",
+						"Counter " + name, true, false, false));
+			}
+			for (String name : new TreeMap<>(timers).keySet()) {
+				for (String suffix : new TreeMap<>(TIMER_ATTRIBUTES).keySet()) {
+					attributes.add(new MBeanAttributeInfo(name + "." + suffix,
+							"long", "Timer " + name + ", " + suffix,
+							true, false, false));
+				}
+			}
+
+			return new MBeanInfo(Metrics.class.getName(),
+					"Billing metrics",
+					attributes.toArray(new MBeanAttributeInfo[0]), null,
+					new MBeanOperationInfo[] { new MBeanOperationInfo("reset",
+						"Sets all metrics back to zero", null, "void",
+						MBeanOperationInfo.ACTION) },
+					null);
+		}
+	}
+}
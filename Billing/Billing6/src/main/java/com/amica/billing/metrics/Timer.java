@@ -0,0 +1,135 @@
+package com.amica.billing.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Value;
+
+/**
+ * Records durations in a histogram, from which we can report count,
+ * mean, maximum, and approximate percentiles. Buckets are logarithmic:
+ * each power of two is split into {@link #SUB_BUCKETS} buckets, so
+ * any percentile we report is within about 20% of the true value.
+ * Every bucket is a {@link LongAdder}, so recording is cheap and
+ * doesn't contend between threads.
+ *
+ * @author Will Provost
+ */
+public class Timer {
+
+	public static final int SUB_BUCKET_BITS = 2;
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	public static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	/**
+	 * A point-in-time view of a timer. All durations are in nanoseconds.
+	 */
+	@Value
+	public static class Snapshot {
+		long count;
+		long total;
+		long max;
+		long p50;
+		long p95;
+		long p99;
+
+		public double getMean() {
+			return count != 0 ? (double) total / count : 0;
+		}
+	}
+
+	private LongAdder[] buckets = new LongAdder[BUCKETS];
+	private LongAdder count = new LongAdder();
+	private LongAdder total = new LongAdder();
+	private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Timer() {
+		for (int i = 0; i < buckets.length; ++i) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Helper to find the bucket for a duration: the position of the
+	 * highest bit selects the power of two, and the next bits below it
+	 * select the sub-bucket.
+	 */
+	static int bucketFor(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) Math.max(nanos, 0);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Helper to find the largest duration that falls in the given bucket.
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lower = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	public void record(long nanos) {
+		buckets[bucketFor(nanos)].increment();
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Records the time elapsed since the given value of
+	 * {@link System#nanoTime}.
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Helper to find the given percentile from a copy of the buckets.
+	 */
+	private static long percentile(long[] counts, long total, double percentile) {
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if (seen >= rank && seen != 0) {
+				return upperBoundOf(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns a snapshot of this timer. Updates that happen while we're
+	 * taking the snapshot may or may not be reflected in it.
+	 */
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		long bucketTotal = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			counts[i] = buckets[i].sum();
+			bucketTotal += counts[i];
+		}
+		long maximum = max.get();
+		return new Snapshot(count.sum(), total.sum(), maximum,
+				Math.min(maximum, percentile(counts, bucketTotal, 50)),
+				Math.min(maximum, percentile(counts, bucketTotal, 95)),
+				Math.min(maximum, percentile(counts, bucketTotal, 99)));
+	}
+
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		total.reset();
+		max.reset();
+	}
+}
@@ -1,23 +1,26 @@
 package com.amica.billing.parse;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import com.amica.billing.Customer;
 import com.amica.billing.Invoice;
 import com.amica.billing.Terms;
+import com.amica.billing.metrics.Counter;
+import com.amica.billing.metrics.Metrics;
 
-import lombok.extern.java.Log;
+import com.amica.billing.parse.ParseErrorSink.Reason;
 
 /**
  * A parser that can read a CSV format with certain expected columns.
  * 
  * @author Will Provost
  */
-@Log
 public class CSVParser implements Parser {
 
 	public static final int CUSTOMER_COLUMNS = 3;
@@ -33,12 +36,36 @@ public class CSVParser implements Parser {
 	public static final int INVOICE_DATE_COLUMN = 4;
 	public static final int INVOICE_PAID_DATE_COLUMN = 5;
 
+	private static final Counter CUSTOMERS_PARSED = 
+			Metrics.counter("CSVParser.customersParsed");
+	private static final Counter CUSTOMERS_REJECTED = 
+			Metrics.counter("CSVParser.customersRejected");
+	private static final Counter INVOICES_PARSED = 
+			Metrics.counter("CSVParser.invoicesParsed");
+	private static final Counter INVOICES_REJECTED = 
+			Metrics.counter("CSVParser.invoicesRejected");
+
+	private final Path quarantineFile;
+
+	public CSVParser() {
+		this(null);
+	}
+
+	/**
+	 * Creates a parser that copies lines it can't parse to the given file.
+	 */
+	public CSVParser(Path quarantineFile) {
+		this.quarantineFile = quarantineFile;
+	}
+
 	/**
 	 * Helper that can parse one line of comma-separated text in order to
-	 * produce a {@link Customer} object.
+	 * produce a {@link Customer} object. The line is first passed through
+	 * the given function, but if we reject it, we report the raw line.
 	 */
-	private Customer parseCustomer(String line) {
-		String[] fields = line.split(",");
+	private Customer parseCustomer(String rawLine, 
+			UnaryOperator<String> prepare, ParseErrorSink errors) {
+		String[] fields = prepare.apply(rawLine).split(",");
 		if (fields.length == CUSTOMER_COLUMNS) {
 			try {
 				String firstName = fields[CUSTOMER_FIRST_NAME_COLUMN];
@@ -48,14 +75,14 @@ public class CSVParser implements Parser {
 				Terms terms = termsString.equals(Terms.CASH.toString()) 
 						? Terms.CASH
 						: Terms.fromDays(Integer.parseInt(termsString));
+				CUSTOMERS_PARSED.increment();
+				errors.accept();
 				return new Customer(firstName, lastName, terms);
 			} catch (Exception ex) {
-				log.warning(() -> 
-					"Couldn't parse terms value, skipping customer: "+ line);
+				errors.reject(Reason.BAD_VALUE, rawLine);
 			}
 		} else {
-			log.warning(() -> 
-				"Incorrect number of fields, skipping customer: " + line);
+			errors.reject(Reason.WRONG_FIELD_COUNT, rawLine);
 		}
 
 		return null;
@@ -63,11 +90,13 @@ public class CSVParser implements Parser {
 
 	/**
 	 * Helper that can parse one line of comma-separated text in order to
-	 * produce an {@link Invoice} object.
+	 * produce an {@link Invoice} object. The line is first passed through
+	 * the given function, but if we reject it, we report the raw line.
 	 */
-	private Invoice parseInvoice(String line, Map<String, Customer> customers) {
+	private Invoice parseInvoice(String rawLine, Map<String, Customer> customers,
+			UnaryOperator<String> prepare, ParseErrorSink errors) {
 		DateTimeFormatter parser = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-		String[] fields = line.split(",");
+		String[] fields = prepare.apply(rawLine).split(",");
 		if (fields.length >= INVOICE_MIN_COLUMNS) {
 			try {
 				int number = Integer.parseInt(fields[INVOICE_NUMBER_COLUMN]);
@@ -83,18 +112,17 @@ public class CSVParser implements Parser {
 
 				Customer customer = customers.get(first + " " + last);
 				if (customer != null) {
+					INVOICES_PARSED.increment();
+					errors.accept();
 					return new Invoice(number, customer, amount, date, paidDate);
 				} else {
-					log.warning(() -> 
-						"Unknown customer, skipping invoice: " + line);
+					errors.reject(Reason.UNKNOWN_CUSTOMER, rawLine);
 				}
 			} catch (Exception ex) {
-				log.warning(() -> 
-					"Couldn't parse values, skipping invoice: " + line);
+				errors.reject(Reason.BAD_VALUE, rawLine);
 			}
 		} else {
-			log.warning(() -> 
-				"Incorrect number of fields, skipping invoice: " + line);
+			errors.reject(Reason.WRONG_FIELD_COUNT, rawLine);
 		}
 
 		return null;
@@ -124,13 +152,26 @@ public class CSVParser implements Parser {
 
 	/**
 	 * Consumes the given string streams and translates to {@link Customer}
-	 * objects.
+	 * objects. Lines that can't be parsed are skipped, and summarized
+	 * by a {@link ParseErrorSink}.
 	 */
 	public Stream<Customer> parseCustomers(Stream<String> customerLines) {
+		return parseCustomers(customerLines, UnaryOperator.identity());
+	}
 
-		return customerLines
-				.map(this::parseCustomer)
-				.filter(customer -> customer != null);
+	/**
+	 * Parses customers from lines that must first be passed through
+	 * the given function, such as to strip quotes; lines that are
+	 * rejected are quarantined as they were given to us.
+	 */
+	Stream<Customer> parseCustomers(Stream<String> customerLines,
+			UnaryOperator<String> prepare) {
+
+		ParseErrorSink errors = new ParseErrorSink
+				("customer", quarantineFile, CUSTOMERS_REJECTED);
+		return errors.finishWhenDone(customerLines
+				.map(line -> parseCustomer(line, prepare, errors))
+				.filter(customer -> customer != null));
 
 	}
 
@@ -138,16 +179,31 @@ public class CSVParser implements Parser {
 	 * Consumes the given string streams and translates to {@link Invoices}
 	 * objects.
 	 * 
+	 * Lines that can't be parsed are skipped, and summarized
+	 * by a {@link ParseErrorSink}.
+	 * 
 	 * @param customers
 	 *            We use this to translate the customer name to a reference to
 	 *            the already-loaded {@link Customer} object.
 	 */
 	public Stream<Invoice> parseInvoices(Stream<String> invoiceLines, 
 			Map<String, Customer> customers) {
+		return parseInvoices(invoiceLines, customers, UnaryOperator.identity());
+	}
 
-		return invoiceLines
-				.map(line -> parseInvoice(line, customers))
-				.filter(invoice -> invoice != null);
+	/**
+	 * Parses invoices from lines that must first be passed through
+	 * the given function, such as to strip quotes; lines that are
+	 * rejected are quarantined as they were given to us.
+	 */
+	Stream<Invoice> parseInvoices(Stream<String> invoiceLines, 
+			Map<String, Customer> customers, UnaryOperator<String> prepare) {
+
+		ParseErrorSink errors = new ParseErrorSink
+				("invoice", quarantineFile, INVOICES_REJECTED);
+		return errors.finishWhenDone(invoiceLines
+				.map(line -> parseInvoice(line, customers, prepare, errors))
+				.filter(invoice -> invoice != null));
 	}
 
 	/**
@@ -164,4 +220,16 @@ public class CSVParser implements Parser {
 		return invoices.map(this::formatInvoice);
 		
 	}
+
+	public Parser withQuarantineFile(Path quarantineFile) {
+		return new CSVParser(quarantineFile);
+	}
+
+	/**
+	 * We keep no state between calls: the quarantine file is fixed
+	 * at construction, and each parse collects errors in its own sink.
+	 */
+	public boolean isStateless() {
+		return true;
+	}
 }
@@ -1,5 +1,6 @@
 package com.amica.billing.parse;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
@@ -9,15 +10,16 @@ import java.util.stream.Stream;
 import com.amica.billing.Customer;
 import com.amica.billing.Invoice;
 import com.amica.billing.Terms;
+import com.amica.billing.metrics.Counter;
+import com.amica.billing.metrics.Metrics;
 
-import lombok.extern.java.Log;
+import com.amica.billing.parse.ParseErrorSink.Reason;
 
 /**
  * A parser that can read a specific flat file format.
  * 
  * @author Will Provost
  */
- @Log
 public class FlatParser implements Parser {
 
 	public static final int CUSTOMER_FIRST_NAME_OFFSET = 0;
@@ -51,11 +53,33 @@ public class FlatParser implements Parser {
 	public static final int INVOICE_LENGTH = 
 			INVOICE_PAID_DATE_OFFSET + INVOICE_PAID_DATE_LENGTH;
 
+	private static final Counter CUSTOMERS_PARSED = 
+			Metrics.counter("FlatParser.customersParsed");
+	private static final Counter CUSTOMERS_REJECTED = 
+			Metrics.counter("FlatParser.customersRejected");
+	private static final Counter INVOICES_PARSED = 
+			Metrics.counter("FlatParser.invoicesParsed");
+	private static final Counter INVOICES_REJECTED = 
+			Metrics.counter("FlatParser.invoicesRejected");
+
+	private final Path quarantineFile;
+
+	public FlatParser() {
+		this(null);
+	}
+
+	/**
+	 * Creates a parser that copies lines it can't parse to the given file.
+	 */
+	public FlatParser(Path quarantineFile) {
+		this.quarantineFile = quarantineFile;
+	}
+
 	/**
 	 * Helper that can parse one line of text in order to
 	 * produce a {@link Customer} object.
 	 */
-	private Customer parseCustomer(String line) {
+	private Customer parseCustomer(String line, ParseErrorSink errors) {
 		if (line.length() >= CUSTOMER_LENGTH) {
 			try {
 				String firstName = line.substring(CUSTOMER_FIRST_NAME_OFFSET, 
@@ -66,13 +90,14 @@ public class FlatParser implements Parser {
 						(CUSTOMER_TERMS_OFFSET, CUSTOMER_LENGTH).trim();
 				
 				Terms terms = Terms.valueOf(termsString);
+				CUSTOMERS_PARSED.increment();
+				errors.accept();
 				return new Customer(firstName, lastName, terms);
 			} catch (Exception ex) {
-				log.warning(() -> 
-						"Couldn't parse terms value, skipping customer: " + line);
+				errors.reject(Reason.BAD_VALUE, line);
 			}
 		} else {
-			log.warning(() -> "Incorrect length, skipping customer: " + line);
+			errors.reject(Reason.WRONG_LENGTH, line);
 		}
 		
 		return null;
@@ -82,7 +107,8 @@ public class FlatParser implements Parser {
 	 * Helper that can parse one line of text in order to
 	 * produce an {@link Invoice} object.
 	 */
-	private Invoice parseInvoice(String line, Map<String, Customer> customers) {
+	private Invoice parseInvoice(String line, Map<String, Customer> customers,
+			ParseErrorSink errors) {
 
 		if (line.length() >= INVOICE_PAID_DATE_OFFSET) {
 			try {
@@ -113,18 +139,18 @@ public class FlatParser implements Parser {
 		
 				Customer customer = customers.get(firstName + " " +  lastName);
 				if (customer != null) {
+					INVOICES_PARSED.increment();
+					errors.accept();
 					return new Invoice(number, customer, amount, 
 							theDate, paidDate);
 				} else {
-					log.warning(() -> 
-						"Unknown customer, skipping invoice: " + line);
+					errors.reject(Reason.UNKNOWN_CUSTOMER, line);
 				}
 			} catch (Exception ex) {
-				log.warning(() -> 
-						"Couldn't parse values, skipping invoice: " + line);
+				errors.reject(Reason.BAD_VALUE, line);
 			}
 		} else {
-			log.warning(() -> "Incorrect length, skipping invoice: " + line);
+			errors.reject(Reason.WRONG_LENGTH, line);
 		}
 		
 		return null;
@@ -164,25 +190,31 @@ public class FlatParser implements Parser {
 
 	/**
 	 * Consumes the given string streams and translates to {@link Customer}
-	 * objects.
+	 * objects. Lines that can't be parsed are skipped, and summarized
+	 * by a {@link ParseErrorSink}.
 	 */
 	public Stream<Customer> parseCustomers(Stream<String> customerLines) {
 
-		return customerLines
-				.map(this::parseCustomer)
-				.filter(customer -> customer != null);
+		ParseErrorSink errors = new ParseErrorSink
+				("customer", quarantineFile, CUSTOMERS_REJECTED);
+		return errors.finishWhenDone(customerLines
+				.map(line -> parseCustomer(line, errors))
+				.filter(customer -> customer != null));
 
 	}
 
 	/**
 	 * Consumes the given string streams and translates to {@link Invoices}
-	 * objects.
+	 * objects. Lines that can't be parsed are skipped, and summarized
+	 * by a {@link ParseErrorSink}.
 	 */
 	public Stream<Invoice> parseInvoices(Stream<String> invoiceLines, Map<String, Customer> customers) {
 
-		return invoiceLines
-				.map(line -> parseInvoice(line, customers))
-				.filter(invoice -> invoice != null);
+		ParseErrorSink errors = new ParseErrorSink
+				("invoice", quarantineFile, INVOICES_REJECTED);
+		return errors.finishWhenDone(invoiceLines
+				.map(line -> parseInvoice(line, customers, errors))
+				.filter(invoice -> invoice != null));
 	}
 
 	/**
@@ -199,4 +231,12 @@ public class FlatParser implements Parser {
 		return invoices.map(this::formatInvoice);
 		
 	}
+
+	public Parser withQuarantineFile(Path quarantineFile) {
+		return new FlatParser(quarantineFile);
+	}
+
+	public boolean isStateless() {
+		return true;
+	}
 }
@@ -0,0 +1,128 @@
+package com.amica.billing.parse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Identifies the format of a data file from its content, rather than
+ * from its name. We read the first {@link #SAMPLE_SIZE} bytes and look
+ * at their structure: control characters mean a binary file; lines that
+ * all have commas are CSV, and quoted CSV if any field is in quotes;
+ * lines without commas that are all the same length are flat.
+ * Results are cached by path, and re-checked only if the file's size
+ * or modification time changes.
+ *
+ * @author Will Provost
+ */
+public class FormatDetector {
+
+	public static final int SAMPLE_SIZE = 4096;
+
+	/**
+	 * The formats we can recognize.
+	 */
+	public enum Format { CSV, QUOTED_CSV, FLAT, BINARY, UNKNOWN }
+
+	@AllArgsConstructor
+	private static class Detection {
+		private long size;
+		private long lastModified;
+		private Format format;
+	}
+
+	private static Map<Path,Detection> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the format of the given file, or {@link Format#UNKNOWN} if
+	 * the file can't be read or its content is inconclusive.
+	 */
+	public static Format detect(Path file) {
+		Path key = file.toAbsolutePath().normalize();
+		try {
+			BasicFileAttributes attributes =
+					Files.readAttributes(key, BasicFileAttributes.class);
+			long size = attributes.size();
+			long lastModified = attributes.lastModifiedTime().toMillis();
+
+			Detection cached = cache.get(key);
+			if (cached != null && cached.size == size &&
+					cached.lastModified == lastModified) {
+				return cached.format;
+			}
+
+			byte[] sample = new byte[(int) Math.min(size, SAMPLE_SIZE)];
+			int length = 0;
+			try ( InputStream in = Files.newInputStream(key); ) {
+				length = in.readNBytes(sample, 0, sample.length);
+			}
+			Format format = detect(sample, length, length < size);
+			cache.put(key, new Detection(size, lastModified, format));
+			return format;
+		} catch (IOException ex) {
+			return Format.UNKNOWN;
+		}
+	}
+
+	/**
+	 * Helper to tell if a byte is a control character that doesn't
+	 * belong in a text file.
+	 */
+	private static boolean isBinary(byte b) {
+		return b >= 0 && b < ' ' && b != '\n' && b != '\r' && b != '\t';
+	}
+
+	/**
+	 * Identifies the format of a sample of a file's content.
+	 * If the sample is truncated, we ignore the last, partial line.
+	 */
+	public static Format detect(byte[] sample, int length, boolean truncated) {
+		for (int i = 0; i < length; ++i) {
+			if (isBinary(sample[i])) {
+				return Format.BINARY;
+			}
+		}
+
+		String text = new String(sample, 0, length, StandardCharsets.UTF_8);
+		List<String> lines = new ArrayList<>(text.lines().toList());
+		if (truncated && lines.size() > 1) {
+			lines.remove(lines.size() - 1);
+		}
+		lines.removeIf(String::isBlank);
+		if (lines.isEmpty()) {
+			return Format.UNKNOWN;
+		}
+
+		if (lines.stream().allMatch(line -> line.indexOf(',') != -1)) {
+			boolean quoted = lines.stream()
+					.flatMap(line -> List.of(line.split(",")).stream())
+					.anyMatch(field -> field.length() > 1 &&
+						field.startsWith("\"") && field.endsWith("\""));
+			return quoted ? Format.QUOTED_CSV : Format.CSV;
+		}
+
+		int width = lines.get(0).length();
+		if (lines.stream().noneMatch(line -> line.indexOf(',') != -1) &&
+				lines.stream().allMatch(line -> line.length() == width)) {
+			return Format.FLAT;
+		}
+
+		return Format.UNKNOWN;
+	}
+
+	/**
+	 * Forgets all cached detections.
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+}
@@ -0,0 +1,198 @@
+package com.amica.billing.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.amica.billing.metrics.Counter;
+
+import lombok.extern.java.Log;
+
+/**
+ * Collects the lines that a parser rejects during one call to
+ * <code>parseCustomers</code> or <code>parseInvoices</code>, so that bad
+ * input doesn't cost a log record per line. We count rejections by
+ * {@link Reason}, optionally copy the raw lines to a quarantine file,
+ * and log a single summary when the parsed stream has been consumed
+ * or closed. Quarantined lines are buffered and appended to the file
+ * {@link #BATCH_SIZE} at a time.
+ *
+ * @author Will Provost
+ */
+@Log
+public class ParseErrorSink {
+
+	public static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Reasons for which a parser might reject a line.
+	 */
+	public enum Reason {
+		WRONG_FIELD_COUNT("wrong number of fields"),
+		WRONG_LENGTH("wrong length"),
+		BAD_VALUE("unparseable values"),
+		UNKNOWN_CUSTOMER("unknown customer");
+
+		private String description;
+
+		private Reason(String description) {
+			this.description = description;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	private String recordType;
+	private Path quarantineFile;
+	private Counter rejectedCounter;
+	private Map<Reason,LongAdder> counts = new EnumMap<>(Reason.class);
+	private LongAdder accepted = new LongAdder();
+	private List<String> pending = new ArrayList<>();
+	private String firstRejected;
+	private AtomicBoolean finished = new AtomicBoolean();
+
+	/**
+	 * Prepare to collect rejections of the given type of record,
+	 * such as "invoice". If a quarantine file is given, rejected lines
+	 * will be appended to it. Each rejection is also added to the given
+	 * counter.
+	 */
+	public ParseErrorSink(String recordType, Path quarantineFile,
+			Counter rejectedCounter) {
+		this.recordType = recordType;
+		this.quarantineFile = quarantineFile;
+		this.rejectedCounter = rejectedCounter;
+		for (Reason reason : Reason.values()) {
+			counts.put(reason, new LongAdder());
+		}
+	}
+
+	/**
+	 * Records a successfully parsed line.
+	 */
+	public void accept() {
+		accepted.increment();
+	}
+
+	/**
+	 * Records a rejected line and the reason for rejecting it.
+	 */
+	public void reject(Reason reason, String line) {
+		counts.get(reason).increment();
+		rejectedCounter.increment();
+		if (quarantineFile != null || firstRejected == null) {
+			synchronized(this) {
+				if (firstRejected == null) {
+					firstRejected = line;
+				}
+				if (quarantineFile != null) {
+					pending.add(line);
+					if (pending.size() >= BATCH_SIZE) {
+						flush();
+					}
+				}
+			}
+		}
+	}
+
+	public long getCount(Reason reason) {
+		return counts.get(reason).sum();
+	}
+
+	public long getRejectedCount() {
+		return counts.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	public long getAcceptedCount() {
+		return accepted.sum();
+	}
+
+	/**
+	 * Helper to append pending lines to the quarantine file.
+	 */
+	private synchronized void flush() {
+		if (!pending.isEmpty()) {
+			// Sinks for parallel parse workers may share a quarantine file
+			try {
+				synchronized (ParseErrorSink.class) {
+					Files.write(quarantineFile, pending, StandardOpenOption.CREATE,
+							StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				}
+			} catch (IOException ex) {
+				log.log(Level.WARNING, ex, () -> "Couldn't write rejected " +
+						recordType + " lines to " + quarantineFile);
+			}
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Writes any remaining quarantined lines and logs a summary of
+	 * rejections, if there were any. Only the first call has any effect.
+	 */
+	public void finish() {
+		if (finished.compareAndSet(false, true)) {
+			flush();
+			long rejected = getRejectedCount();
+			if (rejected != 0) {
+				String reasons = counts.entrySet().stream()
+					.filter(entry -> entry.getValue().sum() != 0)
+					.map(entry -> entry.getValue().sum() + " " +
+							entry.getKey().getDescription())
+					.collect(Collectors.joining(", "));
+				log.warning(() -> String.format
+					("Skipped %,d of %,d %s lines (%s); first was: %s%s",
+						rejected, rejected + getAcceptedCount(), recordType,
+						reasons, firstRejected, quarantineFile != null
+							? "; all were written to " + quarantineFile : ""));
+			}
+		}
+	}
+
+	/**
+	 * Returns a stream of the same elements as the given one, that will
+	 * call {@link #finish} once it's been fully consumed or closed.
+	 */
+	public <T> Stream<T> finishWhenDone(Stream<T> stream) {
+		Spliterator<T> source = stream.spliterator();
+		Spliterator<T> wrapper = new Spliterators.AbstractSpliterator<T>
+				(source.estimateSize(), source.characteristics() &
+					~(Spliterator.SIZED | Spliterator.SUBSIZED)) {
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				if (source.tryAdvance(action)) {
+					return true;
+				}
+				finish();
+				return false;
+			}
+
+			@Override
+			public void forEachRemaining(Consumer<? super T> action) {
+				source.forEachRemaining(action);
+				finish();
+			}
+		};
+
+		return StreamSupport.stream(wrapper, false)
+				.onClose(stream::close)
+				.onClose(this::finish);
+	}
+}
@@ -1,5 +1,6 @@
 package com.amica.billing.parse;
 
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -39,4 +40,22 @@ public interface Parser {
 	 * Writes the given stream of invoices to the given writer.
 	 */
 	public Stream<String> produceInvoices(Stream<Invoice> invoices);
+	
+	/**
+	 * Returns a parser that works like this one, but that copies lines that
+	 * it can't parse to the given file, so they can be corrected and loaded
+	 * later. By default we ignore the file and return this parser.
+	 */
+	public default Parser withQuarantineFile(Path quarantineFile) {
+		return this;
+	}
+	
+	/**
+	 * Parsers that hold no state that changes from one call to the next
+	 * can say so, and then the {@link com.amica.billing.ParserFactory}
+	 * will share one instance among all callers.
+	 */
+	public default boolean isStateless() {
+		return false;
+	}
 }
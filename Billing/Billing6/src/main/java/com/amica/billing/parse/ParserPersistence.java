@@ -1,6 +1,7 @@
 package com.amica.billing.parse;
 
 import com.amica.billing.db.CachingPersistence;
+import com.amica.billing.db.ChangeJournal;
 import com.amica.billing.parse.Parser;
 import com.amica.billing.*;
 import lombok.Setter;
@@ -9,11 +10,20 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
@@ -29,12 +39,46 @@ public class ParserPersistence extends CachingPersistence {
     @Value("${ParserPersistence.invoicesFile}")
     String invoicesFile;
 
+    //Optional file to which the parser copies lines that it can't parse
+    @Setter
+    @Value("${ParserPersistence.quarantineFile:#{null}}")
+    String quarantineFile;
+
+    //Optional file in which to journal changes, for a ChangeSync to ship
+    @Setter
+    @Value("${ParserPersistence.changeJournal:#{null}}")
+    String changeJournal;
+
+    //Optional write-ahead log, replayed at load() after a crash
+    @Setter
+    @Value("${ParserPersistence.writeAheadLog:#{null}}")
+    String writeAheadLogFile;
+
     Parser parser;
+    boolean customersSnapshotFailed;
+    boolean invoicesSnapshotFailed;
 
     @Override
     @PostConstruct
     public void load(){
-        parser = ParserFactory.createParser(invoicesFile);
+        parser = ParserFactory.createParser(Paths.get(invoicesFile));
+        if( quarantineFile != null ){
+            parser = parser.withQuarantineFile(Paths.get(quarantineFile));
+        }
+        if( changeJournal != null ){
+            try{
+                setJournal(new ChangeJournal(Paths.get(changeJournal)));
+            }catch(IOException ex){
+                log.log(Level.WARNING, ex, () -> "Couldn't open change journal " + changeJournal);
+            }
+        }
+        if( writeAheadLogFile != null ){
+            try{
+                setWriteAheadLog(new ChangeJournal(Paths.get(writeAheadLogFile)));
+            }catch(IOException ex){
+                throw new UncheckedIOException("Couldn't open write-ahead log " + writeAheadLogFile, ex);
+            }
+        }
         super.load();
     }
 
@@ -60,19 +104,79 @@ public class ParserPersistence extends CachingPersistence {
         return returnStream;
     }
 
-    protected void writeCustomer(Customer customer){
-        try( PrintWriter out = new PrintWriter(new FileWriter(Paths.get(customersFile).toFile())) ){
-            parser.produceCustomers( customers.values().stream() ).forEach(out::println);
+    //Writes a snapshot to a temporary file, forces it to disk, closes it,
+    //and renames it over the real file, so a crash leaves either the old
+    //file or the new; then forces the directory, so the rename is durable
+    private boolean writeSnapshot(String filename, Stream<String> lines){
+        Path file = Paths.get(filename).toAbsolutePath();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try{
+            try( FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                    PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter
+                        (Channels.newOutputStream(channel), StandardCharsets.UTF_8))) ){
+                lines.forEach(out::println);
+                out.flush();
+                if( out.checkError() ){
+                    throw new IOException("Couldn't write " + temp);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(file.getParent());
+            return true;
         } catch (Exception ex) {
-            log.log(Level.WARNING, ex, () -> "Couldn't open " + customersFile + " in write mode.");
+            log.log(Level.WARNING, ex, () -> "Couldn't write " + filename);
+            return false;
+        }
+    }
+
+    //Some platforms can't open a directory as a channel, or force one;
+    //there the rename is as durable as we can make it
+    private void forceDirectory(Path directory){
+        try( FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ) ){
+            channel.force(true);
+        }catch(IOException ex){
+            log.log(Level.FINE, ex, () -> "Couldn't force directory " + directory);
         }
     }
 
+    private void writeCustomersSnapshot(){
+        customersSnapshotFailed = !writeSnapshot(customersFile,
+                parser.produceCustomers( customers.values().stream() ));
+    }
+
+    private void writeInvoicesSnapshot(){
+        invoicesSnapshotFailed = !writeSnapshot(invoicesFile,
+                parser.produceInvoices( invoices.values().stream() ));
+    }
+
+    protected void writeCustomer(Customer customer){
+        writeCustomersSnapshot();
+    }
+
     protected void writeInvoice(Invoice invoice){
-        try( PrintWriter out = new PrintWriter(new FileWriter(Paths.get(invoicesFile).toFile())) ){
-            parser.produceInvoices( invoices.values().stream() ).forEach(out::println);
-        } catch (Exception ex) {
-            log.log(Level.WARNING, ex, () -> "Couldn't open " + invoicesFile + " in write mode.");
+        writeInvoicesSnapshot();
+    }
+
+    //If the last snapshot failed, the write-ahead log is all we have
+    @Override
+    protected boolean canCompactLog(){
+        return !customersSnapshotFailed && !invoicesSnapshotFailed;
+    }
+
+    //Every write replaces the whole file, so a batch needs only one
+    @Override
+    protected void writeCustomers(Collection<Customer> batch){
+        if( !batch.isEmpty() ){
+            writeCustomersSnapshot();
+        }
+    }
+
+    @Override
+    protected void writeInvoices(Collection<Invoice> batch){
+        if( !batch.isEmpty() ){
+            writeInvoicesSnapshot();
         }
     }
 
@@ -2,6 +2,7 @@ package com.amica.billing.parse;
 
 import static com.amica.billing.parse.CSVParser.*;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -18,7 +19,15 @@ import com.amica.billing.Invoice;
  */
 public class QuotedCSVParser implements Parser {
 
-	private CSVParser csvParser = new CSVParser();
+	private final CSVParser csvParser;
+
+	public QuotedCSVParser() {
+		this(new CSVParser());
+	}
+
+	private QuotedCSVParser(CSVParser csvParser) {
+		this.csvParser = csvParser;
+	}
 
 	private void stripQuotes(String[] fields, int index) {
 		if (fields.length > index) {
@@ -60,13 +69,27 @@ public class QuotedCSVParser implements Parser {
 		return Arrays.stream(fields).collect(Collectors.joining(","));
 	}
 
+	/**
+	 * Quarantining is handled by the CSV parser, which quarantines
+	 * each rejected line as we read it, with its quotes.
+	 */
+	@Override
+	public Parser withQuarantineFile(Path quarantineFile) {
+		return new QuotedCSVParser(new CSVParser(quarantineFile));
+	}
+
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
 	/**
 	 * Strip quotes from specific fields, and delegate to thge CSV parser.
 	 */
 	public Stream<Customer> parseCustomers(Stream<String> customerLines) {
 
-		return csvParser.parseCustomers(customerLines
-				.map(this::stripQuotesFromCustomer));
+		return csvParser.parseCustomers(customerLines,
+				this::stripQuotesFromCustomer);
 
 	}
 
@@ -76,8 +99,8 @@ public class QuotedCSVParser implements Parser {
 	public Stream<Invoice> parseInvoices(Stream<String> invoiceLines,
 			Map<String, Customer> customers) {
 
-		return csvParser.parseInvoices(invoiceLines
-				.map(this::stripQuotesFromInvoice), customers);
+		return csvParser.parseInvoices(invoiceLines, customers,
+				this::stripQuotesFromInvoice);
 	}
 
 	/**
@@ -0,0 +1,44 @@
+package com.amica.billing.pipeline;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+
+/**
+ * Drops customers whose names, and invoices whose numbers, we've already
+ * seen. Invoice numbers are tracked in a bit set, which stays small
+ * even for very large files. With parallel workers, which of two
+ * duplicate invoices is kept is not defined.
+ *
+ * @author Will Provost
+ */
+public class Dedupe implements Transform {
+
+	private Set<String> customerNames = ConcurrentHashMap.newKeySet();
+	private BitSet invoiceNumbers = new BitSet();
+	private Set<Integer> negativeInvoiceNumbers = ConcurrentHashMap.newKeySet();
+
+	@Override
+	public Customer transformCustomer(Customer customer) {
+		return customerNames.add(customer.getName()) ? customer : null;
+	}
+
+	@Override
+	public Invoice transformInvoice(Invoice invoice) {
+		int number = invoice.getNumber();
+		if (number < 0) {
+			return negativeInvoiceNumbers.add(number) ? invoice : null;
+		}
+
+		synchronized (invoiceNumbers) {
+			if (invoiceNumbers.get(number)) {
+				return null;
+			}
+			invoiceNumbers.set(number);
+		}
+		return invoice;
+	}
+}
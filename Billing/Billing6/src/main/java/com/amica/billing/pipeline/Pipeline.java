@@ -0,0 +1,417 @@
+package com.amica.billing.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.db.Persistence;
+import com.amica.billing.metrics.Counter;
+import com.amica.billing.metrics.Metrics;
+import com.amica.billing.metrics.Timer;
+import com.amica.billing.parse.Parser;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.java.Log;
+
+/**
+ * Streams customers and invoices from text files, through any number of
+ * {@link Transform}s, into a {@link Persistence} sink.
+ *
+ * Customers are loaded first, one batch at a time, and kept in memory
+ * because the parser needs them to resolve invoices. Invoices then flow
+ * through three stages, connected by bounded queues: one thread reads
+ * lines and queues them in batches; several workers parse and transform
+ * them; and the calling thread saves the resulting batches to the sink.
+ * Since no stage can get more than {@link #queueCapacity} batches ahead
+ * of the next, the pipeline itself holds a bounded number of invoices,
+ * and can process files larger than the heap -- as long as the sink
+ * doesn't keep everything in memory, as {@link
+ * com.amica.billing.db.CachingPersistence} does.
+ *
+ * Progress is reported to the {@link #progressListener} every
+ * {@link #progressInterval}, and when the pipeline finishes.
+ *
+ * @author Will Provost
+ */
+@Log
+@Getter
+@Setter
+public class Pipeline {
+
+	private static final Counter LINES_READ = Metrics.counter("Pipeline.linesRead");
+	private static final Counter INVOICES_WRITTEN =
+			Metrics.counter("Pipeline.invoicesWritten");
+	private static final Timer SAVE_TIMER = Metrics.timer("Pipeline.saveInvoices");
+
+	private static final List<String> END_OF_LINES = new ArrayList<>();
+	private static final List<Invoice> END_OF_INVOICES = new ArrayList<>();
+
+	/**
+	 * Counts of records at each stage of the pipeline, and the time taken
+	 * so far. Rejected lines are those that the parser couldn't parse;
+	 * this count is only accurate once the pipeline has finished.
+	 */
+	@Value
+	public static class Progress {
+		long customersWritten;
+		long linesRead;
+		long invoicesParsed;
+		long invoicesDropped;
+		long invoicesWritten;
+		Duration elapsed;
+
+		public long getRejected() {
+			return linesRead - invoicesParsed;
+		}
+
+		public double getInvoicesPerSecond() {
+			return elapsed.isZero() ? 0 : invoicesWritten * 1000.0 / elapsed.toMillis();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%,d customers written; %,d lines read, " +
+					"%,d invoices parsed, %,d dropped, %,d written in %,.1f seconds " +
+					"(%,.0f invoices/second)", customersWritten, linesRead,
+					invoicesParsed, invoicesDropped, invoicesWritten,
+					elapsed.toMillis() / 1000.0, getInvoicesPerSecond());
+		}
+	}
+
+	/**
+	 * Running counts, updated by the stages as they work.
+	 */
+	private static class Tally {
+		private long startNanos;
+		private long customersWritten;
+		private LongAdder linesRead = new LongAdder();
+		private LongAdder invoicesParsed = new LongAdder();
+		private LongAdder invoicesDropped = new LongAdder();
+		private volatile long invoicesWritten;
+
+		public void start() {
+			if (startNanos == 0) {
+				startNanos = System.nanoTime();
+			}
+		}
+	}
+
+	private Parser parser;
+	private Persistence sink;
+	@Setter(AccessLevel.NONE)
+	private List<Transform> transforms = new ArrayList<>();
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private int batchSize = 1000;
+	private int queueCapacity = 16;
+	private Duration progressInterval = Duration.ofSeconds(5);
+	private Consumer<Progress> progressListener =
+			progress -> log.info(progress.toString());
+
+	@Getter(AccessLevel.NONE)
+	private final Tally tally = new Tally();
+
+	public Pipeline(Parser parser, Persistence sink) {
+		this.parser = parser;
+		this.sink = sink;
+	}
+
+	/**
+	 * Adds a transform stage. Transforms are applied in the order added.
+	 */
+	public Pipeline addTransform(Transform transform) {
+		transforms.add(transform);
+		return this;
+	}
+
+	public Progress getProgress() {
+		return new Progress(tally.customersWritten, tally.linesRead.sum(),
+				tally.invoicesParsed.sum(), tally.invoicesDropped.sum(),
+				tally.invoicesWritten,
+				Duration.ofNanos(System.nanoTime() - tally.startNanos));
+	}
+
+	/**
+	 * Helper to run a customer through all transforms.
+	 */
+	private Customer transform(Customer customer) {
+		for (Transform transform : transforms) {
+			if (customer == null) {
+				break;
+			}
+			customer = transform.transformCustomer(customer);
+		}
+		return customer;
+	}
+
+	/**
+	 * Helper to run an invoice through all transforms.
+	 */
+	private Invoice transform(Invoice invoice) {
+		for (Transform transform : transforms) {
+			if (invoice == null) {
+				break;
+			}
+			invoice = transform.transformInvoice(invoice);
+		}
+		return invoice;
+	}
+
+	/**
+	 * Loads customers from the first file, and then invoices from
+	 * the second file, and returns the final progress report.
+	 */
+	public Progress run(Path customersFile, Path invoicesFile)
+			throws IOException, InterruptedException {
+		tally.start();
+		Map<String,Customer> customers = null;
+		try ( Stream<String> lines = Files.lines(customersFile); ) {
+			customers = loadCustomers(lines);
+		}
+		try ( Stream<String> lines = Files.lines(invoicesFile); ) {
+			return loadInvoices(lines, customers);
+		}
+	}
+
+	/**
+	 * Parses and transforms customers and saves them to the sink in batches.
+	 * Returns a map of the saved customers, by name.
+	 */
+	public Map<String,Customer> loadCustomers(Stream<String> customerLines) {
+		tally.start();
+
+		Map<String,Customer> customers = new LinkedHashMap<>();
+		List<Customer> batch = new ArrayList<>(batchSize);
+		try ( Stream<Customer> parsed = parser.parseCustomers(customerLines); ) {
+			Iterator<Customer> iterator = parsed.iterator();
+			while (iterator.hasNext()) {
+				Customer customer = transform(iterator.next());
+				if (customer != null) {
+					customers.put(customer.getName(), customer);
+					batch.add(customer);
+					if (batch.size() == batchSize) {
+						sink.saveCustomers(batch);
+						tally.customersWritten += batch.size();
+						batch = new ArrayList<>(batchSize);
+					}
+				}
+			}
+		}
+		if (!batch.isEmpty()) {
+			sink.saveCustomers(batch);
+			tally.customersWritten += batch.size();
+		}
+
+		return customers;
+	}
+
+	/**
+	 * Feeds batches of lines from a queue to a parser, until we see
+	 * the end-of-lines marker. If interrupted while waiting, we assume
+	 * the pipeline is being shut down and cancel the parse.
+	 */
+	private static class QueueSpliterator
+			extends Spliterators.AbstractSpliterator<String> {
+
+		private BlockingQueue<List<String>> queue;
+		private Iterator<String> current;
+		private boolean done;
+
+		public QueueSpliterator(BlockingQueue<List<String>> queue) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.queue = queue;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super String> action) {
+			while (!done && (current == null || !current.hasNext())) {
+				try {
+					List<String> batch = queue.take();
+					if (batch == END_OF_LINES) {
+						done = true;
+					} else {
+						current = batch.iterator();
+					}
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("Pipeline was shut down");
+				}
+			}
+			if (done) {
+				return false;
+			}
+
+			action.accept(current.next());
+			return true;
+		}
+	}
+
+	/**
+	 * Reader stage: queues lines in batches, and then queues one
+	 * end-of-lines marker for each worker.
+	 */
+	private Void read(Stream<String> lines, BlockingQueue<List<String>> out)
+			throws InterruptedException {
+		List<String> batch = new ArrayList<>(batchSize);
+		Iterator<String> iterator = lines.iterator();
+		while (iterator.hasNext()) {
+			batch.add(iterator.next());
+			if (batch.size() == batchSize) {
+				out.put(batch);
+				tally.linesRead.add(batch.size());
+				LINES_READ.add(batch.size());
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			out.put(batch);
+			tally.linesRead.add(batch.size());
+			LINES_READ.add(batch.size());
+		}
+		for (int w = 0; w < workers; ++w) {
+			out.put(END_OF_LINES);
+		}
+		return null;
+	}
+
+	/**
+	 * Worker stage: each worker makes a single call to the parser, over
+	 * its share of the queued lines, so rejections are summarized once per
+	 * worker rather than once per batch. Transformed invoices are queued
+	 * in batches, followed by an end-of-invoices marker.
+	 */
+	private Void parse(BlockingQueue<List<String>> in, BlockingQueue<List<Invoice>> out,
+			Map<String,Customer> customers) throws InterruptedException {
+		Stream<String> lines = StreamSupport.stream(new QueueSpliterator(in), false);
+		List<Invoice> batch = new ArrayList<>(batchSize);
+		try ( Stream<Invoice> parsed = parser.parseInvoices(lines, customers); ) {
+			Iterator<Invoice> iterator = parsed.iterator();
+			while (iterator.hasNext()) {
+				tally.invoicesParsed.increment();
+				Invoice invoice = transform(iterator.next());
+				if (invoice != null) {
+					batch.add(invoice);
+					if (batch.size() == batchSize) {
+						out.put(batch);
+						batch = new ArrayList<>(batchSize);
+					}
+				} else {
+					tally.invoicesDropped.increment();
+				}
+			}
+		}
+		if (!batch.isEmpty()) {
+			out.put(batch);
+		}
+		out.put(END_OF_INVOICES);
+		return null;
+	}
+
+	/**
+	 * Helper to re-throw the failure of any stage that has failed.
+	 */
+	private static void checkForFailure(List<Future<Void>> stages) {
+		for (Future<Void> stage : stages) {
+			if (stage.isDone()) {
+				try {
+					stage.get();
+				} catch (ExecutionException ex) {
+					throw new IllegalStateException
+						("Pipeline stage failed", ex.getCause());
+				} catch (InterruptedException | CancellationException ex) {
+					throw new IllegalStateException("Pipeline stage was cancelled", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses and transforms invoices in parallel and saves them to the sink
+	 * in batches, from the calling thread. Returns the final progress report.
+	 *
+	 * @throws IllegalStateException If any stage fails; the other stages
+	 *   are shut down, and the sink may have received some batches
+	 */
+	public Progress loadInvoices(Stream<String> invoiceLines,
+			Map<String,Customer> customers) throws InterruptedException {
+		tally.start();
+
+		BlockingQueue<List<String>> lineBatches =
+				new ArrayBlockingQueue<>(queueCapacity);
+		BlockingQueue<List<Invoice>> invoiceBatches =
+				new ArrayBlockingQueue<>(queueCapacity);
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(workers + 1,
+			runnable -> {
+				Thread thread = new Thread(runnable,
+						"Pipeline-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		try {
+			List<Future<Void>> stages = new ArrayList<>();
+			stages.add(executor.submit(() -> read(invoiceLines, lineBatches)));
+			for (int w = 0; w < workers; ++w) {
+				stages.add(executor.submit
+						(() -> parse(lineBatches, invoiceBatches, customers)));
+			}
+
+			long lastReport = System.nanoTime();
+			int finishedWorkers = 0;
+			while (finishedWorkers < workers) {
+				List<Invoice> batch = invoiceBatches.poll
+						(progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+				if (batch == END_OF_INVOICES) {
+					++finishedWorkers;
+				} else if (batch != null) {
+					long start = System.nanoTime();
+					sink.saveInvoices(batch);
+					SAVE_TIMER.recordSince(start);
+					tally.invoicesWritten += batch.size();
+					INVOICES_WRITTEN.add(batch.size());
+				} else {
+					checkForFailure(stages);
+				}
+
+				if (System.nanoTime() - lastReport >= progressInterval.toNanos()) {
+					checkForFailure(stages);
+					progressListener.accept(getProgress());
+					lastReport = System.nanoTime();
+				}
+			}
+			checkForFailure(stages);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Progress result = getProgress();
+		progressListener.accept(result);
+		return result;
+	}
+}
@@ -0,0 +1,32 @@
+package com.amica.billing.pipeline;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Terms;
+
+/**
+ * Replaces customers' terms according to a map, for example to move
+ * all customers on 45-day terms to 60-day terms. Terms not in the map
+ * are left alone. Customers are transformed before any invoices are
+ * parsed, so invoices will refer to the customers with remapped terms.
+ *
+ * @author Will Provost
+ */
+public class RemapTerms implements Transform {
+
+	private Map<Terms,Terms> mapping;
+
+	public RemapTerms(Map<Terms,Terms> mapping) {
+		this.mapping = new EnumMap<>(mapping);
+	}
+
+	@Override
+	public Customer transformCustomer(Customer customer) {
+		Terms terms = mapping.get(customer.getTerms());
+		return terms != null && terms != customer.getTerms()
+				? new Customer(customer.getFirstName(), customer.getLastName(), terms)
+				: customer;
+	}
+}
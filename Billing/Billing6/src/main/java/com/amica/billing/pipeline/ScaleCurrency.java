@@ -0,0 +1,24 @@
+package com.amica.billing.pipeline;
+
+import com.amica.billing.Invoice;
+
+/**
+ * Multiplies invoice amounts by a fixed factor, such as an exchange rate,
+ * and rounds the results to whole cents.
+ *
+ * @author Will Provost
+ */
+public class ScaleCurrency implements Transform {
+
+	private double factor;
+
+	public ScaleCurrency(double factor) {
+		this.factor = factor;
+	}
+
+	@Override
+	public Invoice transformInvoice(Invoice invoice) {
+		invoice.setAmount(Math.round(invoice.getAmount() * factor * 100) / 100.0);
+		return invoice;
+	}
+}
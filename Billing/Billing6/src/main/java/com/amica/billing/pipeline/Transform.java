@@ -0,0 +1,24 @@
+package com.amica.billing.pipeline;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+
+/**
+ * A stage in a {@link Pipeline} that can change or drop records on their
+ * way from the parser to the persistence sink. Each method returns the
+ * record to pass along, which may be a new object, or null to drop it.
+ * Invoices are transformed by several worker threads at once, so
+ * implementations must be thread-safe.
+ *
+ * @author Will Provost
+ */
+public interface Transform {
+
+	public default Customer transformCustomer(Customer customer) {
+		return customer;
+	}
+
+	public default Invoice transformInvoice(Invoice invoice) {
+		return invoice;
+	}
+}
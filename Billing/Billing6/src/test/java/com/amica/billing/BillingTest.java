@@ -8,9 +8,14 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.hamcrest.Matcher;
 import org.junit.jupiter.api.BeforeEach;
@@ -110,6 +115,175 @@ public class BillingTest {
 		assertThat(list.get(2).getVolume(), closeTo(100.0, .0001));
 	}
 	
+	@Test
+	public void testGetTopCustomersByVolume() {
+		List<Billing.CustomerAndVolume> list = 
+				billing.getTopCustomersByVolume(2).toList();
+		assertThat(list, hasSize(2));
+		assertThat(list.get(0).getCustomer(), equalTo(GOOD_CUSTOMERS.get(2)));
+		assertThat(list.get(0).getVolume(), closeTo(1100.0, .0001));
+		assertThat(list.get(1).getCustomer(), equalTo(GOOD_CUSTOMERS.get(1)));
+		assertThat(list.get(1).getVolume(), closeTo(900.0, .0001));
+	}
+	
+	@Test
+	public void testGetTopCustomersByVolume_MoreThanCustomers() {
+		assertThat(billing.getTopCustomersByVolume(10).toList(), 
+				hasSize(GOOD_CUSTOMERS.size()));
+	}
+	
+	@Test
+	public void testGetReceivablesAging() {
+		Map<Customer,Billing.CustomerAging> aging = 
+				billing.getReceivablesAging(AS_OF_DATE);
+		
+		Billing.CustomerAging two = aging.get(GOOD_CUSTOMERS.get(1));
+		assertThat(two.getAmount(Billing.AgingBucket.CURRENT), closeTo(300.0, .0001));
+		assertThat(two.getAmount(Billing.AgingBucket.DAYS_1_TO_30), closeTo(400.0, .0001));
+		assertThat(two.getTotal(), closeTo(700.0, .0001));
+		
+		Billing.CustomerAging three = aging.get(GOOD_CUSTOMERS.get(2));
+		assertThat(three.getAmount(Billing.AgingBucket.DAYS_1_TO_30), closeTo(600.0, .0001));
+		assertThat(three.getTotal(), closeTo(600.0, .0001));
+	}
+	
+	@Test
+	public void testGetReceivablesAging_LaterDate() {
+		Map<Customer,Billing.CustomerAging> aging = 
+				billing.getReceivablesAging(AS_OF_DATE.plusDays(100));
+		Billing.CustomerAging two = aging.get(GOOD_CUSTOMERS.get(1));
+		assertThat(two.getAmount(Billing.AgingBucket.DAYS_31_TO_60), closeTo(300.0, .0001));
+		assertThat(two.getAmount(Billing.AgingBucket.OVER_90), closeTo(400.0, .0001));
+	}
+	
+	@Test
+	public void testGetReceivablesAging_EarlierDate() {
+		Map<Customer,Billing.CustomerAging> aging = 
+				billing.getReceivablesAging(LocalDate.of(2022, 1, 4));
+		assertThat(aging.get(GOOD_CUSTOMERS.get(0)).getTotal(), closeTo(100.0, .0001));
+		
+		Billing.CustomerAging two = aging.get(GOOD_CUSTOMERS.get(1));
+		assertThat(two.getAmount(Billing.AgingBucket.CURRENT), closeTo(200.0, .0001));
+		assertThat(two.getTotal(), closeTo(600.0, .0001));
+		
+		Billing.CustomerAging three = aging.get(GOOD_CUSTOMERS.get(2));
+		assertThat(three.getTotal(), closeTo(1100.0, .0001));
+	}
+	
+	@Test
+	public void testGetReceivablesAging_AmountsCopied() {
+		Billing.CustomerAging two = 
+				billing.getReceivablesAging(AS_OF_DATE).get(GOOD_CUSTOMERS.get(1));
+		two.getAmounts()[Billing.AgingBucket.CURRENT.ordinal()] = 0;
+		assertThat(two.getAmount(Billing.AgingBucket.CURRENT), closeTo(300.0, .0001));
+	}
+	
+	@Test
+	public void testGetAmountIssued() {
+		assertThat(billing.getAmountIssued(LocalDate.of(2022, 1, 1), 
+				LocalDate.of(2022, 1, 5)), closeTo(800.0, .0001));
+		assertThat(billing.getAmountIssued(LocalDate.of(2021, 11, 1), 
+				LocalDate.of(2022, 1, 31)), closeTo(2100.0, .0001));
+		assertThat(billing.getAmountIssued(LocalDate.of(2022, 1, 7), 
+				LocalDate.of(2022, 1, 31)), closeTo(0.0, .0001));
+	}
+	
+	@Test
+	public void testGetAmountPaid() {
+		assertThat(billing.getAmountPaid(LocalDate.of(2022, 1, 1), 
+				LocalDate.of(2022, 1, 5)), closeTo(200.0, .0001));
+		assertThat(billing.getAmountPaid(LocalDate.of(2022, 1, 1), 
+				LocalDate.of(2022, 1, 31)), closeTo(700.0, .0001));
+	}
+	
+	@Test
+	public void testGetRevenueRollup_Monthly() {
+		assertThat(billing.getRevenueRollup().getMonthlyTotals
+				(RevenueRollup.Measure.ISSUED, YearMonth.of(2021, 11), YearMonth.of(2022, 1)),
+			equalTo(Map.of(YearMonth.of(2021, 11), 400.0, 
+				YearMonth.of(2021, 12), 600.0, YearMonth.of(2022, 1), 1100.0)));
+	}
+	
+	/**
+	 * Works on copies of the test invoices, so that creating and paying
+	 * invoices doesn't disturb other test cases.
+	 */
+	@Test
+	public void testGetRevenueRollup_UpdatedByCreateAndPay() {
+		Map<Integer,Invoice> invoices = new HashMap<>();
+		for (Invoice invoice : GOOD_INVOICES) {
+			invoices.put(invoice.getNumber(), new Invoice(invoice.getNumber(), 
+					invoice.getCustomer(), invoice.getAmount(), 
+					invoice.getIssueDay(), invoice.getPaidDay()));
+		}
+		when(mockPersistence.getInvoices()).thenReturn(invoices);
+		doAnswer(inv -> invoices.put(inv.getArgument(0, Invoice.class).getNumber(), 
+				inv.getArgument(0))).when(mockPersistence).saveInvoice(any());
+		
+		final LocalDate today = LocalDate.now();
+		assertThat(billing.getAmountIssued(today, today), closeTo(0.0, .0001));
+		billing.createInvoice(GOOD_CUSTOMERS.get(0).getName(), 999.0);
+		assertThat(billing.getAmountIssued(today, today), closeTo(999.0, .0001));
+		
+		final double paidBefore = billing.getAmountPaid(today, today);
+		billing.payInvoice(3);
+		assertThat(billing.getAmountPaid(today, today), 
+				closeTo(paidBefore + 300.0, .0001));
+		assertThat(billing.getRevenueRollup().getTotal(RevenueRollup.Measure.PAID, 
+				YearMonth.from(today), YearMonth.from(today)), 
+			closeTo(paidBefore + 300.0, .0001));
+	}
+	
+	@Test
+	public void testFindInvoices_All() {
+		assertThat(billing.findInvoices(new InvoiceQuery()
+				.orderBy(InvoiceQuery.Order.ISSUE_DATE)),
+			hasNumbers(4, 6, 1, 2, 5, 3));
+	}
+	
+	@Test
+	public void testFindInvoices_ByCustomer() {
+		assertThat(billing.findInvoices(new InvoiceQuery()
+				.forCustomer(GOOD_CUSTOMERS.get(1))
+				.orderBy(InvoiceQuery.Order.NUMBER)),
+			hasNumbers(2, 3, 4));
+	}
+	
+	@Test
+	public void testFindInvoices_ByTermsUnpaidAndAmount() {
+		assertThat(billing.findInvoices(new InvoiceQuery()
+				.withTerms(Terms.CREDIT_30, Terms.CREDIT_45)
+				.unpaid()
+				.amountAtLeast(350)
+				.orderBy(InvoiceQuery.Order.NUMBER)),
+			hasNumbers(4, 6));
+	}
+	
+	@Test
+	public void testFindInvoices_ByDateRange() {
+		assertThat(billing.findInvoices(new InvoiceQuery()
+				.issuedBetween(LocalDate.of(2022, 1, 1), LocalDate.of(2022, 1, 5))
+				.orderByDescending(InvoiceQuery.Order.AMOUNT)),
+			hasNumbers(5, 2, 1));
+	}
+	
+	@Test
+	public void testFindInvoices_ByNumberRangeWithLimit() {
+		assertThat(billing.findInvoices(new InvoiceQuery()
+				.numberedBetween(2, 5)
+				.orderByDescending(InvoiceQuery.Order.NUMBER)
+				.limit(2)),
+			hasNumbers(5, 4));
+	}
+	
+	@Test
+	public void testFindInvoices_PushedDown() {
+		InvoiceQuery query = new InvoiceQuery().paid();
+		when(mockPersistence.findInvoices(query)).thenReturn
+				(Optional.of(Stream.of(GOOD_INVOICES_MAP.get(2))));
+		assertThat(billing.findInvoices(query), hasNumbers(2));
+	}
+	
 	/**
 	 * After adding a customer, assure that there is one new line in the
 	 * customers data file. We also verify that the object makes the required 
@@ -0,0 +1,147 @@
+package com.amica.billing;
+
+import com.amica.billing.InvoiceQuery.Order;
+import com.amica.billing.db.Migration;
+import com.amica.billing.db.mongo.MongoPersistence;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+//Runs each query through the Mongo pushdown in MongoPersistence, and
+//compares the results to those of the in-memory InvoiceIndex over the
+//same cached invoices. Several invoices share amounts or issue dates,
+//and neither evaluation promises an order among ties, so for sorted
+//queries we compare the sequence of sort keys, and otherwise the sets
+//of invoice numbers.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes={MongoPersistenceIntegrationTest.Config.class})
+public class MongoPersistenceIntegrationTest {
+
+    @Autowired
+    private Migration migration;
+
+    @Autowired
+    private MongoPersistence persistence;
+
+    @ComponentScan
+    @EnableAutoConfiguration
+    @EnableMongoRepositories
+    @PropertySource(value={"classpath:test.properties", "classpath:migration.properties"})
+    public static class Config{
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        migration.remigrate();
+        persistence.load();
+        persistence.setPushDownQueries(true);
+    }
+
+    private Customer customer(String name){
+        return persistence.getCustomers().get(name);
+    }
+
+    private static Function<Invoice,Object> sortKey(Order order){
+        switch( order ){
+            case NUMBER: return Invoice::getNumber;
+            case ISSUE_DATE: return Invoice::getIssueDay;
+            default: return Invoice::getAmount;
+        }
+    }
+
+    private void assertSameAsInMemory(InvoiceQuery query){
+        Optional<Stream<Invoice>> pushedDown = persistence.findInvoices(query);
+        assertThat(pushedDown.isPresent(), equalTo(true));
+        List<Invoice> actual = pushedDown.get().toList();
+        List<Invoice> expected = new InvoiceIndex(persistence.getInvoices())
+                .find(query).toList();
+
+        assertThat(actual, hasSize(expected.size()));
+        assertThat(actual.stream().allMatch(query::matches), equalTo(true));
+        if( query.getOrder() != null ){
+            Function<Invoice,Object> key = sortKey(query.getOrder());
+            assertThat(actual.stream().map(key).toList(),
+                    equalTo(expected.stream().map(key).toList()));
+        }
+        if( !query.hasLimit() ){
+            assertThat(actual.stream().map(Invoice::getNumber).toList(),
+                    containsInAnyOrder(expected.stream().map(Invoice::getNumber).toArray()));
+        }
+    }
+
+    @Test
+    public void testFindInvoices_Customer(){
+        assertSameAsInMemory(new InvoiceQuery().forCustomer(customer("Janis Joplin")));
+        assertSameAsInMemory(new InvoiceQuery().forCustomer(customer("Bonnie Raitt")));
+    }
+
+    @Test
+    public void testFindInvoices_Terms(){
+        assertSameAsInMemory(new InvoiceQuery().withTerms(Terms.CASH));
+        assertSameAsInMemory(new InvoiceQuery().withTerms(Terms.CREDIT_60, Terms.CREDIT_90));
+        assertSameAsInMemory(new InvoiceQuery().forCustomer(customer("Glen Campbell"))
+                .withTerms(Terms.CREDIT_30));
+    }
+
+    @Test
+    public void testFindInvoices_UnsavedCustomer(){
+        Customer unsaved = new Customer("Merle", "Haggard", Terms.CASH);
+        assertThat(persistence.findInvoices(new InvoiceQuery().forCustomer(unsaved)),
+                equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void testFindInvoices_Paid(){
+        assertSameAsInMemory(new InvoiceQuery().paid());
+        assertSameAsInMemory(new InvoiceQuery().unpaid());
+        assertSameAsInMemory(new InvoiceQuery().withTerms(Terms.CREDIT_30).unpaid());
+    }
+
+    @Test
+    public void testFindInvoices_Ranges(){
+        assertSameAsInMemory(new InvoiceQuery().numberedBetween(105, 115));
+        assertSameAsInMemory(new InvoiceQuery()
+                .issuedBetween(LocalDate.of(2021, 9, 1), LocalDate.of(2021, 10, 31)));
+        assertSameAsInMemory(new InvoiceQuery().amountAtLeast(1000).amountAtMost(1500));
+        assertSameAsInMemory(new InvoiceQuery().issuedOnOrAfter(LocalDate.of(2021, 11, 12))
+                .amountAtMost(170).unpaid());
+    }
+
+    @Test
+    public void testFindInvoices_Sorted(){
+        for( Order order : Order.values() ){
+            assertSameAsInMemory(new InvoiceQuery().orderBy(order));
+            assertSameAsInMemory(new InvoiceQuery().orderByDescending(order));
+            assertSameAsInMemory(new InvoiceQuery().withTerms(Terms.CREDIT_30, Terms.CASH)
+                    .unpaid().orderBy(order));
+        }
+    }
+
+    @Test
+    public void testFindInvoices_Limited(){
+        assertSameAsInMemory(new InvoiceQuery().orderByDescending(Order.AMOUNT).limit(5));
+        assertSameAsInMemory(new InvoiceQuery().orderBy(Order.ISSUE_DATE).limit(3));
+        assertSameAsInMemory(new InvoiceQuery().forCustomer(customer("Janis Joplin"))
+                .orderBy(Order.NUMBER).limit(2));
+        assertSameAsInMemory(new InvoiceQuery().withTerms(Terms.CREDIT_60)
+                .paid().orderByDescending(Order.ISSUE_DATE).limit(1));
+        assertSameAsInMemory(new InvoiceQuery().unpaid().limit(4));
+    }
+}
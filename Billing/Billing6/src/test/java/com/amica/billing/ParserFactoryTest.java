@@ -4,16 +4,30 @@ import static com.amica.billing.ParserFactory.createParser;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.amica.billing.parse.CSVParser;
 import com.amica.billing.parse.FlatParser;
+import com.amica.billing.parse.FormatDetector.Format;
+import com.amica.billing.parse.QuotedCSVParser;
 import com.amica.billing.parse.Parser;
 
 /**
@@ -67,6 +81,48 @@ public class ParserFactoryTest {
 		assertThat(createParser("xyz"), instanceOf(CSVParser.class));
 	}
 	
+	@Test
+	public void testCreateParser_MultipleDots() {
+		assertThat(createParser("invoices.2024.flat"), instanceOf(FlatParser.class));
+	}
+	
+	@Test
+	public void testCreateParser_DotInFolder() {
+		assertThat(createParser("data.flat/invoices"), instanceOf(CSVParser.class));
+	}
+	
+	@Test
+	public void testCreateParser_DetectedQuoted() {
+		assertThat(createParser(Paths.get("data", "invoices_quoted.csv")), 
+				instanceOf(QuotedCSVParser.class));
+	}
+	
+	@Test
+	public void testCreateParser_DetectedFlat() throws Exception {
+		Path file = Paths.get(TEMP_FOLDER, "invoices.2024.csv");
+		Files.createDirectories(file.getParent());
+		Files.copy(Paths.get("data", "invoices.flat"), file, 
+				StandardCopyOption.REPLACE_EXISTING);
+		assertThat(createParser(file), instanceOf(FlatParser.class));
+	}
+	
+	@Test
+	public void testCreateParser_DetectedBinary() throws Exception {
+		Path file = Paths.get(TEMP_FOLDER, "invoices.bin");
+		Files.createDirectories(file.getParent());
+		Files.write(file, new byte[] { 'P', 'K', 3, 4, 0, 0 });
+		assertThrows(IllegalArgumentException.class, () -> createParser(file));
+		
+		ParserFactory.replaceFormatParser(Format.BINARY, mockParserFactory);
+		assertThat(createParser(file), equalTo(mockParser));
+	}
+	
+	@Test
+	public void testCreateParser_NotFound() {
+		assertThat(createParser(Paths.get(TEMP_FOLDER, "missing.flat")), 
+				instanceOf(FlatParser.class));
+	}
+	
 	@Test
 	public void testAddParser() {
 		ParserFactory.addParser("xxx", mockParserFactory);
@@ -86,10 +142,149 @@ public class ParserFactoryTest {
 		assertThat(createParser("any.csv"), equalTo(mockParser));
 	}
 	
+	@Test
+	public void testReplaceParser_Detected() throws Exception {
+		Path file = Paths.get(TEMP_FOLDER, "invoices.2024.csv");
+		Files.createDirectories(file.getParent());
+		Files.copy(Paths.get("data", "invoices.flat"), file,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		ParserFactory.replaceParser("flat", mockParserFactory);
+		assertThat(createParser(file), equalTo(mockParser));
+		ParserFactory.replaceParser("csv", mockParserFactory);
+		assertThat(createParser(Paths.get("data", "invoices.csv")),
+				equalTo(mockParser));
+	}
+
 	@Test
 	public void testReplaceParser_Missing() {
 		assertThrows(IllegalArgumentException.class, 
 				() -> ParserFactory.replaceParser("xxx", mockParserFactory));
 		assertThat(createParser("any.xxx"), instanceOf(CSVParser.class));
 	}
+	
+	@Test
+	public void testCreateParser_Shared() {
+		assertThat(createParser("a.csv"), sameInstance(createParser("b.csv")));
+		assertThat(createParser("a.flat"), sameInstance(createParser("b.flat")));
+	}
+	
+	@Test
+	public void testCreateParserWithClassName() {
+		Parser parser = ParserFactory.createParserWithClassName
+				(QuotedCSVParser.class.getName());
+		assertThat(parser, instanceOf(QuotedCSVParser.class));
+		assertThat(ParserFactory.createParserWithClassName
+				(QuotedCSVParser.class.getName()), sameInstance(parser));
+	}
+	
+	@Test
+	public void testCreateParserWithClassName_Stateful() {
+		Parser parser = ParserFactory.createParserWithClassName
+				(StatefulParser.class.getName());
+		assertThat(parser, instanceOf(StatefulParser.class));
+		assertThat(ParserFactory.createParserWithClassName
+				(StatefulParser.class.getName()), not(sameInstance(parser)));
+	}
+	
+	@Test
+	public void testCreateParserWithClassName_Missing() {
+		assertThat(ParserFactory.createParserWithClassName("no.such.Parser"), 
+				nullValue());
+	}
+	
+	@Test
+	public void testCreateParserWithClassName_Retried() {
+		Supplier<Parser> supplier = ParserFactory.getSupplierForClassName
+				(FlakyParser.class.getName());
+		assertThat(supplier.get(), nullValue());
+		assertThat(supplier.get(), instanceOf(FlakyParser.class));
+		assertThat(ParserFactory.createParserWithClassName
+				(FlakyParser.class.getName()), sameInstance(supplier.get()));
+	}
+	
+	@Test
+	public void testGetSupplierForClassName_Lazy() {
+		Supplier<Parser> supplier = ParserFactory.getSupplierForClassName
+				(CountingParser.class.getName());
+		assertThat(CountingParser.created.get(), equalTo(0));
+		Parser parser = supplier.get();
+		assertThat(supplier.get(), sameInstance(parser));
+		assertThat(CountingParser.created.get(), equalTo(1));
+	}
+	
+	@Test
+	public void testResetParsers_Concurrent() throws Exception {
+		Thread resetter = new Thread(() -> {
+			for (int i = 0; i < 100; ++i) {
+				ParserFactory.resetParsers();
+			}
+		});
+		resetter.start();
+		for (int i = 0; resetter.isAlive(); ++i) {
+			ParserFactory.addParser("r" + i, mockParserFactory);
+		}
+		resetter.join();
+		
+		ParserFactory.addParser("after", mockParserFactory);
+		assertThat(createParser("any.after"), equalTo(mockParser));
+		assertThat(createParser("any.csv"), instanceOf(CSVParser.class));
+	}
+	
+	@Test
+	public void testAddParser_Concurrent() {
+		AtomicInteger failures = new AtomicInteger();
+		List<String> extensions = IntStream.range(0, 1000).parallel()
+			.mapToObj(i -> "x" + (i % 100))
+			.peek(ext -> {
+				try {
+					ParserFactory.addParser(ext, mockParserFactory);
+				} catch (IllegalArgumentException ex) {
+					failures.incrementAndGet();
+				}
+			})
+			.collect(Collectors.toList());
+		
+		assertThat(failures.get(), equalTo(900));
+		for (String extension : extensions) {
+			assertThat(createParser("any." + extension), equalTo(mockParser));
+		}
+	}
+	
+	/**
+	 * A parser that doesn't claim to be stateless, so the factory
+	 * should create a new one each time.
+	 */
+	public static class StatefulParser extends CSVParser {
+		@Override
+		public boolean isStateless() {
+			return false;
+		}
+	}
+	
+	/**
+	 * A stateless parser that counts how many times it's created.
+	 */
+	public static class CountingParser extends CSVParser {
+		private static AtomicInteger created = new AtomicInteger();
+		
+		public CountingParser() {
+			created.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * A parser that can't be created the first time we try,
+	 * as if its class weren't yet available.
+	 */
+	public static class FlakyParser extends CSVParser {
+		private static boolean failed;
+		
+		public FlakyParser() {
+			if (!failed) {
+				failed = true;
+				throw new IllegalStateException("Not available yet");
+			}
+		}
+	}
 }
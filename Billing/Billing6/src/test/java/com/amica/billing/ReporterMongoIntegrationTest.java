@@ -37,7 +37,7 @@ public class ReporterMongoIntegrationTest extends ReporterIntegrationTestBase {
     @Override
     public void setUp() throws IOException {
         super.setUp();
-        migration.migrate();
+        migration.remigrate();
     }
 
     @Test
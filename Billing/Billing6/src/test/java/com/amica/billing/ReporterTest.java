@@ -22,6 +22,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
+import com.amica.billing.Billing.CustomerAging;
 import com.amica.billing.Billing.CustomerAndVolume;
 
 /**
@@ -72,7 +73,8 @@ public class ReporterTest {
 		Stream.of(Reporter.FILENAME_INVOICES_BY_NUMBER,
 			Reporter.FILENAME_INVOICES_BY_CUSTOMER,
 			Reporter.FILENAME_OVERDUE_INVOICES,
-			Reporter.FILENAME_CUSTOMERS_AND_VOLUME)
+			Reporter.FILENAME_CUSTOMERS_AND_VOLUME,
+			Reporter.FILENAME_RECEIVABLES_AGING)
 				.forEach(f -> new File(OUTPUT_FOLDER, f).delete());
 		
 		Map<Customer,List<Invoice>> invoicesByCustomer = new HashMap<>();
@@ -100,6 +102,14 @@ public class ReporterTest {
 		when(cv3.getVolume()).thenReturn(100.0);
 		customersAndVolume.add(cv3);
 		
+		Map<Customer,CustomerAging> aging = new HashMap<>();
+		aging.put(GOOD_CUSTOMERS.get(0), new CustomerAging(GOOD_CUSTOMERS.get(0),
+				new double[] { 0, 100, 0, 0, 0 }));
+		aging.put(GOOD_CUSTOMERS.get(1), new CustomerAging(GOOD_CUSTOMERS.get(1),
+				new double[] { 300, 400, 0, 0, 0 }));
+		aging.put(GOOD_CUSTOMERS.get(2), new CustomerAging(GOOD_CUSTOMERS.get(2),
+				new double[] { 0, 600, 0, 0, 0 }));
+		
 		mockBilling = mock(Billing.class);
 		when(mockBilling.getInvoicesOrderedByNumber())
 				.thenReturn(GOOD_INVOICES.stream());
@@ -109,6 +119,8 @@ public class ReporterTest {
 				.thenReturn(overdueInvoices);
 		when(mockBilling.getCustomersAndVolumeStream())
 				.thenReturn(customersAndVolume.stream());
+		when(mockBilling.getReceivablesAging(AS_OF_DATE))
+				.thenReturn(aging);
 
 		reporter = new Reporter(mockBilling);
 		reporter.setOutputFolder(Paths.get(OUTPUT_FOLDER));
@@ -148,6 +160,12 @@ public class ReporterTest {
 		assertCorrectOutput(Reporter.FILENAME_CUSTOMERS_AND_VOLUME);
 	}
 	
+	@Test
+	public void testReportReceivablesAging() {
+		reporter.reportReceivablesAging();
+		assertCorrectOutput(Reporter.FILENAME_RECEIVABLES_AGING);
+	}
+	
 	@Test
 	public void testOnCustomerChanged() {
 		customerListener.accept(null);
@@ -161,5 +179,6 @@ public class ReporterTest {
 		assertCorrectOutput(Reporter.FILENAME_INVOICES_BY_CUSTOMER);
 		assertCorrectOutput(Reporter.FILENAME_OVERDUE_INVOICES);
 		assertCorrectOutput(Reporter.FILENAME_CUSTOMERS_AND_VOLUME);
+		assertCorrectOutput(Reporter.FILENAME_RECEIVABLES_AGING);
 	}
 }
@@ -0,0 +1,73 @@
+package com.amica.billing;
+
+import static com.amica.billing.TestUtility.GOOD_CUSTOMERS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.RevenueRollup.Measure;
+
+/**
+ * Unit test for the {@link RevenueRollup} class, focusing on range sums
+ * as the covered range of dates grows in both directions.
+ * 
+ * @author Will Provost
+ */
+public class RevenueRollupTest {
+
+	public static final LocalDate START = LocalDate.of(2022, 6, 15);
+	
+	private RevenueRollup rollup;
+	
+	@BeforeEach
+	public void setUp() {
+		rollup = new RevenueRollup(List.of
+			(new Invoice(1, GOOD_CUSTOMERS.get(0), 100, START),
+			 new Invoice(2, GOOD_CUSTOMERS.get(0), 200, START.plusDays(1), 
+					 START.plusDays(10))));
+	}
+	
+	@Test
+	public void testInitialTotals() {
+		assertThat(rollup.getTotal(Measure.ISSUED, START, START.plusDays(1)), 
+				closeTo(300.0, .0001));
+		assertThat(rollup.getTotal(Measure.PAID, START, START.plusDays(9)), 
+				closeTo(0.0, .0001));
+		assertThat(rollup.getTotal(Measure.PAID, START, START.plusDays(10)), 
+				closeTo(200.0, .0001));
+	}
+	
+	@Test
+	public void testGrowBothWays() {
+		rollup.issued(new Invoice(3, GOOD_CUSTOMERS.get(0), 400, START.minusYears(3)));
+		rollup.issued(new Invoice(4, GOOD_CUSTOMERS.get(0), 800, START.plusYears(5)));
+		
+		assertThat(rollup.getTotal(Measure.ISSUED, START.minusYears(10), 
+				START.plusYears(10)), closeTo(1500.0, .0001));
+		assertThat(rollup.getTotal(Measure.ISSUED, START.minusYears(3), 
+				START.minusYears(3)), closeTo(400.0, .0001));
+		assertThat(rollup.getTotal(Measure.ISSUED, START, START.plusYears(5)), 
+				closeTo(1100.0, .0001));
+		assertThat(rollup.getTotal(Measure.ISSUED, 
+				YearMonth.from(START.minusYears(3)), YearMonth.from(START)), 
+			closeTo(700.0, .0001));
+	}
+	
+	@Test
+	public void testGetDailyTotals() {
+		assertThat(rollup.getDailyTotals(Measure.ISSUED, START.minusDays(1), 
+				START.plusDays(2)).values(), contains(0.0, 100.0, 200.0, 0.0));
+	}
+	
+	@Test
+	public void testEmptyRange() {
+		assertThat(rollup.getTotal(Measure.ISSUED, START.plusDays(1), START), 
+				closeTo(0.0, .0001));
+	}
+}
@@ -0,0 +1,219 @@
+package com.amica.billing.db;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.Terms;
+import com.amica.billing.db.ChangeJournal.Change;
+import com.amica.billing.db.ChangeJournal.Type;
+import com.amica.billing.metrics.Metrics;
+import com.amica.billing.metrics.Timer;
+
+/**
+ * Unit test for the {@link ChangeJournal}.
+ * 
+ * @author Will Provost
+ */
+public class ChangeJournalTest {
+
+	public static final Path JOURNAL_FILE = Paths.get(TEMP_FOLDER, "changes.journal");
+	
+	private Customer customer = new Customer("Jerry", "Reed", Terms.CREDIT_30);
+	private Invoice invoice = new Invoice(1, customer, 100, LocalDate.of(2021, 10, 1));
+	private ChangeJournal journal;
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.deleteIfExists(JOURNAL_FILE);
+		journal = new ChangeJournal(JOURNAL_FILE);
+	}
+	
+	@AfterEach
+	public void tearDown() throws Exception {
+		journal.close();
+	}
+	
+	@Test
+	public void testAppendAndRead() throws Exception {
+		assertThat(journal.append(customer), equalTo(1L));
+		assertThat(journal.append(invoice), equalTo(2L));
+		
+		List<Change> changes = journal.read(0, 10);
+		assertThat(changes, hasSize(2));
+		assertThat(changes.get(0), equalTo(new Change(1, Type.CUSTOMER, "Jerry,Reed,30")));
+		assertThat(changes.get(1), equalTo
+				(new Change(2, Type.INVOICE, "1,Jerry,Reed,100.00,2021-10-01")));
+		assertThat(journal.read(1, 10), hasSize(1));
+		assertThat(journal.read(0, 1), hasSize(1));
+	}
+	
+	@Test
+	public void testReopen() throws Exception {
+		journal.append(customer);
+		journal.append(invoice);
+		journal.close();
+		
+		journal = new ChangeJournal(JOURNAL_FILE);
+		assertThat(journal.getLastSequence(), equalTo(2L));
+		assertThat(journal.append(invoice), equalTo(3L));
+	}
+	
+	@Test
+	public void testReopen_TornTail() throws Exception {
+		journal.append(customer);
+		journal.close();
+		Files.writeString(JOURNAL_FILE, "2\tINVOICE\t1,Jer", StandardOpenOption.APPEND);
+		
+		journal = new ChangeJournal(JOURNAL_FILE);
+		assertThat(journal.getLastSequence(), equalTo(1L));
+		journal.append(invoice);
+		assertThat(journal.read(0, 10).stream().map(Change::getSequence).toList(),
+				contains(1L, 2L));
+	}
+	
+	@Test
+	public void testCompact() throws Exception {
+		journal.append(customer);
+		journal.append(invoice);
+		journal.append(invoice);
+		journal.compact(2);
+		assertThat(journal.read(0, 10).stream().map(Change::getSequence).toList(),
+				contains(3L));
+		
+		journal.compact(3);
+		journal.close();
+		journal = new ChangeJournal(JOURNAL_FILE);
+		assertThat(journal.read(3, 10), empty());
+		assertThat(journal.append(customer), equalTo(4L));
+	}
+	
+	@Test
+	public void testRead_Indexed() throws Exception {
+		for (int i = 0; i < 1000; ++i) {
+			journal.append(invoice);
+		}
+		assertThat(journal.read(511, 3).stream().map(Change::getSequence).toList(),
+				contains(512L, 513L, 514L));
+		assertThat(journal.read(999, 10).stream().map(Change::getSequence).toList(),
+				contains(1000L));
+		
+		journal.compact(600);
+		assertThat(journal.read(0, 1).get(0).getSequence(), equalTo(601L));
+		assertThat(journal.read(767, 1).get(0).getSequence(), equalTo(768L));
+		
+		journal.close();
+		journal = new ChangeJournal(JOURNAL_FILE);
+		assertThat(journal.read(700, 2).stream().map(Change::getSequence).toList(),
+				contains(701L, 702L));
+		assertThat(journal.read(1000, 10), empty());
+	}
+	
+	@Test
+	public void testRead_WhileAppending() throws Exception {
+		final int APPENDS = 5000;
+		Invoice paid = new Invoice(1, customer, 100, 
+				LocalDate.of(2021, 10, 1), LocalDate.of(2021, 10, 15));
+		Thread appender = new Thread(() -> {
+			try {
+				for (int a = 0; a < APPENDS; ++a) {
+					journal.append(paid);
+				}
+			} catch (Exception ex) {
+				throw new RuntimeException(ex);
+			}
+		});
+		appender.start();
+		
+		long last = 0;
+		while (last < APPENDS) {
+			for (Change change : journal.read(last, 100)) {
+				assertThat(change.getSequence(), equalTo(last + 1));
+				assertThat(change.getData(), endsWith(",2021-10-15"));
+				last = change.getSequence();
+			}
+		}
+		appender.join();
+	}
+	
+	@Test
+	public void testRead_UnfinishedLineIgnored() throws Exception {
+		journal.append(customer);
+		Files.writeString(JOURNAL_FILE, "2\tINVOICE\t1,Jer", StandardOpenOption.APPEND);
+		assertThat(journal.read(0, 10).stream().map(Change::getSequence).toList(),
+				contains(1L));
+	}
+	
+	@Test
+	public void testRecordsIn() throws Exception {
+		journal.append(customer);
+		journal.append(invoice);
+		List<Change> changes = journal.read(0, 10);
+		
+		Map<String,Customer> customers = ChangeJournal.customersIn(changes);
+		assertThat(customers.keySet(), contains("Jerry Reed"));
+		assertThat(ChangeJournal.invoicesIn(changes, customers).keySet(), 
+				contains(1));
+	}
+	
+	@Test
+	public void testRecordsIn_Rejected() throws Exception {
+		List<Change> changes = List.of
+				(new Change(1, Type.CUSTOMER, "Jerry,Reed,30"),
+				 new Change(2, Type.CUSTOMER, "Jerry,Reed"),
+				 new Change(3, Type.INVOICE, "1,Jerry,Reed,100.00,2021-10-01"));
+		assertThrows(IllegalStateException.class, 
+				() -> ChangeJournal.customersIn(changes));
+		assertThrows(IllegalStateException.class, 
+				() -> ChangeJournal.invoicesIn(changes, Map.of()));
+	}
+	
+	@Test
+	public void testSync_GroupCommit() throws Exception {
+		final int THREADS = 4;
+		final int APPENDS = 50;
+		Timer syncs = Metrics.timer("ChangeJournal.sync");
+		long syncsBefore = syncs.snapshot().getCount();
+		
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; ++t) {
+			threads.add(new Thread(() -> {
+				try {
+					for (int a = 0; a < APPENDS; ++a) {
+						journal.sync(journal.append(invoice));
+					}
+				} catch (Exception ex) {
+					throw new RuntimeException(ex);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertThat(journal.read(0, Integer.MAX_VALUE), hasSize(THREADS * APPENDS));
+		assertThat(syncs.snapshot().getCount() - syncsBefore, 
+				lessThanOrEqualTo((long) THREADS * APPENDS));
+		journal.sync(journal.getLastSequence());
+		assertThat(syncs.snapshot().getCount() - syncsBefore, 
+				lessThanOrEqualTo((long) THREADS * APPENDS));
+	}
+}
@@ -0,0 +1,191 @@
+package com.amica.billing.db;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.Terms;
+
+/**
+ * Unit test for the {@link ChangeSync}. We journal changes made through
+ * one in-memory persistence service and ship them to another.
+ * 
+ * @author Will Provost
+ */
+public class ChangeSyncTest {
+
+	public static final Path JOURNAL_FILE = Paths.get(TEMP_FOLDER, "sync.journal");
+	public static final Path CURSOR_FILE = Paths.get(TEMP_FOLDER, "sync.cursor");
+	
+	/**
+	 * Persistence that starts out empty and counts the records written.
+	 */
+	public static class TestPersistence extends CachingPersistence {
+		
+		private List<Object> written = new ArrayList<>();
+		private boolean failing;
+		
+		public TestPersistence() {
+			load();
+		}
+		
+		protected Stream<Customer> readCustomers() {
+			return Stream.empty();
+		}
+		
+		protected Stream<Invoice> readInvoices() {
+			return Stream.empty();
+		}
+		
+		protected void writeCustomer(Customer customer) {
+			written.add(customer);
+		}
+		
+		protected void writeInvoice(Invoice invoice) {
+			if (failing) {
+				throw new UncheckedIOException(new IOException("Connection lost"));
+			}
+			written.add(invoice);
+		}
+	}
+	
+	private TestPersistence source;
+	private TestPersistence target;
+	private ChangeJournal journal;
+	private ChangeSync sync;
+	private Customer customer = new Customer("Jerry", "Reed", Terms.CREDIT_30);
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.deleteIfExists(JOURNAL_FILE);
+		Files.deleteIfExists(CURSOR_FILE);
+		journal = new ChangeJournal(JOURNAL_FILE);
+		source = new TestPersistence();
+		source.setJournal(journal);
+		target = new TestPersistence();
+		sync = new ChangeSync(journal, target, CURSOR_FILE);
+		sync.setBatchSize(3);
+	}
+	
+	@AfterEach
+	public void tearDown() throws Exception {
+		journal.close();
+	}
+	
+	private void createInvoices(int from, int to) {
+		for (int number = from; number <= to; ++number) {
+			source.saveInvoice(new Invoice(number, customer, 
+					number * 10, LocalDate.of(2021, 10, 1)));
+		}
+	}
+	
+	@Test
+	public void testSyncAll() throws Exception {
+		source.saveCustomer(customer);
+		createInvoices(1, 7);
+		
+		assertThat(sync.syncAll(), equalTo(8L));
+		assertThat(target.getCustomers().keySet(), contains("Jerry Reed"));
+		assertThat(target.getInvoices().keySet(), containsInAnyOrder(1, 2, 3, 4, 5, 6, 7));
+		assertThat(target.getInvoices().get(7).getAmount(), closeTo(70, .001));
+		assertThat(target.getInvoices().get(7).getCustomer(), 
+				sameInstance(target.getCustomers().get("Jerry Reed")));
+		assertThat(sync.getShippedSequence(), equalTo(8L));
+	}
+	
+	@Test
+	public void testSyncAll_DeltasOnly() throws Exception {
+		source.saveCustomer(customer);
+		createInvoices(1, 3);
+		sync.syncAll();
+		target.written.clear();
+		
+		createInvoices(4, 4);
+		assertThat(sync.syncAll(), equalTo(1L));
+		assertThat(target.written, hasSize(1));
+		assertThat(((Invoice) target.written.get(0)).getNumber(), equalTo(4));
+	}
+	
+	@Test
+	public void testSyncBatch_LatestChangeWins() throws Exception {
+		source.saveCustomer(customer);
+		source.saveCustomer(new Customer("Jerry", "Reed", Terms.CREDIT_60));
+		sync.syncBatch();
+		assertThat(target.getCustomers().get("Jerry Reed").getTerms(), 
+				equalTo(Terms.CREDIT_60));
+		assertThat(target.written, hasSize(1));
+	}
+	
+	@Test
+	public void testSyncAll_Redelivered() throws Exception {
+		source.saveCustomer(customer);
+		createInvoices(1, 5);
+		target.failing = true;
+		assertThrows(UncheckedIOException.class, sync::syncAll);
+		assertThat(sync.getShippedSequence(), equalTo(0L));
+		
+		target.failing = false;
+		assertThat(sync.syncAll(), equalTo(6L));
+		assertThat(target.getInvoices().keySet(), containsInAnyOrder(1, 2, 3, 4, 5));
+		assertThat(target.getCustomers().size(), equalTo(1));
+	}
+	
+	@Test
+	public void testSyncBatch_JournalDurable() throws Exception {
+		source.saveCustomer(customer);
+		createInvoices(1, 5);
+		assertThat(journal.getDurableSequence(), equalTo(0L));
+		
+		sync.syncBatch();
+		assertThat(sync.getShippedSequence(), equalTo(3L));
+		assertThat(journal.getDurableSequence(), greaterThanOrEqualTo(3L));
+	}
+	
+	@Test
+	public void testSyncAll_Compacts() throws Exception {
+		source.saveCustomer(customer);
+		createInvoices(1, 3);
+		sync.syncAll();
+		assertThat(Files.readAllLines(JOURNAL_FILE), hasSize(1));
+	}
+	
+	@Test
+	public void testSaveInvoice_JournaledBeforeWrite() throws Exception {
+		source.saveCustomer(customer);
+		source.failing = true;
+		assertThrows(UncheckedIOException.class, () -> createInvoices(1, 1));
+		assertThat(journal.getLastSequence(), equalTo(2L));
+		
+		sync.syncAll();
+		assertThat(target.getInvoices().keySet(), contains(1));
+	}
+	
+	@Test
+	public void testSaveInvoices_Journaled() throws Exception {
+		source.saveCustomers(List.of(customer));
+		Collection<Invoice> batch = List.of
+				(new Invoice(1, customer, 10, LocalDate.of(2021, 10, 1)),
+				 new Invoice(2, customer, 20, LocalDate.of(2021, 10, 1)));
+		source.saveInvoices(batch);
+		assertThat(journal.getLastSequence(), equalTo(3L));
+	}
+}
@@ -0,0 +1,166 @@
+package com.amica.billing.db;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.Terms;
+
+/**
+ * Unit test for the {@link Migration}, against mock repositories.
+ * We check that a failed migration resumes from its last checkpoint,
+ * and that customers already in the target aren't inserted again.
+ * 
+ * @author Will Provost
+ */
+public class MigrationTest {
+
+	public static final Path CUSTOMERS_FILE = Paths.get("data", "customers.csv");
+	public static final Path INVOICES_FILE = Paths.get("data", "invoices.csv");
+	public static final Path CHECKPOINT_FILE = 
+			Paths.get(TEMP_FOLDER, "migration.checkpoint");
+	public static final int BATCH_SIZE = 5;
+	
+	private CustomerRepository customerRepository;
+	private InvoiceRepository invoiceRepository;
+	private Migration migration;
+	private List<Integer> savedNumbers;
+	private List<Customer> savedCustomers;
+	private int lines;
+	
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.deleteIfExists(CHECKPOINT_FILE);
+		lines = Files.readAllLines(INVOICES_FILE).size();
+		
+		savedNumbers = new ArrayList<>();
+		savedCustomers = new ArrayList<>();
+		customerRepository = mock(CustomerRepository.class);
+		when(customerRepository.streamAllBy()).thenAnswer
+			(invocation -> new ArrayList<>(savedCustomers).stream());
+		when(customerRepository.saveAll(any())).thenAnswer(invocation -> {
+			savedCustomers.addAll(invocation.getArgument(0, Collection.class));
+			return invocation.getArgument(0);
+		});
+		invoiceRepository = mock(InvoiceRepository.class);
+		when(invoiceRepository.saveAll(any())).thenAnswer(invocation -> {
+			for (Invoice invoice : (Collection<Invoice>) invocation.getArgument(0)) {
+				savedNumbers.add(invoice.getNumber());
+			}
+			return invocation.getArgument(0);
+		});
+		
+		migration = new Migration(customerRepository, invoiceRepository);
+		migration.setCustomersFile(CUSTOMERS_FILE.toString());
+		migration.setInvoicesFile(INVOICES_FILE.toString());
+		migration.setCheckpointFile(CHECKPOINT_FILE.toString());
+		migration.setBatchSize(BATCH_SIZE);
+	}
+	
+	@Test
+	public void testMigrate() throws Exception {
+		migration.migrate();
+		
+		MigrationCheckpoint checkpoint = MigrationCheckpoint.load(CHECKPOINT_FILE).get();
+		assertThat(checkpoint.isComplete(), equalTo(true));
+		assertThat(checkpoint.getLines(), equalTo((long) lines));
+		assertThat(checkpoint.getOffset(), equalTo(Files.size(INVOICES_FILE)));
+		assertThat(checkpoint.getInvoices(), equalTo((long) savedNumbers.size()));
+		assertThat(savedNumbers, not(empty()));
+		assertThat(savedCustomers, hasSize((int) Files.lines(CUSTOMERS_FILE).count()));
+	}
+	
+	@Test
+	public void testMigrate_Complete() throws Exception {
+		migration.migrate();
+		int saved = savedNumbers.size();
+		migration.migrate();
+		assertThat(savedNumbers, hasSize(saved));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMigrate_Resume() throws Exception {
+		migration.migrate();
+		List<Integer> expected = new ArrayList<>(savedNumbers);
+		savedNumbers.clear();
+		Files.delete(CHECKPOINT_FILE);
+		
+		AtomicInteger calls = new AtomicInteger();
+		doAnswer(invocation -> {
+			if (calls.incrementAndGet() == 3) {
+				throw new IllegalStateException("Connection lost");
+			}
+			for (Invoice invoice : (Collection<Invoice>) invocation.getArgument(0)) {
+				savedNumbers.add(invoice.getNumber());
+			}
+			return invocation.getArgument(0);
+		}).when(invoiceRepository).saveAll(any());
+		
+		assertThrows(IllegalStateException.class, migration::migrate);
+		MigrationCheckpoint checkpoint = MigrationCheckpoint.load(CHECKPOINT_FILE).get();
+		assertThat(checkpoint.isComplete(), equalTo(false));
+		assertThat(checkpoint.getLines(), equalTo(2L * BATCH_SIZE));
+		int savedBeforeFailure = savedNumbers.size();
+
+		migration.migrate();
+		assertThat(savedNumbers, equalTo(expected));
+		assertThat(savedNumbers.size(), greaterThan(savedBeforeFailure));
+		assertThat(MigrationCheckpoint.load(CHECKPOINT_FILE).get().isComplete(), 
+				equalTo(true));
+	}
+	
+	@Test
+	public void testMigrate_ExistingCustomers() throws Exception {
+		savedCustomers.add(new Customer("Jerry", "Reed", Terms.CREDIT_30));
+		int customers = (int) Files.lines(CUSTOMERS_FILE).count();
+		migration.migrate();
+		assertThat(savedCustomers, hasSize(customers));
+		verify(customerRepository).saveAll(argThat
+				(batch -> ((Collection<?>) batch).size() == customers - 1));
+	}
+	
+	@Test
+	public void testMigrate_SourceChanged() throws Exception {
+		Path source = Paths.get(TEMP_FOLDER, "migration_invoices.csv");
+		Files.copy(INVOICES_FILE, source, StandardCopyOption.REPLACE_EXISTING);
+		migration.setInvoicesFile(source.toString());
+		migration.migrate();
+		
+		Files.writeString(source, Files.readString(INVOICES_FILE) + 
+				"999,Jerry,Reed,100,2021-10-01\n");
+		savedNumbers.clear();
+		migration.migrate();
+		assertThat(savedNumbers, hasItem(999));
+		assertThat(savedNumbers, hasSize(greaterThan(1)));
+	}
+	
+	@Test
+	public void testRemigrate() throws Exception {
+		migration.migrate();
+		migration.remigrate();
+		verify(invoiceRepository).deleteAll();
+		verify(customerRepository).deleteAll();
+		assertThat(MigrationCheckpoint.load(CHECKPOINT_FILE).get().isComplete(), 
+				equalTo(true));
+	}
+}
@@ -0,0 +1,70 @@
+package com.amica.billing.db.mongo;
+
+import static com.amica.billing.db.mongo.InvoiceSchemaMigration.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Invoice;
+
+/**
+ * Unit test for the conversion of old invoice documents
+ * by the {@link InvoiceSchemaMigration}.
+ * 
+ * @author Will Provost
+ */
+public class InvoiceSchemaMigrationTest {
+
+	public static final LocalDate ISSUED = LocalDate.of(2022, 1, 5);
+	public static final LocalDate PAID = LocalDate.of(2022, 2, 1);
+	
+	/**
+	 * Helper to store a date as Spring Data wrote LocalDate fields.
+	 */
+	private static Date toStoredDate(LocalDate date) {
+		return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+	
+	@Test
+	public void testGetUpdate_Paid() {
+		Document old = new Document("_id", 1)
+				.append(OLD_ISSUE_FIELD, toStoredDate(ISSUED))
+				.append(OLD_PAID_FIELD, toStoredDate(PAID));
+		Document update = getUpdate(old).get();
+		
+		Document set = update.get("$set", Document.class);
+		assertThat(set.getInteger(ISSUE_FIELD), equalTo((int) ISSUED.toEpochDay()));
+		assertThat(set.getInteger(PAID_FIELD), equalTo((int) PAID.toEpochDay()));
+		assertThat(update.get("$unset", Document.class).keySet(), 
+				containsInAnyOrder(OLD_ISSUE_FIELD, OLD_PAID_FIELD));
+	}
+	
+	@Test
+	public void testGetUpdate_Unpaid() {
+		Document old = new Document("_id", 1)
+				.append(OLD_ISSUE_FIELD, toStoredDate(ISSUED));
+		Document set = getUpdate(old).get().get("$set", Document.class);
+		assertThat(set.getInteger(PAID_FIELD), equalTo(Invoice.NOT_PAID));
+	}
+	
+	@Test
+	public void testGetUpdate_AlreadyMigrated() {
+		Document current = new Document("_id", 1)
+				.append(ISSUE_FIELD, (int) ISSUED.toEpochDay())
+				.append(PAID_FIELD, Invoice.NOT_PAID);
+		assertThat(getUpdate(current).isPresent(), equalTo(false));
+	}
+	
+	@Test
+	public void testGetUpdate_Unexpected() {
+		Document odd = new Document("_id", 1).append(OLD_ISSUE_FIELD, "2022-01-05");
+		assertThrows(IllegalStateException.class, () -> getUpdate(odd));
+	}
+}
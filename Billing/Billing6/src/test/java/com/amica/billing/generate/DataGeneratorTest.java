@@ -0,0 +1,125 @@
+package com.amica.billing.generate;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.Terms;
+import com.amica.billing.parse.ParserPersistence;
+
+/**
+ * Unit test for the {@link DataGenerator}. We generate modest data sets,
+ * check their shape, and read generated files back through
+ * {@link ParserPersistence}.
+ *
+ * @author Will Provost
+ */
+public class DataGeneratorTest {
+
+	public static final int INVOICES = 25000;
+	public static final int CUSTOMERS = 500;
+
+	private DataGenerator generator;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		generator = new DataGenerator();
+		generator.setInvoiceCount(INVOICES);
+		generator.setCustomerCount(CUSTOMERS);
+	}
+
+	@Test
+	public void testGenerateCustomers() {
+		List<Customer> customers = generator.generateCustomers();
+		assertThat(customers, hasSize(CUSTOMERS));
+		assertThat(customers.stream().map(Customer::getName).distinct().count(),
+				equalTo((long) CUSTOMERS));
+		assertThat(customers.stream().map(Customer::getTerms).distinct().count(),
+				equalTo((long) Terms.values().length));
+	}
+
+	@Test
+	public void testGenerateInvoices() {
+		List<Customer> customers = generator.generateCustomers();
+		List<Invoice> invoices = generator.generateInvoices(customers).toList();
+		assertThat(invoices, hasSize(INVOICES));
+		for (int i = 0; i < invoices.size(); ++i) {
+			assertThat(invoices.get(i).getNumber(), equalTo(i + 1));
+		}
+
+		double paid = invoices.stream().filter(Invoice::isPaid).count();
+		assertThat(paid / INVOICES, both(greaterThan(.5)).and(lessThan(.7)));
+
+		Map<Customer,Long> counts = invoices.stream().collect
+				(Collectors.groupingBy(Invoice::getCustomer, Collectors.counting()));
+		long busiest = counts.values().stream().max(Comparator.naturalOrder()).get();
+		assertThat(busiest, greaterThan(10L * INVOICES / CUSTOMERS));
+
+		assertThat(invoices.stream().allMatch(invoice ->
+				!invoice.getIssueDate().isBefore(generator.getStartDate()) &&
+				!invoice.getIssueDate().isAfter(generator.getEndDate()) &&
+				invoice.getPaidDate().map(pd -> !pd.isAfter(generator.getEndDate()))
+					.orElse(true)),
+			equalTo(true));
+	}
+
+	@Test
+	public void testGenerateInvoices_SameForSameSeed() {
+		List<Customer> customers = generator.generateCustomers();
+		List<Invoice> first = generator.generateInvoices(customers).toList();
+		List<Invoice> second = generator.generateInvoices(customers).toList();
+		for (int i = 0; i < first.size(); ++i) {
+			assertThat(second.get(i), samePropertyValuesAs(first.get(i)));
+		}
+	}
+
+	@Test
+	public void testWrite_CSV() throws Exception {
+		Path customersFile = Paths.get(TEMP_FOLDER, "generated_customers.csv");
+		Path invoicesFile = Paths.get(TEMP_FOLDER, "generated_invoices.csv");
+		generator.write(customersFile, invoicesFile);
+
+		ParserPersistence persistence = new ParserPersistence();
+		persistence.setCustomersFile(customersFile.toString());
+		persistence.setInvoicesFile(invoicesFile.toString());
+		persistence.load();
+		assertThat(persistence.getCustomers().size(), equalTo(CUSTOMERS));
+		assertThat(persistence.getInvoices().size(), equalTo(INVOICES));
+	}
+
+	@Test
+	public void testWrite_Flat() throws Exception {
+		generator.setInvoiceCount(5000);
+		Path customersFile = Paths.get(TEMP_FOLDER, "generated_customers.flat");
+		Path invoicesFile = Paths.get(TEMP_FOLDER, "generated_invoices.flat");
+		generator.write(customersFile, invoicesFile);
+
+		ParserPersistence persistence = new ParserPersistence();
+		persistence.setCustomersFile(customersFile.toString());
+		persistence.setInvoicesFile(invoicesFile.toString());
+		persistence.load();
+		assertThat(persistence.getInvoices().size(), equalTo(5000));
+	}
+
+	@Test
+	public void testWrite_FlatTooManyInvoices() {
+		assertThrows(IllegalArgumentException.class, () -> generator.write
+				(Paths.get(TEMP_FOLDER, "generated_customers.flat"),
+				 Paths.get(TEMP_FOLDER, "generated_invoices.flat")));
+	}
+}
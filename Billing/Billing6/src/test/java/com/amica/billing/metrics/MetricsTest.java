@@ -0,0 +1,65 @@
+package com.amica.billing.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the {@link Metrics} registry and its JMX view.
+ * 
+ * @author Will Provost
+ */
+public class MetricsTest {
+
+	@Test
+	public void testSameMetricForSameName() {
+		assertThat(Metrics.counter("MetricsTest.counter"), 
+				sameInstance(Metrics.counter("MetricsTest.counter")));
+		assertThat(Metrics.timer("MetricsTest.timer"), 
+				sameInstance(Metrics.timer("MetricsTest.timer")));
+	}
+	
+	@Test
+	public void testSnapshots() {
+		Metrics.counter("MetricsTest.snapshotCounter").add(5);
+		Metrics.timer("MetricsTest.snapshotTimer").record(2000);
+		
+		assertThat(Metrics.getCounters(), 
+				hasEntry("MetricsTest.snapshotCounter", 5L));
+		assertThat(Metrics.getTimers().get("MetricsTest.snapshotTimer").getCount(),
+				equalTo(1L));
+	}
+	
+	@Test
+	public void testJMX() throws Exception {
+		Metrics.counter("MetricsTest.jmxCounter").add(3);
+		Metrics.timer("MetricsTest.jmxTimer").record(7000);
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+		assertThat(server.getAttribute(name, "MetricsTest.jmxCounter"), equalTo(3L));
+		assertThat(server.getAttribute(name, "MetricsTest.jmxTimer.count"), equalTo(1L));
+		assertThat(server.getAttribute(name, "MetricsTest.jmxTimer.maxMicros"), equalTo(7L));
+		assertThat(Arrays.stream(server.getMBeanInfo(name).getAttributes())
+				.map(info -> info.getName()).toList(), 
+			hasItems("MetricsTest.jmxCounter", "MetricsTest.jmxTimer.p99Micros"));
+	}
+	
+	@Test
+	public void testJMX_UnknownOperation() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+		ReflectionException ex = assertThrows(ReflectionException.class, 
+				() -> server.invoke(name, "explode", new Object[0], new String[0]));
+		assertThat(ex.getTargetException(), instanceOf(NoSuchMethodException.class));
+	}
+}
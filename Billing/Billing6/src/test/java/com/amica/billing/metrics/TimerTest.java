@@ -0,0 +1,66 @@
+package com.amica.billing.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the {@link Timer} histogram.
+ * 
+ * @author Will Provost
+ */
+public class TimerTest {
+
+	private Timer timer;
+	
+	@BeforeEach
+	public void setUp() {
+		timer = new Timer();
+	}
+	
+	@Test
+	public void testBuckets() {
+		for (long nanos = 0; nanos < 1000000; nanos = nanos * 3 / 2 + 1) {
+			int bucket = Timer.bucketFor(nanos);
+			assertThat(Timer.upperBoundOf(bucket), greaterThanOrEqualTo(nanos));
+			if (bucket != 0) {
+				assertThat(Timer.upperBoundOf(bucket - 1), lessThan(nanos));
+			}
+		}
+		assertThat(Timer.bucketFor(Long.MAX_VALUE), lessThan(Timer.BUCKETS));
+	}
+	
+	@Test
+	public void testSnapshot_Empty() {
+		Timer.Snapshot snapshot = timer.snapshot();
+		assertThat(snapshot.getCount(), equalTo(0L));
+		assertThat(snapshot.getMean(), equalTo(0.0));
+		assertThat(snapshot.getP99(), equalTo(0L));
+	}
+	
+	@Test
+	public void testSnapshot() {
+		IntStream.rangeClosed(1, 1000).parallel()
+			.forEach(micros -> timer.record(micros * 1000L));
+		
+		Timer.Snapshot snapshot = timer.snapshot();
+		assertThat(snapshot.getCount(), equalTo(1000L));
+		assertThat(snapshot.getMax(), equalTo(1000000L));
+		assertThat(snapshot.getMean(), closeTo(500500.0, .1));
+		assertThat((double) snapshot.getP50(), closeTo(500000, 100000));
+		assertThat((double) snapshot.getP95(), closeTo(950000, 190000));
+		assertThat(snapshot.getP99(), lessThanOrEqualTo(1000000L));
+	}
+	
+	@Test
+	public void testReset() {
+		timer.record(1000);
+		timer.reset();
+		assertThat(timer.snapshot().getCount(), equalTo(0L));
+		assertThat(timer.snapshot().getMax(), equalTo(0L));
+	}
+}
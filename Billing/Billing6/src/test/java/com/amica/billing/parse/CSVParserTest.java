@@ -2,13 +2,21 @@ package com.amica.billing.parse;
 
 import static com.amica.billing.TestUtility.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.amica.billing.metrics.Counter;
+import com.amica.billing.metrics.Metrics;
+
 /**
  * Unit test for the {@link CSVParser}. Relies on data sets in the 
  * {@link TestUtility} and its own CSV representations of those data sets,
@@ -78,6 +86,27 @@ public class CSVParserTest {
 			sameAsList(BAD_INVOICES));
 	}
 	
+	@Test
+	public void testParseInvoices_Counted() {
+		Counter parsed = Metrics.counter("CSVParser.invoicesParsed");
+		Counter rejected = Metrics.counter("CSVParser.invoicesRejected");
+		long parsedBefore = parsed.getValue();
+		long rejectedBefore = rejected.getValue();
+		parser.parseInvoices(BAD_INVOICE_DATA.stream(), GOOD_CUSTOMERS_MAP).toList();
+		assertThat(parsed.getValue() - parsedBefore, equalTo(3L));
+		assertThat(rejected.getValue() - rejectedBefore, equalTo(3L));
+	}
+	
+	@Test
+	public void testParseInvoices_Quarantined() throws Exception {
+		Path quarantineFile = Paths.get(TEMP_FOLDER, "quarantine_csv.txt");
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.deleteIfExists(quarantineFile);
+		parser.withQuarantineFile(quarantineFile).parseInvoices(BAD_INVOICE_DATA.stream(), GOOD_CUSTOMERS_MAP).toList();
+		assertThat(Files.readAllLines(quarantineFile), contains
+				(BAD_INVOICE_DATA.get(2), BAD_INVOICE_DATA.get(3), BAD_INVOICE_DATA.get(4)));
+	}
+	
 	@Test
 	public void testProduceCustomers() {
 		assertThat(parser.produceCustomers(GOOD_CUSTOMERS.stream()).toList(),
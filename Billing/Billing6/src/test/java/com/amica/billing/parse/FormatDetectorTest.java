@@ -0,0 +1,108 @@
+package com.amica.billing.parse;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.parse.FormatDetector.Format;
+
+/**
+ * Unit test for the {@link FormatDetector}. We check samples of each
+ * format directly, and then the data files that ship with the project.
+ * 
+ * @author Will Provost
+ */
+public class FormatDetectorTest {
+
+	public static final String SOURCE_FOLDER = "data";
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		FormatDetector.clearCache();
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+	}
+	
+	private static Format detect(String text, boolean truncated) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return FormatDetector.detect(bytes, bytes.length, truncated);
+	}
+	
+	@Test
+	public void testDetect_CSV() {
+		assertThat(detect("1,Jerry,Reed,100,2021-10-01\n2,Glen,Campbell,50,2021-10-02\n", 
+				false), equalTo(Format.CSV));
+	}
+	
+	@Test
+	public void testDetect_QuotedCSV() {
+		assertThat(detect("\"Jerry\",\"Reed\",30\n\"Glen\",\"Campbell\",60\n", 
+				false), equalTo(Format.QUOTED_CSV));
+	}
+	
+	@Test
+	public void testDetect_Flat() {
+		assertThat(detect("Myrna       Loy         CREDIT_60 \n" +
+				"William     Powell      CASH      \n", false), equalTo(Format.FLAT));
+	}
+	
+	@Test
+	public void testDetect_Flat_Truncated() {
+		assertThat(detect("Myrna       Loy         CREDIT_60 \n" +
+				"William     Powell      CASH      \nSkippy  ", true), equalTo(Format.FLAT));
+	}
+	
+	@Test
+	public void testDetect_Binary() {
+		byte[] bytes = { 'P', 'K', 3, 4, 0, 0 };
+		assertThat(FormatDetector.detect(bytes, bytes.length, false), 
+				equalTo(Format.BINARY));
+	}
+	
+	@Test
+	public void testDetect_Unknown() {
+		assertThat(detect("", false), equalTo(Format.UNKNOWN));
+		assertThat(detect("one,two\nthree\n", false), equalTo(Format.UNKNOWN));
+	}
+	
+	@Test
+	public void testDetect_Files() {
+		assertThat(FormatDetector.detect(Paths.get(SOURCE_FOLDER, "invoices.csv")),
+				equalTo(Format.CSV));
+		assertThat(FormatDetector.detect(Paths.get(SOURCE_FOLDER, "customers_quoted.csv")),
+				equalTo(Format.QUOTED_CSV));
+		assertThat(FormatDetector.detect(Paths.get(SOURCE_FOLDER, "invoices.flat")),
+				equalTo(Format.FLAT));
+		assertThat(FormatDetector.detect(Paths.get(SOURCE_FOLDER, "customers.flat")),
+				equalTo(Format.FLAT));
+	}
+	
+	@Test
+	public void testDetect_Missing() {
+		assertThat(FormatDetector.detect(Paths.get(TEMP_FOLDER, "no_such_file")),
+				equalTo(Format.UNKNOWN));
+	}
+	
+	@Test
+	public void testDetect_CachedUntilModified() throws Exception {
+		Path file = Paths.get(TEMP_FOLDER, "detect.2024.dat");
+		Files.writeString(file, "Jerry,Reed,30\n");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+		assertThat(FormatDetector.detect(file), equalTo(Format.CSV));
+		
+		Files.writeString(file, "Jerry   Reed \n");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+		assertThat(FormatDetector.detect(file), equalTo(Format.CSV));
+
+		Files.setLastModifiedTime(file, FileTime.fromMillis(2000000));
+		assertThat(FormatDetector.detect(file), equalTo(Format.FLAT));
+	}
+}
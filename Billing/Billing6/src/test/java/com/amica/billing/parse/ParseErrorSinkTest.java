@@ -0,0 +1,100 @@
+package com.amica.billing.parse;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.metrics.Counter;
+import com.amica.billing.parse.ParseErrorSink.Reason;
+
+/**
+ * Unit test for the {@link ParseErrorSink}.
+ * 
+ * @author Will Provost
+ */
+public class ParseErrorSinkTest {
+
+	public static final Path QUARANTINE_FILE = 
+			Paths.get(TEMP_FOLDER, "quarantine_test.txt");
+	
+	private Counter counter;
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.deleteIfExists(QUARANTINE_FILE);
+		counter = new Counter();
+	}
+	
+	@Test
+	public void testCounts() {
+		ParseErrorSink sink = new ParseErrorSink("test", null, counter);
+		sink.accept();
+		sink.reject(Reason.BAD_VALUE, "a");
+		sink.reject(Reason.BAD_VALUE, "b");
+		sink.reject(Reason.UNKNOWN_CUSTOMER, "c");
+		sink.finish();
+		
+		assertThat(sink.getAcceptedCount(), equalTo(1L));
+		assertThat(sink.getRejectedCount(), equalTo(3L));
+		assertThat(sink.getCount(Reason.BAD_VALUE), equalTo(2L));
+		assertThat(sink.getCount(Reason.WRONG_LENGTH), equalTo(0L));
+		assertThat(counter.getValue(), equalTo(3L));
+	}
+	
+	@Test
+	public void testQuarantine() throws Exception {
+		final int LINES = ParseErrorSink.BATCH_SIZE * 2 + 5;
+		ParseErrorSink sink = new ParseErrorSink("test", QUARANTINE_FILE, counter);
+		IntStream.range(0, LINES).forEach
+			(i -> sink.reject(Reason.WRONG_FIELD_COUNT, "line " + i));
+		assertThat(Files.readAllLines(QUARANTINE_FILE), 
+				hasSize(ParseErrorSink.BATCH_SIZE * 2));
+		
+		sink.finish();
+		sink.finish();
+		List<String> lines = Files.readAllLines(QUARANTINE_FILE);
+		assertThat(lines, hasSize(LINES));
+		assertThat(lines.get(LINES - 1), equalTo("line " + (LINES - 1)));
+	}
+	
+	@Test
+	public void testFinishWhenDone() throws Exception {
+		ParseErrorSink sink = new ParseErrorSink("test", QUARANTINE_FILE, counter);
+		List<String> result = sink.finishWhenDone(Stream.of("a", "b", "c")
+				.filter(s -> {
+					if (s.equals("b")) {
+						sink.reject(Reason.BAD_VALUE, s);
+						return false;
+					}
+					return true;
+				})).toList();
+		
+		assertThat(result, contains("a", "c"));
+		assertThat(Files.readAllLines(QUARANTINE_FILE), contains("b"));
+	}
+	
+	@Test
+	public void testFinishWhenClosed() throws Exception {
+		ParseErrorSink sink = new ParseErrorSink("test", QUARANTINE_FILE, counter);
+		boolean[] sourceClosed = { false };
+		try ( Stream<String> stream = sink.finishWhenDone(Stream.of("a", "b")
+				.onClose(() -> sourceClosed[0] = true)); ) {
+			sink.reject(Reason.BAD_VALUE, "x");
+			assertThat(stream.findFirst().get(), equalTo("a"));
+		}
+		
+		assertThat(sourceClosed[0], equalTo(true));
+		assertThat(Files.readAllLines(QUARANTINE_FILE), contains("x"));
+	}
+}
@@ -0,0 +1,138 @@
+package com.amica.billing.parse;
+
+import static com.amica.billing.TestUtility.TEMP_FOLDER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.db.ChangeJournal;
+
+/**
+ * Unit test for the {@link ParserPersistence}, focused on durability:
+ * snapshots replace files atomically, and the write-ahead log
+ * is replayed at load time.
+ * 
+ * @author Will Provost
+ */
+public class ParserPersistenceTest {
+
+	public static final Path CUSTOMERS_FILE = Paths.get(TEMP_FOLDER, "wal_customers.csv");
+	public static final Path INVOICES_FILE = Paths.get(TEMP_FOLDER, "wal_invoices.csv");
+	public static final Path LOG_FILE = Paths.get(TEMP_FOLDER, "wal.log");
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.copy(Paths.get("data", "customers.csv"), CUSTOMERS_FILE, 
+				StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(Paths.get("data", "invoices.csv"), INVOICES_FILE, 
+				StandardCopyOption.REPLACE_EXISTING);
+		Files.deleteIfExists(LOG_FILE);
+	}
+	
+	private ParserPersistence createPersistence() {
+		return createPersistence(new ParserPersistence());
+	}
+	
+	private ParserPersistence createPersistence(ParserPersistence persistence) {
+		persistence.setCustomersFile(CUSTOMERS_FILE.toString());
+		persistence.setInvoicesFile(INVOICES_FILE.toString());
+		persistence.setWriteAheadLogFile(LOG_FILE.toString());
+		persistence.load();
+		return persistence;
+	}
+	
+	@Test
+	public void testSaveInvoice() throws Exception {
+		ParserPersistence persistence = createPersistence();
+		Customer customer = persistence.getCustomers().values().iterator().next();
+		persistence.saveInvoice(new Invoice(999, customer, 100, LocalDate.of(2022, 1, 1)));
+		
+		assertThat(Files.readAllLines(INVOICES_FILE), 
+				hasItem(startsWith("999," + customer.getFirstName())));
+		assertThat(Files.exists(Paths.get(INVOICES_FILE + ".tmp")), equalTo(false));
+		assertThat(Files.readAllLines(LOG_FILE), hasItem(containsString("999,")));
+	}
+	
+	@Test
+	public void testLoad_Recovered() throws Exception {
+		Customer customer = createPersistence().getCustomers()
+				.values().iterator().next();
+		try ( ChangeJournal log = new ChangeJournal(LOG_FILE); ) {
+			log.sync(log.append(new Invoice
+					(998, customer, 50, LocalDate.of(2022, 1, 2))));
+		}
+		assertThat(Files.readAllLines(INVOICES_FILE), 
+				not(hasItem(startsWith("998,"))));
+		
+		ParserPersistence persistence = createPersistence();
+		assertThat(persistence.getInvoices(), hasKey(998));
+		assertThat(persistence.getInvoices().get(998).getCustomer(), 
+				sameInstance(persistence.getCustomers().get(customer.getName())));
+		assertThat(Files.readAllLines(INVOICES_FILE), hasItem(startsWith("998,")));
+		assertThat(Files.readAllLines(LOG_FILE), hasSize(1));
+	}
+	
+	@Test
+	public void testLoad_Compacted() throws Exception {
+		ParserPersistence persistence = createPersistence();
+		persistence.setLogCompactionInterval(2);
+		Customer customer = persistence.getCustomers().values().iterator().next();
+		for (int number = 990; number < 995; ++number) {
+			persistence.saveInvoice(new Invoice
+					(number, customer, 100, LocalDate.of(2022, 1, 1)));
+		}
+		
+		assertThat(Files.readAllLines(LOG_FILE).size(), lessThanOrEqualTo(2));
+		assertThat(createPersistence().getInvoices().keySet(), 
+				hasItems(990, 991, 992, 993, 994));
+	}
+	
+	@Test
+	public void testLoad_CompactedAroundUnwritten() throws Exception {
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ParserPersistence persistence = createPersistence(new ParserPersistence() {
+			@Override
+			protected void writeInvoice(Invoice invoice) {
+				if (invoice.getNumber() == 990) {
+					writing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				super.writeInvoice(invoice);
+			}
+		});
+		persistence.setLogCompactionInterval(2);
+		Customer customer = persistence.getCustomers().values().iterator().next();
+		
+		Thread slow = new Thread(() -> persistence.saveInvoice(new Invoice
+				(990, customer, 100, LocalDate.of(2022, 1, 1))));
+		slow.start();
+		writing.await();
+		for (int number = 991; number < 995; ++number) {
+			persistence.saveInvoice(new Invoice
+					(number, customer, 100, LocalDate.of(2022, 1, 1)));
+		}
+		assertThat(Files.readAllLines(LOG_FILE), hasItem(containsString("\t990,")));
+		
+		release.countDown();
+		slow.join();
+		assertThat(createPersistence().getInvoices().keySet(), 
+				hasItems(990, 991, 992, 993, 994));
+	}
+}
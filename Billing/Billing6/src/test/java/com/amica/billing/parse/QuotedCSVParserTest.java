@@ -2,7 +2,11 @@ package com.amica.billing.parse;
 
 import static com.amica.billing.TestUtility.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -78,6 +82,16 @@ public class QuotedCSVParserTest {
 			sameAsList(BAD_INVOICES));
 	}
 	
+	@Test
+	public void testParseInvoices_Quarantined() throws Exception {
+		Path quarantineFile = Paths.get(TEMP_FOLDER, "quarantine_quoted_csv.txt");
+		Files.createDirectories(Paths.get(TEMP_FOLDER));
+		Files.deleteIfExists(quarantineFile);
+		parser.withQuarantineFile(quarantineFile).parseInvoices(BAD_INVOICE_DATA.stream(), GOOD_CUSTOMERS_MAP).toList();
+		assertThat(Files.readAllLines(quarantineFile), contains
+				(BAD_INVOICE_DATA.get(2), BAD_INVOICE_DATA.get(3), BAD_INVOICE_DATA.get(4)));
+	}
+	
 	@Test
 	public void testProduceCustomers() {
 		assertThat(parser.produceCustomers(GOOD_CUSTOMERS.stream()).toList(),
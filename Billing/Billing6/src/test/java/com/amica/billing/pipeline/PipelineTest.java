@@ -0,0 +1,183 @@
+package com.amica.billing.pipeline;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.billing.Customer;
+import com.amica.billing.Invoice;
+import com.amica.billing.Terms;
+import com.amica.billing.db.Persistence;
+import com.amica.billing.parse.CSVParser;
+import com.amica.billing.parse.Parser;
+
+/**
+ * Unit test for the {@link Pipeline}. We load the CSV data that ships
+ * with the project into a simple in-memory sink, using small batches
+ * and queues so that every stage has to wait on the others.
+ * 
+ * @author Will Provost
+ */
+public class PipelineTest {
+
+	public static final Path CUSTOMERS_FILE = Paths.get("data", "customers.csv");
+	public static final Path INVOICES_FILE = Paths.get("data", "invoices.csv");
+	
+	/**
+	 * Sink that keeps records in memory and remembers batch sizes.
+	 */
+	public static class TestSink implements Persistence {
+		
+		private Map<String,Customer> customers = new ConcurrentHashMap<>();
+		private Map<Integer,Invoice> invoices = new ConcurrentHashMap<>();
+		private List<Integer> batchSizes = new ArrayList<>();
+		
+		public Map<String,Customer> getCustomers() {
+			return customers;
+		}
+		
+		public Map<Integer,Invoice> getInvoices() {
+			return invoices;
+		}
+		
+		public void saveCustomer(Customer customer) {
+			customers.put(customer.getName(), customer);
+		}
+		
+		public void saveInvoice(Invoice invoice) {
+			invoices.put(invoice.getNumber(), invoice);
+		}
+		
+		@Override
+		public void saveInvoices(Collection<Invoice> batch) {
+			batchSizes.add(batch.size());
+			Persistence.super.saveInvoices(batch);
+		}
+	}
+	
+	private Parser parser = new CSVParser();
+	private TestSink sink;
+	private Pipeline pipeline;
+	private Map<String,Customer> expectedCustomers;
+	private Map<Integer,Invoice> expectedInvoices;
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		sink = new TestSink();
+		pipeline = new Pipeline(parser, sink);
+		pipeline.setWorkers(3);
+		pipeline.setBatchSize(4);
+		pipeline.setQueueCapacity(2);
+		
+		try ( Stream<String> lines = Files.lines(CUSTOMERS_FILE); ) {
+			expectedCustomers = parser.parseCustomers(lines)
+					.collect(Collectors.toMap(Customer::getName, Function.identity()));
+		}
+		try ( Stream<String> lines = Files.lines(INVOICES_FILE); ) {
+			expectedInvoices = parser.parseInvoices(lines, expectedCustomers)
+					.collect(Collectors.toMap(Invoice::getNumber, Function.identity()));
+		}
+	}
+	
+	@Test
+	public void testRun() throws Exception {
+		Pipeline.Progress progress = pipeline.run(CUSTOMERS_FILE, INVOICES_FILE);
+		
+		assertThat(sink.getCustomers().keySet(), equalTo(expectedCustomers.keySet()));
+		assertThat(sink.getInvoices().keySet(), equalTo(expectedInvoices.keySet()));
+		assertThat(sink.batchSizes, everyItem(lessThanOrEqualTo(4)));
+		assertThat(progress.getCustomersWritten(), equalTo((long) expectedCustomers.size()));
+		assertThat(progress.getInvoicesWritten(), equalTo((long) expectedInvoices.size()));
+		assertThat(progress.getLinesRead(), 
+				equalTo((long) Files.readAllLines(INVOICES_FILE).size()));
+		assertThat(progress.getRejected(), 
+				equalTo(progress.getLinesRead() - expectedInvoices.size()));
+	}
+	
+	@Test
+	public void testRun_ProgressReported() throws Exception {
+		List<Pipeline.Progress> reports = new ArrayList<>();
+		pipeline.setProgressListener(reports::add);
+		Pipeline.Progress progress = pipeline.run(CUSTOMERS_FILE, INVOICES_FILE);
+		assertThat(reports, hasItem(sameInstance(progress)));
+	}
+	
+	@Test
+	public void testRun_Dedupe() throws Exception {
+		List<String> lines = Files.readAllLines(INVOICES_FILE);
+		Stream<String> doubled = Stream.concat(lines.stream(), lines.stream());
+		
+		pipeline.addTransform(new Dedupe());
+		pipeline.loadCustomers(Files.lines(CUSTOMERS_FILE));
+		Pipeline.Progress progress = 
+				pipeline.loadInvoices(doubled, expectedCustomers);
+		
+		assertThat(progress.getInvoicesWritten(), equalTo((long) expectedInvoices.size()));
+		assertThat(progress.getInvoicesDropped(), equalTo((long) expectedInvoices.size()));
+	}
+	
+	@Test
+	public void testRun_ScaleCurrencyAndRemapTerms() throws Exception {
+		pipeline.addTransform(new ScaleCurrency(1.5))
+			.addTransform(new RemapTerms(Map.of(Terms.CREDIT_30, Terms.CREDIT_60)));
+		pipeline.run(CUSTOMERS_FILE, INVOICES_FILE);
+		
+		for (Invoice invoice : sink.getInvoices().values()) {
+			Invoice expected = expectedInvoices.get(invoice.getNumber());
+			assertThat(invoice.getAmount(), closeTo(expected.getAmount() * 1.5, .005));
+			assertThat(invoice.getCustomer().getTerms(), 
+					not(equalTo(Terms.CREDIT_30)));
+			if (expected.getCustomer().getTerms() == Terms.CREDIT_30) {
+				assertThat(invoice.getDueDate(), 
+						equalTo(invoice.getIssueDate().plusDays(60)));
+			}
+		}
+		assertThat(sink.getCustomers().values().stream().map(Customer::getTerms)
+				.toList(), not(hasItem(Terms.CREDIT_30)));
+	}
+	
+	@Test
+	public void testRun_ManyLines() throws Exception {
+		final int LINES = 20000;
+		Customer customer = new Customer("Jerry", "Reed", Terms.CASH);
+		Stream<String> lines = IntStream.rangeClosed(1, LINES)
+				.mapToObj(n -> n + ",Jerry,Reed,100,2021-10-01");
+		pipeline.setBatchSize(100);
+		Pipeline.Progress progress = pipeline.loadInvoices
+				(lines, Map.of(customer.getName(), customer));
+		
+		assertThat(progress.getInvoicesWritten(), equalTo((long) LINES));
+		assertThat(sink.getInvoices().size(), equalTo(LINES));
+	}
+	
+	@Test
+	public void testRun_StageFails() throws Exception {
+		pipeline.addTransform(new Transform() {
+			@Override
+			public Invoice transformInvoice(Invoice invoice) {
+				throw new IllegalArgumentException("Bad invoice");
+			}
+		});
+		pipeline.setProgressInterval(Duration.ofMillis(100));
+		IllegalStateException ex = assertThrows(IllegalStateException.class, 
+				() -> pipeline.run(CUSTOMERS_FILE, INVOICES_FILE));
+		assertThat(ex.getCause(), instanceOf(IllegalArgumentException.class));
+	}
+}
@@ -0,0 +1,75 @@
+package com.amica.help.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amica.help.AssignmentStrategy;
+import com.amica.help.Clock;
+import com.amica.help.HelpDesk;
+import com.amica.help.LoadBalancedAssignment;
+import com.amica.help.Tags;
+import com.amica.help.Ticket.Priority;
+
+/**
+ * Times for creating tickets on a help desk with a large staff, so that
+ * choosing a technician for each one dominates. Every third ticket is
+ * resolved as we go, so loads rise and fall. Each invocation starts
+ * with a new help desk, with all technicians added and no tickets.
+ *
+ * @author Will Provost
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AssignmentBenchmark {
+
+	public static final int TICKETS_PER_TECHNICIAN = 50;
+
+	@Param({ "2000" })
+	private int technicianCount;
+
+	@Param({ "leastLoaded", "priorityWeighted" })
+	private String strategy;
+
+	private HelpDesk helpDesk;
+
+	@Setup(Level.Invocation)
+	public void setUp() {
+		Clock.setTime(100);
+		AssignmentStrategy assignment = strategy.equals("priorityWeighted")
+				? LoadBalancedAssignment.priorityWeighted()
+				: LoadBalancedAssignment.leastLoaded();
+		helpDesk = new HelpDesk(new Tags(), assignment);
+		for (int t = 0; t < technicianCount; ++t) {
+			helpDesk.addTechnician(String.format("T%05d", t), "Technician " + t, t);
+		}
+	}
+
+	@Benchmark
+	public HelpDesk createTickets() {
+		final int tickets = technicianCount * TICKETS_PER_TECHNICIAN;
+		for (int i = 0; i < tickets; ++i) {
+			helpDesk.createTicket("ORIGINATOR", "DESCRIPTION",
+					Priority.values()[i % Priority.values().length]);
+			if (i % 3 == 0) {
+				helpDesk.getTicketByID(i + 1).resolve("Resolved.");
+			}
+		}
+		return helpDesk;
+	}
+}
@@ -0,0 +1,29 @@
+package com.amica.help;
+
+/**
+ * Strategy for choosing the technician to whom the {@link HelpDesk}
+ * assigns a new ticket. The help desk tells the strategy about each
+ * technician when it's added, and again whenever that technician's
+ * workload changes, so that a strategy can keep its own index of
+ * technicians rather than searching them all for each new ticket.
+ *
+ * @author Will Provost
+ */
+public interface AssignmentStrategy {
+
+	/**
+	 * A new technician is available for assignments.
+	 */
+	public void addTechnician(Technician technician);
+
+	/**
+	 * The technician has been assigned a ticket, or has resolved one.
+	 */
+	public void loadChanged(Technician technician);
+
+	/**
+	 * Chooses a technician for the given ticket, or returns null if there
+	 * are no technicians.
+	 */
+	public Technician chooseTechnician(Ticket ticket);
+}
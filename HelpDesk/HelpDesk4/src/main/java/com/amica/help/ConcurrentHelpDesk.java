@@ -0,0 +1,111 @@
+package com.amica.help;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import com.amica.help.Ticket.Status;
+
+/**
+ * Implementation of the primary API that can be shared by many threads,
+ * such as agents working on one help desk at the same time. It keeps the
+ * same indexes as the {@link HelpDesk}, in concurrent structures:
+ * ticket IDs are allocated atomically, tickets are held in skip lists
+ * and concurrent maps, and tickets lock themselves for each lifecycle
+ * transition, during which they notify this help desk of the change.
+ *
+ * Queries are weakly consistent: a ticket that's changing status or
+ * gaining a tag while a query runs may or may not be in the results,
+ * but the query won't fail, and every completed change is seen.
+ *
+ * @author Will Provost
+ */
+public class ConcurrentHelpDesk extends IndexedHelpDesk {
+
+	private Map<Integer, Ticket> ticketsByID = new ConcurrentHashMap<>();
+	private Map<Tag, SortedSet<Ticket>> ticketsByTag = new ConcurrentHashMap<>();
+
+	public ConcurrentHelpDesk() {
+		this(new Tags());
+	}
+
+	public ConcurrentHelpDesk(Tags tags) {
+		this(tags, LoadBalancedAssignment.leastLoaded());
+	}
+
+	public ConcurrentHelpDesk(Tags tags, AssignmentStrategy assignment) {
+		super(tags, assignment);
+	}
+
+	protected <T> SortedSet<T> newSortedSet() {
+		return new ConcurrentSkipListSet<>();
+	}
+
+	protected <K,V> Map<K,V> newMap() {
+		return new ConcurrentHashMap<>();
+	}
+
+	protected <T> List<T> newList() {
+		return new CopyOnWriteArrayList<>();
+	}
+
+	protected void indexID(Ticket ticket) {
+		ticketsByID.put(ticket.getID(), ticket);
+	}
+
+	protected void indexTag(Ticket ticket, Tag tag) {
+		ticketsByTag.computeIfAbsent(tag, t -> new ConcurrentSkipListSet<>()).add(ticket);
+	}
+
+	/**
+	 * Helper to get the set of tickets with the given tag.
+	 */
+	private SortedSet<Ticket> getTicketsWithTag(String tagValue) {
+		return ticketsByTag.getOrDefault(getTags().getTag(tagValue), new TreeSet<>());
+	}
+
+	public Ticket getTicketByID(int ID) {
+		return ticketsByID.get(ID);
+	}
+
+	/**
+	 * Merging the other buckets, as the base class does, could miss a
+	 * ticket that moves from a bucket we've yet to reach to one we've
+	 * already passed. Every ticket stays in the set of all tickets, though,
+	 * so we check the current status of each of those instead.
+	 */
+	@Override
+	public Stream<Ticket> getTicketsByNotStatus(Status status) {
+		return getTickets().filter(ticket -> ticket.getStatus() != status);
+	}
+
+	public Stream<Ticket> getTicketsWithAnyTag(String... tagValues) {
+		SortedSet<Ticket> result = new TreeSet<>();
+		for (String tagValue : tagValues) {
+			result.addAll(getTicketsWithTag(tagValue));
+		}
+		return result.stream();
+	}
+
+	public Stream<Ticket> getTicketsWithAllTags(String... tagValues) {
+		if (tagValues.length == 0) {
+			return getTickets();
+		}
+
+		List<Set<Ticket>> sets = new ArrayList<>();
+		for (String tagValue : tagValues) {
+			sets.add(getTicketsWithTag(tagValue));
+		}
+		sets.sort(Comparator.comparingInt(Set::size));
+		return sets.get(0).stream().filter(ticket ->
+				sets.stream().skip(1).allMatch(set -> set.contains(ticket)));
+	}
+}
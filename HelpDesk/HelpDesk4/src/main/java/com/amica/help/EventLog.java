@@ -0,0 +1,98 @@
+package com.amica.help;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of events from all tickets, in order of their timestamps.
+ * Events are held in fixed-size segments, so appending never copies what's
+ * already there, and reading the latest N events costs only N steps back
+ * from the end. Time ranges are found by binary search. An event that is
+ * older than the latest one, which can only happen if the {@link Clock}
+ * is set back, is moved back into its place.
+ *
+ * Methods are synchronized, so the log can be shared by threads; queries
+ * copy the events they find, so their results are stable.
+ *
+ * @author Will Provost
+ */
+public class EventLog {
+
+	public static final int SEGMENT_SIZE = 4096;
+
+	private List<Event[]> segments = new ArrayList<>();
+	private int size;
+
+	/**
+	 * Helper to get the event at the given position.
+	 */
+	private Event get(int position) {
+		return segments.get(position / SEGMENT_SIZE)[position % SEGMENT_SIZE];
+	}
+
+	/**
+	 * Helper to set the event at the given position.
+	 */
+	private void set(int position, Event event) {
+		segments.get(position / SEGMENT_SIZE)[position % SEGMENT_SIZE] = event;
+	}
+
+	/**
+	 * Helper to find the position of the first event at or after the given time.
+	 */
+	private int find(long timestamp) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (get(middle).getTimestamp() < timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Adds an event to the log, after any others with the same timestamp.
+	 */
+	public synchronized void add(Event event) {
+		if (size % SEGMENT_SIZE == 0) {
+			segments.add(new Event[SEGMENT_SIZE]);
+		}
+		int position = size++;
+		while (position > 0 && get(position - 1).getTimestamp() > event.getTimestamp()) {
+			set(position, get(position - 1));
+			--position;
+		}
+		set(position, event);
+	}
+
+	/**
+	 * Returns up to the given number of events, latest first.
+	 */
+	public synchronized Stream<Event> getLatest(int count) {
+		return IntStream.range(0, Math.min(count, size))
+				.mapToObj(i -> get(size - 1 - i))
+				.collect(Collectors.toList()).stream();
+	}
+
+	/**
+	 * Returns the events from the given time, inclusive, to the given time,
+	 * exclusive, in order.
+	 */
+	public synchronized Stream<Event> getEvents(long from, long to) {
+		int start = find(from);
+		int end = Math.max(start, find(to));
+		return IntStream.range(start, end).mapToObj(this::get)
+				.collect(Collectors.toList()).stream();
+	}
+}
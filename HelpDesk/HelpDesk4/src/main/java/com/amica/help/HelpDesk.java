@@ -1,135 +1,88 @@
 package com.amica.help;
 
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import com.amica.help.Ticket.Priority;
-import com.amica.help.Ticket.Status;
-
 /**
- * Implementation of the primary API. The help desk collects technicians
- * and tickets, cooreindates creation and lifecycle of tickets, and offers
- * query methods to get one or more tickets by a few useful criteria.
- * It also holds a tag manager, so that keyword tags assigned to tickets
- * are unique objects within the scope of this help desk instance.
- * 
+ * Implementation of the primary API for use by one thread at a time.
+ * Tickets are held in ordinary sorted sets and hash maps, and each keeps
+ * its history in an ordinary list. Since IDs are issued in sequence
+ * starting at 1, ticket N is found at position N - 1 in a list. We keep the IDs of the tickets that have each tag in a bit set,
+ * including reopened tickets that inherit the tag from a prior ticket.
+ *
  * @author Will Provost
  */
-public class HelpDesk implements HelpDeskAPI {
+public class HelpDesk extends IndexedHelpDesk {
 
-	private int nextID = 0;
-	private SortedSet<Technician> technicians = new TreeSet<>();
-	private SortedSet<Ticket> tickets = new TreeSet<>();
-	private Tags tags;
+	private List<Ticket> ticketsByID = new ArrayList<>();
+	private Map<Tag, BitSet> ticketsByTag = new HashMap<>();
 
 	public HelpDesk() {
 		this(new Tags());
 	}
-	
+
 	public HelpDesk(Tags tags) {
-		this.tags = tags;
+		this(tags, LoadBalancedAssignment.leastLoaded());
 	}
 
-	public Tags getTags() {
-		return tags;
+	public HelpDesk(Tags tags, AssignmentStrategy assignment) {
+		super(tags, assignment);
 	}
 
-	public void addTechnician(String ID, String name, int extension) {
-		technicians.add(new Technician(ID, name, extension));
+	protected <T> SortedSet<T> newSortedSet() {
+		return new TreeSet<>();
 	}
 
-	public int createTicket(String originator, 
-				String description, Priority priority) {
-		if (technicians.isEmpty()) {
-			throw new IllegalStateException("No technicians available yet.");
-		}
-		Ticket ticket = new Ticket(++nextID, originator, description, priority);
-		tickets.add(ticket);
-		ticket.assign(technicians.stream()
-			.min(Comparator.comparing(t -> t.getActiveTickets().count()))
-			.get());
-		return ticket.getID();
+	protected <K,V> Map<K,V> newMap() {
+		return new HashMap<>();
 	}
 
-	public void addTags(int ID, String... tagValues) {
-		Ticket ticket = getTicketByID(ID);
-		if (ticket != null) {
-			for (String tagValue : tagValues) {
-				ticket.addTag(tags.getTag(tagValue));
-			}
-		} else {
-			throw new IllegalArgumentException("No ticket with ID " + ID);
-		}
+	protected <T> List<T> newList() {
+		return new ArrayList<>();
 	}
 
-	public SortedSet<Technician> getTechnicians() {
-		return technicians;
+	protected void indexID(Ticket ticket) {
+		ticketsByID.add(ticket);
 	}
 
-	public int reopenTicket(int priorTicketID, String reason, Priority priority) {
-		if (technicians.isEmpty()) {
-			throw new IllegalStateException("No technicians available yet.");
-		}
-		Ticket ticket = new ReopenedTicket
-				(++nextID, getTicketByID(priorTicketID), reason, priority);
-		tickets.add(ticket);
-		return ticket.getID();
+	protected void indexTag(Ticket ticket, Tag tag) {
+		ticketsByTag.computeIfAbsent(tag, t -> new BitSet()).set(ticket.getID());
 	}
 
-	public Stream<Ticket> getTickets() {
-		return tickets.stream();
+	/**
+	 * Helper to get the bit set of IDs for the ticket with the given tag.
+	 */
+	private BitSet getTicketIDsWithTag(String tagValue) {
+		return ticketsByTag.getOrDefault(getTags().getTag(tagValue), new BitSet());
 	}
 
 	public Ticket getTicketByID(int ID) {
-		return tickets.stream()
-				.filter(t -> t.getID() == ID).findFirst().orElse(null);
-	}
-
-	public Stream<Ticket> getTicketsByStatus(Status status) {
-		return tickets.stream().filter(t -> t.getStatus() == status);
-	}
-
-	public Stream<Ticket> getTicketsByNotStatus(Status status) {
-		return tickets.stream().filter(t -> t.getStatus() != status);
-	}
-
-	public Stream<Ticket> getTicketsByTechnician(String techID) {
-		return tickets.stream()
-				.filter(t -> t.getTechnician().getID().equals(techID));
+		return ID > 0 && ID <= ticketsByID.size() ? ticketsByID.get(ID - 1) : null;
 	}
 
 	public Stream<Ticket> getTicketsWithAnyTag(String... tagValues) {
-		return tickets.stream().filter(ticket -> ticket.getTags().anyMatch
-			(candidate -> Arrays.stream(tagValues).map(tags::getTag)
-				.anyMatch(tag -> tag.equals(candidate))));
-	}
-
-	public int getAverageMinutesToResolve() {
-		return (int) getTicketsByStatus(Status.RESOLVED)
-				.mapToInt(Ticket::getMinutesToResolve).average()
-				.getAsDouble();
+		BitSet IDs = new BitSet();
+		for (String tagValue : tagValues) {
+			IDs.or(getTicketIDsWithTag(tagValue));
+		}
+		return getTicketsByIDs(IDs.stream());
 	}
 
-	public Map<String, Double> getAverageMinutesToResolvePerTechnician() {
-		return getTicketsByStatus(Status.RESOLVED)
-			.collect(Collectors.groupingBy(t -> t.getTechnician().getID(),
-				Collectors.averagingInt(Ticket::getMinutesToResolve)));
-	}
+	public Stream<Ticket> getTicketsWithAllTags(String... tagValues) {
+		if (tagValues.length == 0) {
+			return getTickets();
+		}
 
-	public Stream<Ticket> getTicketsByText(String text) {
-		return tickets.stream().filter(t -> t.includesText(text));
-	}
-	
-	public Stream<Event> getLatestActivity(int count) {
-		return tickets.stream()
-				.flatMap(Ticket::getHistory)
-				.sorted(Collections.reverseOrder())
-				.limit(count);
+		BitSet IDs = (BitSet) getTicketIDsWithTag(tagValues[0]).clone();
+		for (int i = 1; i < tagValues.length && !IDs.isEmpty(); ++i) {
+			IDs.and(getTicketIDsWithTag(tagValues[i]));
+		}
+		return getTicketsByIDs(IDs.stream());
 	}
 }
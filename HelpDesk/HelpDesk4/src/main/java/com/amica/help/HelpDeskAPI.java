@@ -75,6 +75,11 @@ public interface HelpDeskAPI {
 	 */
 	public Stream<Ticket> getTicketsWithAnyTag(String... tags);
 
+	/**
+	 * Return a stream of all tickets that have every one of the given tags.
+	 */
+	public Stream<Ticket> getTicketsWithAllTags(String... tags);
+
 	/**
 	 * Return the average time, in minutes, from creation to resolution
 	 * for all resolved tickets. Un-resolved tickets are not considered.
@@ -89,6 +94,20 @@ public interface HelpDeskAPI {
 	 */
 	public Map<String,Double> getAverageMinutesToResolvePerTechnician();
 
+	/**
+	 * Return an estimate of the given percentile, from 0 to 100, of the time
+	 * in minutes from creation to resolution, for all resolved tickets.
+	 */
+	public int getPercentileMinutesToResolve(double percentile);
+
+	/**
+	 * Return a map with keys that are technician IDs and values that are
+	 * estimates of the given percentile of the time to resolve tickets for
+	 * the corresponding technician. As with averages, technicians with
+	 * no resolved tickets have no entry in the map.
+	 */
+	public Map<String,Integer> getPercentileMinutesToResolvePerTechnician(double percentile);
+
 	/**
 	 * Return a stream of all tickets whose descriptions and/or event notes
 	 * include the given text.
@@ -99,4 +118,10 @@ public interface HelpDeskAPI {
 	 * Returns a stream of the most recent N events, system-side.
 	 */
 	public Stream<Event> getLatestActivity(int count);
+
+	/**
+	 * Returns a stream of all events, system-wide, from the given time,
+	 * inclusive, to the given time, exclusive, in time order.
+	 */
+	public Stream<Event> getActivity(long from, long to);
 }
@@ -0,0 +1,328 @@
+package com.amica.help;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.amica.help.Ticket.Priority;
+import com.amica.help.Ticket.Status;
+
+/**
+ * Common implementation of the primary API. The help desk collects
+ * technicians and tickets, coordinates creation and lifecycle of tickets,
+ * and offers query methods to get one or more tickets by a few useful
+ * criteria. It also holds a tag manager, so that keyword tags assigned to
+ * tickets are unique objects within the scope of this help desk instance.
+ *
+ * Tickets are also kept in buckets by status, each in priority order,
+ * and the help desk listens to each ticket so as to move it from one
+ * bucket to another as its status changes. The text of ticket descriptions
+ * and event notes is held in a {@link TextIndex}, to narrow text searches.
+ * All events are also kept in one {@link EventLog}, in time order.
+ * As each ticket is resolved, we record the time it took, overall and
+ * per technician, in {@link ResolutionStats}.
+ *
+ * Subclasses choose the collections that hold all of this, by
+ * implementing the factory methods, and they index tickets by ID
+ * and by tag in whatever way suits those collections.
+ *
+ * New tickets are assigned to technicians by a pluggable
+ * {@link AssignmentStrategy}; by default, to the technician with
+ * the fewest active tickets.
+ *
+ * @author Will Provost
+ */
+public abstract class IndexedHelpDesk implements HelpDeskAPI, TicketListener {
+
+	private AtomicInteger nextID = new AtomicInteger();
+	private SortedSet<Technician> technicians = newSortedSet();
+	private SortedSet<Ticket> tickets = newSortedSet();
+	private Map<Status, SortedSet<Ticket>> ticketsByStatus = new EnumMap<>(Status.class);
+	private Map<Integer, List<Ticket>> reopenedTickets = newMap();
+	private TextIndex textIndex = new TextIndex();
+	private EventLog eventLog = new EventLog();
+	private ResolutionStats resolutionStats = new ResolutionStats();
+	private Map<String, ResolutionStats> resolutionStatsByTechnician = newMap();
+	private Tags tags;
+	private AssignmentStrategy assignment;
+
+	protected IndexedHelpDesk(Tags tags, AssignmentStrategy assignment) {
+		this.tags = tags;
+		this.assignment = assignment;
+		for (Status status : Status.values()) {
+			ticketsByStatus.put(status, newSortedSet());
+		}
+	}
+
+	/**
+	 * Creates a set to hold technicians or tickets, in their natural order.
+	 * This is called during construction, so it mustn't rely on any state
+	 * of the subclass.
+	 */
+	protected abstract <T> SortedSet<T> newSortedSet();
+
+	/**
+	 * Creates a map for one of our indexes. This is called during
+	 * construction, so it mustn't rely on any state of the subclass.
+	 */
+	protected abstract <K,V> Map<K,V> newMap();
+
+	/**
+	 * Creates a list to hold the tickets reopened from one prior ticket,
+	 * or the history of one ticket.
+	 */
+	protected abstract <T> List<T> newList();
+
+	/**
+	 * Adds a new ticket to the index by ID.
+	 */
+	protected abstract void indexID(Ticket ticket);
+
+	/**
+	 * Adds a ticket to the index for the given tag.
+	 */
+	protected abstract void indexTag(Ticket ticket, Tag tag);
+
+	public Tags getTags() {
+		return tags;
+	}
+
+	public SortedSet<Technician> getTechnicians() {
+		return technicians;
+	}
+
+	public void addTechnician(String ID, String name, int extension) {
+		Technician technician = new Technician(ID, name, extension);
+		if (technicians.add(technician)) {
+			technician.setLoadListener(assignment::loadChanged);
+			assignment.addTechnician(technician);
+		}
+	}
+
+	public int createTicket(String originator,
+				String description, Priority priority) {
+		if (technicians.isEmpty()) {
+			throw new IllegalStateException("No technicians available yet.");
+		}
+		Ticket ticket = new Ticket(nextID.incrementAndGet(),
+				originator, description, priority, newList());
+		addTicket(ticket);
+		ticket.assign(assignment.chooseTechnician(ticket));
+		return ticket.getID();
+	}
+
+	public void addTags(int ID, String... tagValues) {
+		Ticket ticket = getTicketByID(ID);
+		if (ticket != null) {
+			for (String tagValue : tagValues) {
+				ticket.addTag(tags.getTag(tagValue));
+			}
+		} else {
+			throw new IllegalArgumentException("No ticket with ID " + ID);
+		}
+	}
+
+	public int reopenTicket(int priorTicketID, String reason, Priority priority) {
+		if (technicians.isEmpty()) {
+			throw new IllegalStateException("No technicians available yet.");
+		}
+		Ticket priorTicket = getTicketByID(priorTicketID);
+		Ticket ticket = new ReopenedTicket
+				(nextID.incrementAndGet(), priorTicket, reason, priority, newList());
+		reopenedTickets.computeIfAbsent(priorTicketID, ID -> newList()).add(ticket);
+		addTicket(ticket);
+		ticket.getTags().forEach(tag -> tagAdded(ticket, tag));
+		return ticket.getID();
+	}
+
+	/**
+	 * Helper to add a new ticket to our indexes, and to start listening to it.
+	 * We lock the ticket while we do this, so that we see either its state
+	 * before a change or the notice of that change, but not both or neither.
+	 * A reopened ticket is known as such before we index it, so changes to
+	 * the prior ticket may be indexed twice, but are never missed.
+	 */
+	private void addTicket(Ticket ticket) {
+		synchronized (ticket) {
+			indexID(ticket);
+			tickets.add(ticket);
+			ticketsByStatus.get(ticket.getStatus()).add(ticket);
+			indexText(ticket);
+			ticket.getHistory().filter(event -> event.getTicketID() == ticket.getID())
+					.forEach(eventLog::add);
+			ticket.setListener(this);
+		}
+	}
+
+	/**
+	 * Helper to index all of the text that a ticket's
+	 * {@link Ticket#includesText includesText} method would search:
+	 * its description, those of any prior tickets, and all event notes.
+	 */
+	private void indexText(Ticket ticket) {
+		Ticket described = ticket;
+		while (described != null) {
+			textIndex.add(ticket.getID(), described.getDescription());
+			described = described instanceof ReopenedTicket
+					? ((ReopenedTicket) described).getPriorTicket() : null;
+		}
+		ticket.getHistory().forEach(event ->
+				textIndex.add(ticket.getID(), event.getNote()));
+	}
+
+	/**
+	 * Adds the event to the log, and its note to the text index.
+	 */
+	public void eventAdded(Ticket ticket, Event event) {
+		eventLog.add(event);
+		indexNote(ticket, event.getNote());
+	}
+
+	/**
+	 * Helper to add a note to the text index, for this ticket and for
+	 * any tickets that were reopened from it, since they include its history.
+	 */
+	private void indexNote(Ticket ticket, String note) {
+		textIndex.add(ticket.getID(), note);
+		for (Ticket reopened : reopenedTickets.getOrDefault(ticket.getID(), List.of())) {
+			indexNote(reopened, note);
+		}
+	}
+
+	/**
+	 * Moves the ticket from the bucket for its old status to the one
+	 * for its new status. If it's now resolved, records the time it took.
+	 * We add before we remove, so that a concurrent query never misses
+	 * the ticket, though it might see it in both buckets.
+	 */
+	public void statusChanged(Ticket ticket, Status oldStatus) {
+		ticketsByStatus.get(ticket.getStatus()).add(ticket);
+		ticketsByStatus.get(oldStatus).remove(ticket);
+		if (ticket.getStatus() == Status.RESOLVED) {
+			int minutes = ticket.getMinutesToResolve();
+			resolutionStats.record(minutes);
+			resolutionStatsByTechnician.computeIfAbsent(ticket.getTechnician().getID(),
+					ID -> new ResolutionStats()).record(minutes);
+		}
+	}
+
+	/**
+	 * Indexes the ticket under the tag; and the same for any tickets
+	 * that were reopened from this one, since they inherit its tags.
+	 */
+	public void tagAdded(Ticket ticket, Tag tag) {
+		indexTag(ticket, tag);
+		for (Ticket reopened : reopenedTickets.getOrDefault(ticket.getID(), List.of())) {
+			tagAdded(reopened, tag);
+		}
+	}
+
+	/**
+	 * Helper to look up the tickets with the given IDs, in priority order.
+	 */
+	protected Stream<Ticket> getTicketsByIDs(IntStream IDs) {
+		return IDs.mapToObj(this::getTicketByID)
+				.filter(Objects::nonNull).sorted();
+	}
+
+	/**
+	 * Helper to merge tickets from several buckets, each of which is
+	 * already in priority order, into one stream in priority order.
+	 */
+	static Stream<Ticket> merge(List<? extends SortedSet<Ticket>> buckets) {
+		PriorityQueue<Map.Entry<Ticket,Iterator<Ticket>>> heads =
+				new PriorityQueue<>(Map.Entry.comparingByKey());
+		for (SortedSet<Ticket> bucket : buckets) {
+			Iterator<Ticket> iterator = bucket.iterator();
+			if (iterator.hasNext()) {
+				heads.add(Map.entry(iterator.next(), iterator));
+			}
+		}
+
+		Iterator<Ticket> merged = new Iterator<>() {
+			public boolean hasNext() {
+				return !heads.isEmpty();
+			}
+
+			public Ticket next() {
+				Map.Entry<Ticket,Iterator<Ticket>> head = heads.remove();
+				Iterator<Ticket> iterator = head.getValue();
+				if (iterator.hasNext()) {
+					heads.add(Map.entry(iterator.next(), iterator));
+				}
+				return head.getKey();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize
+				(merged, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	public Stream<Ticket> getTickets() {
+		return tickets.stream();
+	}
+
+	public Stream<Ticket> getTicketsByStatus(Status status) {
+		return ticketsByStatus.get(status).stream();
+	}
+
+	public Stream<Ticket> getTicketsByNotStatus(Status status) {
+		return merge(ticketsByStatus.entrySet().stream()
+				.filter(entry -> entry.getKey() != status)
+				.map(Map.Entry::getValue)
+				.collect(Collectors.toList()))
+			.distinct();
+	}
+
+	public Stream<Ticket> getTicketsByTechnician(String techID) {
+		return tickets.stream()
+				.filter(t -> t.getTechnician() != null
+						&& t.getTechnician().getID().equals(techID));
+	}
+
+	public int getAverageMinutesToResolve() {
+		return (int) resolutionStats.getAverageMinutes().getAsDouble();
+	}
+
+	public Map<String, Double> getAverageMinutesToResolvePerTechnician() {
+		return resolutionStatsByTechnician.entrySet().stream()
+			.collect(Collectors.toMap(Map.Entry::getKey,
+				entry -> entry.getValue().getAverageMinutes().getAsDouble()));
+	}
+
+	public int getPercentileMinutesToResolve(double percentile) {
+		return resolutionStats.getPercentileMinutes(percentile).getAsInt();
+	}
+
+	public Map<String, Integer> getPercentileMinutesToResolvePerTechnician(double percentile) {
+		return resolutionStatsByTechnician.entrySet().stream()
+			.collect(Collectors.toMap(Map.Entry::getKey,
+				entry -> entry.getValue().getPercentileMinutes(percentile).getAsInt()));
+	}
+
+	public Stream<Ticket> getTicketsByText(String text) {
+		int[] candidates = textIndex.getCandidates(text);
+		Stream<Ticket> scope = candidates != null
+				? getTicketsByIDs(Arrays.stream(candidates)) : tickets.stream();
+		return scope.filter(t -> t.includesText(text));
+	}
+
+	public Stream<Event> getLatestActivity(int count) {
+		return eventLog.getLatest(count);
+	}
+
+	public Stream<Event> getActivity(long from, long to) {
+		return eventLog.getEvents(from, to);
+	}
+}
@@ -0,0 +1,141 @@
+package com.amica.help;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import com.amica.help.Ticket.Priority;
+
+/**
+ * Assigns each ticket to the technician with the lightest load, by some
+ * measure of load. Technicians are kept in an indexed min-heap, ordered by
+ * load and then by ID, so that choosing one is constant time, and a change
+ * in one technician's load moves that technician up or down the heap in
+ * logarithmic time. The measure of load must only change along with the
+ * technician's active tickets, since that's when we hear about it.
+ *
+ * Each technician's load is measured when we hear of a change, and kept
+ * in the heap, so ordering the heap never calls back to the technicians.
+ * Methods are synchronized, so the strategy can be shared by threads.
+ *
+ * @author Will Provost
+ */
+public class LoadBalancedAssignment implements AssignmentStrategy {
+
+	/**
+	 * Load is the number of active tickets. This is the default strategy.
+	 */
+	public static LoadBalancedAssignment leastLoaded() {
+		return new LoadBalancedAssignment(Technician::getActiveTicketCount);
+	}
+
+	/**
+	 * Load is the number of active tickets, weighted by priority: each
+	 * priority counts for twice as much as the one below it.
+	 */
+	public static LoadBalancedAssignment priorityWeighted() {
+		return new LoadBalancedAssignment(technician -> {
+			int load = 0;
+			for (Priority priority : Priority.values()) {
+				load += technician.getActiveTicketCount(priority) << priority.ordinal();
+			}
+			return load;
+		});
+	}
+
+	/**
+	 * A technician in the heap, with the load last measured.
+	 */
+	private static class Entry {
+		private Technician technician;
+		private int load;
+
+		public Entry(Technician technician, int load) {
+			this.technician = technician;
+			this.load = load;
+		}
+	}
+
+	private static final Comparator<Entry> ORDER = Comparator
+			.comparingInt((Entry entry) -> entry.load)
+			.thenComparing(entry -> entry.technician);
+
+	private ToIntFunction<Technician> load;
+	private List<Entry> heap = new ArrayList<>();
+	private Map<Technician, Integer> positions = new HashMap<>();
+
+	public LoadBalancedAssignment(ToIntFunction<Technician> load) {
+		this.load = load;
+	}
+
+	public synchronized void addTechnician(Technician technician) {
+		if (!positions.containsKey(technician)) {
+			heap.add(new Entry(technician, load.applyAsInt(technician)));
+			positions.put(technician, heap.size() - 1);
+			siftUp(heap.size() - 1);
+		}
+	}
+
+	public synchronized void loadChanged(Technician technician) {
+		Integer position = positions.get(technician);
+		if (position != null) {
+			heap.get(position).load = load.applyAsInt(technician);
+			siftDown(siftUp(position));
+		}
+	}
+
+	public synchronized Technician chooseTechnician(Ticket ticket) {
+		return heap.isEmpty() ? null : heap.get(0).technician;
+	}
+
+	/**
+	 * Helper to put an entry at a position in the heap, and to record
+	 * that position in the index.
+	 */
+	private void place(int position, Entry entry) {
+		heap.set(position, entry);
+		positions.put(entry.technician, position);
+	}
+
+	/**
+	 * Helper to move the entry at the given position towards the
+	 * top of the heap until its parent is lighter. Returns the final position.
+	 */
+	private int siftUp(int position) {
+		Entry entry = heap.get(position);
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (ORDER.compare(entry, heap.get(parent)) >= 0) {
+				break;
+			}
+			place(position, heap.get(parent));
+			position = parent;
+		}
+		place(position, entry);
+		return position;
+	}
+
+	/**
+	 * Helper to move the entry at the given position towards the
+	 * bottom of the heap until its children are heavier.
+	 */
+	private void siftDown(int position) {
+		Entry entry = heap.get(position);
+		int size = heap.size();
+		while (position * 2 + 1 < size) {
+			int child = position * 2 + 1;
+			if (child + 1 < size && ORDER.compare(heap.get(child + 1), heap.get(child)) < 0) {
+				++child;
+			}
+			if (ORDER.compare(heap.get(child), entry) >= 0) {
+				break;
+			}
+			place(position, heap.get(child));
+			position = child;
+		}
+		place(position, entry);
+	}
+}
@@ -0,0 +1,80 @@
+package com.amica.help;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of quantiles over non-negative whole numbers, with
+ * bounded relative error. Values are counted in buckets whose bounds grow
+ * geometrically, so each estimate is within the given accuracy of some
+ * value at the requested rank, however many values we've seen, while
+ * memory grows only with the logarithm of the largest value.
+ *
+ * @author Will Provost
+ */
+public class QuantileSketch {
+
+	public static final double DEFAULT_ACCURACY = 0.01;
+
+	private double gamma;
+	private double logGamma;
+	private long zeros;
+	private long[] counts = new long[0];
+	private long count;
+
+	public QuantileSketch() {
+		this(DEFAULT_ACCURACY);
+	}
+
+	public QuantileSketch(double accuracy) {
+		if (accuracy <= 0 || accuracy >= 1) {
+			throw new IllegalArgumentException("Accuracy must be between 0 and 1.");
+		}
+		gamma = (1 + accuracy) / (1 - accuracy);
+		logGamma = Math.log(gamma);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Counts the given value. Values less than one are counted as zero.
+	 */
+	public void add(long value) {
+		++count;
+		if (value < 1) {
+			++zeros;
+			return;
+		}
+		
+		int index = (int) Math.ceil(Math.log(value) / logGamma);
+		if (index >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+		}
+		++counts[index];
+	}
+
+	/**
+	 * Estimates the value at the given quantile, from 0 to 1.
+	 * Throws IllegalStateException if we haven't seen any values.
+	 */
+	public double getQuantile(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+		}
+		if (count == 0) {
+			throw new IllegalStateException("No values have been added.");
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = zeros;
+		if (seen >= rank) {
+			return 0;
+		}
+		int index = 0;
+		while (index < counts.length - 1 && (seen += counts[index]) < rank) {
+			++index;
+		}
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+}
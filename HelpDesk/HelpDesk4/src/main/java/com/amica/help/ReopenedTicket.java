@@ -1,5 +1,7 @@
 package com.amica.help;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
 import lombok.Getter;
@@ -16,7 +18,12 @@ public class ReopenedTicket extends Ticket {
   
 	public ReopenedTicket(int ID, Ticket priorTicket, 
 			String reason, Priority priority) {
-		super(ID, priorTicket.getOriginator(), reason, priority);
+		this(ID, priorTicket, reason, priority, new CopyOnWriteArrayList<>());
+	}
+  
+	public ReopenedTicket(int ID, Ticket priorTicket, 
+			String reason, Priority priority, List<Event> history) {
+		super(ID, priorTicket.getOriginator(), reason, priority, history);
 		this.priorTicket = priorTicket;
 		assign(priorTicket.getTechnician());
 	}
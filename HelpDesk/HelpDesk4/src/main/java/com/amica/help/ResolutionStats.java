@@ -0,0 +1,53 @@
+package com.amica.help;
+
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+/**
+ * Running statistics on the time taken to resolve tickets: a count and
+ * a total, for the average, and a {@link QuantileSketch} for percentiles.
+ * Each resolved ticket is recorded once, so queries needn't revisit
+ * the tickets themselves. Methods are synchronized, so that statistics
+ * can be shared by threads.
+ *
+ * @author Will Provost
+ */
+public class ResolutionStats {
+
+	private int count;
+	private long totalMinutes;
+	private QuantileSketch sketch = new QuantileSketch();
+
+	public synchronized int getCount() {
+		return count;
+	}
+
+	public synchronized long getTotalMinutes() {
+		return totalMinutes;
+	}
+
+	public synchronized void record(int minutes) {
+		++count;
+		totalMinutes += minutes;
+		sketch.add(minutes);
+	}
+
+	/**
+	 * Returns the average time to resolve, or empty if nothing has been recorded.
+	 */
+	public synchronized OptionalDouble getAverageMinutes() {
+		return count != 0 
+				? OptionalDouble.of((double) totalMinutes / count)
+				: OptionalDouble.empty();
+	}
+
+	/**
+	 * Returns an estimate of the given percentile, from 0 to 100, of the
+	 * time to resolve, or empty if nothing has been recorded.
+	 */
+	public synchronized OptionalInt getPercentileMinutes(double percentile) {
+		return count != 0 
+				? OptionalInt.of((int) Math.round(sketch.getQuantile(percentile / 100)))
+				: OptionalInt.empty();
+	}
+}
@@ -1,30 +1,42 @@
 package com.amica.help;
 
+import java.util.Locale;
+
 import lombok.Getter;
 
 /**
  * Class representing a keyword tag that can be applied to a {@link Ticket}.
+ * Tags are compared without sensitivity to case, so each tag holds its
+ * value folded to lower case, for equality and hashing.
  *
  * @author Will Provost
  */
 public class Tag implements Comparable<Tag> {
 
+	/**
+	 * Folds the given value to the key by which we compare tags.
+	 */
+	static String fold(String value) {
+		return value.toLowerCase(Locale.ROOT);
+	}
+
 	@Getter
 	private String value;
+	private String key;
 
 	Tag(String value) {
 		this.value = value;
+		this.key = fold(value);
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return other instanceof Tag && 
-				value.equalsIgnoreCase(((Tag) other).getValue());
+		return other instanceof Tag && key.equals(((Tag) other).key);
 	}
 
 	@Override
 	public int hashCode() {
-		return value.toLowerCase().hashCode();
+		return key.hashCode();
 	}
 
 	public int compareTo(Tag other) {
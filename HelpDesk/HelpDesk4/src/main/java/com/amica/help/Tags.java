@@ -1,10 +1,11 @@
 package com.amica.help;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class manages keyword tags, assuring that only one instance of the
@@ -12,18 +13,45 @@ import java.util.TreeSet;
  * sensitivity to case. It also maps synonyms to tags, and assures that any
  * attempt to resolve a string to a tag takes those synonyms into account.
  * 
+ * Tags and synonyms are held in concurrent hash maps, keyed by the
+ * case-folded string, so that resolving a string is a single lookup and
+ * is safe from multiple threads. The sorted view of all tags is built
+ * only when asked for, and then only if tags have been added since.
+ * 
  * @author Will Provost
  */
 public class Tags {
 
-	private SortedSet<Tag> tags = new TreeSet<>();
-	private Map<String, Tag> synonyms = new HashMap<>();
+	private Map<String, Tag> tags = new ConcurrentHashMap<>();
+	private Map<String, Tag> synonyms = new ConcurrentHashMap<>();
+	private AtomicInteger version = new AtomicInteger();
+	private volatile SortedView sortedView;
+
+	/**
+	 * A sorted set of tags, and the version of our tags that it reflects.
+	 */
+	private static class SortedView {
+		private int version;
+		private SortedSet<Tag> tags;
+
+		public SortedView(int version, SortedSet<Tag> tags) {
+			this.version = version;
+			this.tags = tags;
+		}
+	}
 
 	/**
-	 * Returns a view of all tags.
+	 * Returns a sorted, read-only snapshot of all tags.
 	 */
 	public SortedSet<Tag> getTags() {
-		return Collections.unmodifiableSortedSet(tags);
+		SortedView view = sortedView;
+		int current = version.get();
+		if (view == null || view.version != current) {
+			view = new SortedView(current, 
+					Collections.unmodifiableSortedSet(new TreeSet<>(tags.values())));
+			sortedView = view;
+		}
+		return view.tags;
 	}
 
 	/**
@@ -39,7 +67,7 @@ public class Tags {
 	 * as a tag for the first time; or it will find an existing tag that matches. 
 	 */
 	public void addSynonym(String synonym, String term) {
-		synonyms.put(synonym.toLowerCase(), getTag(term));
+		synonyms.put(Tag.fold(synonym), getTag(term));
 	}
 
 	/**
@@ -48,17 +76,21 @@ public class Tags {
 	 * returns the tag for the translated term. 
 	 */
 	public Tag getTag(String value) {
-		
-		if (synonyms.containsKey(value.toLowerCase())) {
-			return synonyms.get(value.toLowerCase());
+		String key = Tag.fold(value);
+		Tag tag = synonyms.get(key);
+		if (tag == null) {
+			tag = tags.get(key);
 		}
-
-		Tag candidate = new Tag(value);
-		if (!tags.stream().anyMatch(candidate::equals)) {
-			tags.add(candidate);
+		if (tag == null) {
+			Tag candidate = new Tag(value);
+			tag = tags.putIfAbsent(key, candidate);
+			if (tag == null) {
+				tag = candidate;
+				version.incrementAndGet();
+			}
 		}
 		
-		return tags.stream().filter(candidate::equals).findAny().get();
+		return tag;
 	}
 
 }
@@ -1,14 +1,22 @@
 package com.amica.help;
 
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+import com.amica.help.Ticket.Priority;
+
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Represents a technician ont he staff of the help desk.
+ * Assigning and resolving tickets lock the technician, and the active
+ * tickets can be read while they change.
  *
  * @author Will Provost
  */
@@ -19,7 +27,15 @@ public class Technician implements Comparable<Technician> {
 	private String ID;
 	private String name;
 	private int extension;
-	private SortedSet<Ticket> activeTickets = new TreeSet<>();
+	private SortedSet<Ticket> activeTickets = new ConcurrentSkipListSet<>();
+	@Getter(AccessLevel.NONE)
+	private volatile int activeTicketCount;
+	@Getter(AccessLevel.NONE)
+	private AtomicIntegerArray activeTicketsByPriority = 
+			new AtomicIntegerArray(Priority.values().length);
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.PACKAGE)
+	private Consumer<Technician> loadListener;
 
 	public Technician(String ID, String name, int extension) {
 		this.ID = ID;
@@ -31,12 +47,41 @@ public class Technician implements Comparable<Technician> {
 		return activeTickets.stream();
 	}
   
-	public boolean assignTicket(Ticket ticket) {
-		return activeTickets.add(ticket);
+	public int getActiveTicketCount() {
+		return activeTicketCount;
+	}
+
+	public int getActiveTicketCount(Priority priority) {
+		return activeTicketsByPriority.get(priority.ordinal());
+	}
+  
+	public synchronized boolean assignTicket(Ticket ticket) {
+		boolean added = activeTickets.add(ticket);
+		if (added) {
+			++activeTicketCount;
+			activeTicketsByPriority.incrementAndGet(ticket.getPriority().ordinal());
+			loadChanged();
+		}
+		return added;
 	}
 	
-	public boolean resolveTicket(Ticket ticket) {
-		return activeTickets.remove(ticket);
+	public synchronized boolean resolveTicket(Ticket ticket) {
+		boolean removed = activeTickets.remove(ticket);
+		if (removed) {
+			--activeTicketCount;
+			activeTicketsByPriority.decrementAndGet(ticket.getPriority().ordinal());
+			loadChanged();
+		}
+		return removed;
+	}
+
+	/**
+	 * Helper to tell our listener, if any, that our workload has changed.
+	 */
+	private void loadChanged() {
+		if (loadListener != null) {
+			loadListener.accept(this);
+		}
 	}
 	
 	@Override
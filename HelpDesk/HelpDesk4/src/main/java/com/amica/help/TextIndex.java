@@ -0,0 +1,149 @@
+package com.amica.help;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index of text by trigrams: for each sequence of three characters,
+ * the IDs of the tickets whose text includes it. Any text that contains
+ * a query string must contain every trigram of the query, so intersecting
+ * their postings narrows a search down to a few candidates, which can then
+ * be checked for the exact substring. Queries of fewer than three characters
+ * can't be narrowed this way.
+ *
+ * Most trigrams are rare, so each one's postings are a sorted array of IDs
+ * that grows as needed, rather than a bit set as large as the highest ID.
+ * We intersect postings starting from the shortest, galloping through
+ * each longer one, so the cost follows the number of candidates rather
+ * than the length of the longest postings.
+ *
+ * The index can be shared by threads: postings are held in a concurrent
+ * map, and each one is locked while it's updated or read.
+ *
+ * @author Will Provost
+ */
+public class TextIndex {
+
+	public static final int GRAM_LENGTH = 3;
+
+	/**
+	 * Sorted, growable list of ticket IDs, without duplicates.
+	 */
+	private static class Postings {
+
+		private int[] IDs = new int[4];
+		private int size;
+
+		/**
+		 * Adds the ID, if it's not already here. IDs usually arrive in
+		 * increasing order, so we check the end of the list first.
+		 */
+		public synchronized void add(int ID) {
+			int index = size == 0 || IDs[size - 1] < ID
+					? size : Arrays.binarySearch(IDs, 0, size, ID);
+			if (index < 0) {
+				index = -index - 1;
+			} else if (index < size) {
+				return;
+			}
+
+			if (size == IDs.length) {
+				IDs = Arrays.copyOf(IDs, size * 2);
+			}
+			System.arraycopy(IDs, index, IDs, index + 1, size - index);
+			IDs[index] = ID;
+			++size;
+		}
+
+		public synchronized int size() {
+			return size;
+		}
+
+		public synchronized int[] toArray() {
+			return Arrays.copyOf(IDs, size);
+		}
+
+		/**
+		 * Helper to find the first position at or after the given one
+		 * that holds an ID no less than the target. We step ahead in
+		 * doubling strides, and then search the last stride.
+		 */
+		private int gallop(int target, int from) {
+			int step = 1;
+			int to = from;
+			while (to < size && IDs[to] < target) {
+				from = to + 1;
+				to += step;
+				step *= 2;
+			}
+			int index = Arrays.binarySearch(IDs, from, Math.min(to, size), target);
+			return index >= 0 ? index : -index - 1;
+		}
+
+		/**
+		 * Returns those of the given IDs, which must be sorted,
+		 * that are also in this list.
+		 */
+		public synchronized int[] retain(int[] candidates) {
+			int[] result = new int[candidates.length];
+			int count = 0;
+			int position = 0;
+			for (int candidate : candidates) {
+				position = gallop(candidate, position);
+				if (position == size) {
+					break;
+				}
+				if (IDs[position] == candidate) {
+					result[count++] = candidate;
+				}
+			}
+			return Arrays.copyOf(result, count);
+		}
+	}
+
+	private Map<String, Postings> postings = new ConcurrentHashMap<>();
+
+	/**
+	 * Records the given text as belonging to the ticket with the given ID.
+	 */
+	public void add(int ID, String text) {
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); ++i) {
+			postings.computeIfAbsent(text.substring(i, i + GRAM_LENGTH),
+					gram -> new Postings()).add(ID);
+		}
+	}
+
+	/**
+	 * Returns the IDs of tickets that might include the given text,
+	 * in increasing order, or null if the text is too short to narrow
+	 * the search.
+	 */
+	public int[] getCandidates(String text) {
+		if (text.length() < GRAM_LENGTH) {
+			return null;
+		}
+
+		Set<String> grams = new HashSet<>();
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); ++i) {
+			grams.add(text.substring(i, i + GRAM_LENGTH));
+		}
+		if (!postings.keySet().containsAll(grams)) {
+			return new int[0];
+		}
+
+		List<Postings> lists = grams.stream().map(postings::get)
+				.sorted(Comparator.comparingInt(Postings::size))
+				.collect(Collectors.toList());
+		int[] result = lists.get(0).toArray();
+		for (int i = 1; i < lists.size() && result.length != 0; ++i) {
+			result = lists.get(i).retain(result);
+		}
+		return result;
+	}
+}
@@ -1,17 +1,25 @@
 package com.amica.help;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Class representing a problem ticket for a help desk.
+ * 
+ * Tickets can be shared by threads: lifecycle methods lock the ticket,
+ * so each transition, and the notice of it to our listener, happens
+ * all at once; and the history and tags can be read while they change,
+ * as long as the history is held in a list that allows that. By default
+ * it's a copy-on-write list, but a help desk that's used by one thread
+ * at a time can provide a plain one.
  *
  * @author Will Provost
  */
@@ -26,28 +34,53 @@ public class Ticket implements Comparable<Ticket> {
 	private Priority priority;
 	private String originator;
 	private String description;
-	private Technician technician;
-	private List<Event> history = new ArrayList<>();
-	private SortedSet<Tag> tags = new TreeSet<>();
+	private volatile Technician technician;
+	private volatile Status status;
+	private List<Event> history;
+	private SortedSet<Tag> tags = new ConcurrentSkipListSet<>();
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.PACKAGE)
+	private volatile TicketListener listener;
 
 	public Ticket(int ID, String originator, String description, Priority priority) {
+		this(ID, originator, description, priority, new CopyOnWriteArrayList<>());
+	}
+
+	/**
+	 * Creates a ticket that keeps its history in the given list,
+	 * which should be empty.
+	 */
+	public Ticket(int ID, String originator, String description, 
+			Priority priority, List<Event> history) {
 		if(originator == null || description == null || priority == null){
 			throw new IllegalArgumentException();
 		}
 
 		this.ID = ID;
+		this.history = history;
 		this.priority = priority;
 		this.originator = originator;
 		this.description = description;
-		this.history.add(new Event(this, Status.CREATED, "Created ticket."));
+		addEvent(new Event(this, Status.CREATED, "Created ticket."));
 	}
 
-	public Status getStatus() {
-		return history.stream()
-				.map(Event::getNewStatus)
-				.filter(Objects::nonNull)
-				.reduce((a,b) -> b)
-				.get();
+	/**
+	 * Helper to append an event to the history, and to keep our current
+	 * status up to date, so that we needn't replay the history to find it.
+	 * Our listener, if any, hears about each event and each change of status.
+	 */
+	private void addEvent(Event event) {
+		history.add(event);
+		if (listener != null) {
+			listener.eventAdded(this, event);
+		}
+		if (event.getNewStatus() != null) {
+			Status oldStatus = status;
+			status = event.getNewStatus();
+			if (listener != null && oldStatus != null) {
+				listener.statusChanged(this, oldStatus);
+			}
+		}
 	}
 
 	public Stream<Event> getHistory() {
@@ -58,7 +91,7 @@ public class Ticket implements Comparable<Ticket> {
 		return tags.stream();
 	}
     
-	public void assign(Technician technician) {
+	public synchronized void assign(Technician technician) {
 		if(technician == null){
 			throw new IllegalArgumentException("Technician cannot be null");
 		}
@@ -70,7 +103,7 @@ public class Ticket implements Comparable<Ticket> {
 			
 			this.technician = technician;
 			Status newStatus = Status.ASSIGNED;
-			history.add(new Event(this, newStatus, "Assigned to " + technician + "."));
+			addEvent(new Event(this, newStatus, "Assigned to " + technician + "."));
 			technician.assignTicket(this);
 		} else if (getStatus() == Status.RESOLVED) {
 			throw new IllegalStateException("Can't re-assign a resolved new ticket.");
@@ -79,44 +112,44 @@ public class Ticket implements Comparable<Ticket> {
 		}
 	}
 
-    public void suspend(String reason) {
+    public synchronized void suspend(String reason) {
 		if(reason == null){
 			throw new IllegalArgumentException("Reason cannot be null");
 		}
 
 		if (getStatus() == Status.ASSIGNED) {
-			history.add(new Event(this, Status.WAITING, reason));
+			addEvent(new Event(this, Status.WAITING, reason));
 		} else {
 			throw new IllegalStateException("Can't suspend until the ticket is assigned.");
 		}
     }
     
-    public void resume(String reason) {
+    public synchronized void resume(String reason) {
 		if(reason == null){
 			throw new IllegalArgumentException("Reason cannot be null");
 		}
 
 		if (getStatus() == Status.WAITING) {
-			history.add(new Event(this, Status.ASSIGNED, reason));
+			addEvent(new Event(this, Status.ASSIGNED, reason));
 		} else {
 			throw new IllegalStateException("Can't resume a ticket that isn't in the WAITING state.");
 		}
     }
-	public void addNote(String note) {
+	public synchronized void addNote(String note) {
 		if(note == null){
 			throw new IllegalArgumentException("Note cannot be null");
 		}
 
-		history.add(new Event(this, note));
+		addEvent(new Event(this, note));
 	}
 
-	public void resolve(String reason) {
+	public synchronized void resolve(String reason) {
 		if(reason == null){
 			throw new IllegalArgumentException("Reason cannot be null");
 		}
 
 		if (getStatus() == Status.ASSIGNED) {
-			history.add(new Event(this, Status.RESOLVED, reason));
+			addEvent(new Event(this, Status.RESOLVED, reason));
 			technician.resolveTicket(this);
 		} else if (getStatus() == Status.CREATED) {
 			throw new IllegalStateException("Can't resolve until the ticket is assigned.");
@@ -127,8 +160,12 @@ public class Ticket implements Comparable<Ticket> {
 		}
 	}
 
-	public boolean addTag(Tag tag) {
-		return tags.add(tag);
+	public synchronized boolean addTag(Tag tag) {
+		boolean added = tags.add(tag);
+		if (added && listener != null) {
+			listener.tagAdded(this, tag);
+		}
+		return added;
 	}
 
 	public int getMinutesToResolve() {
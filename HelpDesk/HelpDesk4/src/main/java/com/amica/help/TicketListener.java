@@ -0,0 +1,28 @@
+package com.amica.help;
+
+import com.amica.help.Ticket.Status;
+
+/**
+ * Callback interface for anything that keeps track of tickets as they
+ * change, such as the indexes maintained by the {@link HelpDesk}.
+ * A ticket notifies its listener after each change has been made.
+ *
+ * @author Will Provost
+ */
+public interface TicketListener {
+
+	/**
+	 * The given event has been added to the ticket's history.
+	 */
+	public void eventAdded(Ticket ticket, Event event);
+
+	/**
+	 * The given ticket has moved from the old status to its current one.
+	 */
+	public void statusChanged(Ticket ticket, Status oldStatus);
+
+	/**
+	 * The given tag has been added to the given ticket.
+	 */
+	public void tagAdded(Ticket ticket, Tag tag);
+}
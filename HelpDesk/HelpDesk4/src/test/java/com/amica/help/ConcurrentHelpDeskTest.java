@@ -0,0 +1,257 @@
+package com.amica.help;
+
+import static com.amica.help.HelpDeskTest.hasIDs;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.help.Ticket.Priority;
+import com.amica.help.Ticket.Status;
+
+/**
+ * Unit test for the {@link ConcurrentHelpDesk}: a few queries from one
+ * thread, and then stress tests: one in which many threads run through the
+ * same lifecycle as the {@link TestProgram}, all on one help desk, and one
+ * in which they contend for a few shared tickets while queries run.
+ * 
+ * @author Will Provost
+ */
+public class ConcurrentHelpDeskTest {
+
+	public static final int TECHNICIANS = 8;
+	public static final int THREADS = 16;
+	public static final int TICKETS_PER_THREAD = 250;
+	public static final int SHARED_TICKETS = 4;
+	public static final int CHANGES_PER_THREAD = 400;
+	
+	private ConcurrentHelpDesk helpDesk = new ConcurrentHelpDesk();
+	
+	@BeforeEach
+	public void setUp() {
+		Clock.setTime(100);
+		for (int t = 0; t < TECHNICIANS; ++t) {
+			helpDesk.addTechnician("TECH" + t, "Technician " + t, t);
+		}
+	}
+	
+	@Test
+	public void testQueries() {
+		int ticket1 = helpDesk.createTicket("ORIGINATOR", "Unable to log in.", Priority.LOW);
+		int ticket2 = helpDesk.createTicket("ORIGINATOR", "Need GitHub access.", Priority.HIGH);
+		helpDesk.addTags(ticket1, "remoting", "VPN");
+		helpDesk.addTags(ticket2, "GitHub");
+		helpDesk.getTicketByID(ticket1).addNote("Checking the VPN.");
+		helpDesk.getTicketByID(ticket1).resolve("Resolved.");
+		int ticket3 = helpDesk.reopenTicket(ticket1, "Can't log in again.", Priority.MEDIUM);
+		
+		assertThat(helpDesk.getTickets(), hasIDs(ticket2, ticket3, ticket1));
+		assertThat(helpDesk.getTicketsByStatus(Status.RESOLVED), hasIDs(ticket1));
+		assertThat(helpDesk.getTicketsByNotStatus(Status.RESOLVED), hasIDs(ticket2, ticket3));
+		assertThat(helpDesk.getTicketsWithAnyTag("vpn", "github"), hasIDs(ticket2, ticket3, ticket1));
+		assertThat(helpDesk.getTicketsWithAllTags("VPN", "remoting"), hasIDs(ticket3, ticket1));
+		assertThat(helpDesk.getTicketsByText("the VPN"), hasIDs(ticket3, ticket1));
+		assertThat(helpDesk.getTicketsByText("log in"), hasIDs(ticket3, ticket1));
+		assertThat(helpDesk.getTicketByID(ticket3).getTechnician(), 
+				equalTo(helpDesk.getTicketByID(ticket1).getTechnician()));
+		assertThat(helpDesk.getLatestActivity(2).map(Event::getTicketID)
+				.collect(Collectors.toList()), contains(ticket3, ticket3));
+		assertThat(helpDesk.getAverageMinutesToResolve(), equalTo(0));
+	}
+	
+	/**
+	 * Each thread creates tickets, tags them, adds notes, suspends and
+	 * resumes them, resolves them, and reopens every tenth one.
+	 */
+	@Test
+	public void testStress() throws Exception {
+		Map<Integer, String> notes = new ConcurrentHashMap<>();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; ++t) {
+			final int thread = t;
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < TICKETS_PER_THREAD; ++i) {
+					int ID = helpDesk.createTicket("A" + thread, "Problem " + i, 
+							Priority.values()[i % Priority.values().length]);
+					helpDesk.addTags(ID, "thread" + thread, "shared");
+					String note = String.format("Note %d-%d.", thread, i);
+					notes.put(ID, note);
+					Ticket ticket = helpDesk.getTicketByID(ID);
+					ticket.addNote(note);
+					ticket.suspend("Waiting.");
+					ticket.resume("Resumed.");
+					ticket.resolve("Resolved.");
+					if (i % 10 == 0) {
+						helpDesk.reopenTicket(ID, "Reopened.", Priority.URGENT);
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get();
+		}
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		
+		final int CREATED = THREADS * TICKETS_PER_THREAD;
+		final int REOPENED = THREADS * ((TICKETS_PER_THREAD + 9) / 10);
+		final int TOTAL = CREATED + REOPENED;
+		
+		assertThat(helpDesk.getTickets().count(), equalTo((long) TOTAL));
+		assertThat(IntStream.rangeClosed(1, TOTAL)
+				.allMatch(ID -> helpDesk.getTicketByID(ID).getID() == ID), equalTo(true));
+		assertThat(helpDesk.getTicketsByStatus(Status.RESOLVED).count(), equalTo((long) CREATED));
+		assertThat(helpDesk.getTicketsByStatus(Status.ASSIGNED).count(), equalTo((long) REOPENED));
+		assertThat(helpDesk.getTicketsByNotStatus(Status.ASSIGNED).count(), equalTo((long) CREATED));
+		assertThat(helpDesk.getTechnicians().stream()
+				.mapToInt(Technician::getActiveTicketCount).sum(), equalTo(REOPENED));
+		
+		assertThat(helpDesk.getTicketsWithAnyTag("shared").count(), equalTo((long) TOTAL));
+		assertThat(helpDesk.getTicketsWithAllTags("shared", "thread3").count(), 
+				equalTo((long) TICKETS_PER_THREAD + (TICKETS_PER_THREAD + 9) / 10));
+		for (Map.Entry<Integer, String> entry : notes.entrySet()) {
+			assertThat(helpDesk.getTicketsByText(entry.getValue())
+					.mapToInt(Ticket::getID).anyMatch(ID -> ID == entry.getKey()), equalTo(true));
+		}
+		
+		assertThat(helpDesk.getLatestActivity(Integer.MAX_VALUE).count(), 
+				equalTo((long) CREATED * 6 + REOPENED * 2));
+		assertThat(helpDesk.getAverageMinutesToResolvePerTechnician().keySet(), hasSize(TECHNICIANS));
+	}
+	
+	/**
+	 * Each thread adds notes and tags to a few shared tickets, suspends and
+	 * resumes them, and reopens the first of them now and then, while
+	 * another thread queries the help desk. Since no shared ticket is
+	 * ever resolved, and the shared tag is added first, each query must
+	 * see all of them, however their status changes in the meantime.
+	 */
+	@Test
+	public void testStress_SharedTickets() throws Exception {
+		int[] shared = new int[SHARED_TICKETS];
+		for (int s = 0; s < SHARED_TICKETS; ++s) {
+			shared[s] = helpDesk.createTicket("ORIGINATOR", "Shared problem " + s, 
+					Priority.values()[s % Priority.values().length]);
+			helpDesk.addTags(shared[s], "shared");
+		}
+		
+		Map<String, Integer> notes = new ConcurrentHashMap<>();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(THREADS);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; ++t) {
+			final int thread = t;
+			results.add(executor.submit(() -> {
+				start.await();
+				try {
+					for (int i = 0; i < CHANGES_PER_THREAD; ++i) {
+						int ID = shared[i % SHARED_TICKETS];
+						Ticket ticket = helpDesk.getTicketByID(ID);
+						String note = String.format("Note %d-%d.", thread, i);
+						notes.put(note, ID);
+						ticket.addNote(note);
+						helpDesk.addTags(ID, "thread" + thread);
+						try {
+							if (ticket.getStatus() == Status.ASSIGNED) {
+								ticket.suspend("Waiting.");
+							} else {
+								ticket.resume("Resumed.");
+							}
+						} catch (IllegalStateException ex) {
+							// Another thread changed the status first
+						}
+						if (i % 50 == 0) {
+							helpDesk.reopenTicket(shared[0], "Reopened.", Priority.URGENT);
+						}
+					}
+				} finally {
+					done.countDown();
+				}
+				return null;
+			}));
+		}
+		
+		Future<Integer> queries = executor.submit(() -> {
+			start.await();
+			int count = 0;
+			while (done.getCount() != 0) {
+				List<Integer> active = helpDesk.getTicketsByNotStatus(Status.RESOLVED)
+						.map(Ticket::getID).collect(Collectors.toList());
+				assertThat(active, hasSize((int) active.stream().distinct().count()));
+				for (int ID : shared) {
+					assertThat(active, hasItem(ID));
+					assertThat(helpDesk.getTicketsWithAllTags("shared")
+							.map(Ticket::getID).collect(Collectors.toList()), hasItem(ID));
+				}
+				helpDesk.getTicketsByText("Note").count();
+				helpDesk.getTicketsWithAnyTag("thread0", "thread1").count();
+				helpDesk.getLatestActivity(10).count();
+				++count;
+			}
+			return count;
+		});
+		
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get();
+		}
+		assertThat(queries.get(), greaterThan(0));
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		
+		final int REOPENED = THREADS * ((CHANGES_PER_THREAD + 49) / 50);
+		final int TOTAL = SHARED_TICKETS + REOPENED;
+		assertThat(helpDesk.getTickets().count(), equalTo((long) TOTAL));
+		List<Ticket> reopened = helpDesk.getTickets()
+				.filter(ticket -> ticket instanceof ReopenedTicket)
+				.collect(Collectors.toList());
+		assertThat(reopened, hasSize(REOPENED));
+		
+		for (int ID : shared) {
+			Ticket ticket = helpDesk.getTicketByID(ID);
+			assertThat(ticket.getHistory().filter(event -> event.getNewStatus() == null)
+					.count(), equalTo((long) THREADS * CHANGES_PER_THREAD / SHARED_TICKETS));
+			for (Status status : Status.values()) {
+				assertThat(helpDesk.getTicketsByStatus(status).anyMatch(t -> t.getID() == ID), 
+						equalTo(ticket.getStatus() == status));
+			}
+		}
+		
+		for (int t = 0; t < THREADS; ++t) {
+			List<Integer> tagged = helpDesk.getTicketsWithAllTags("shared", "thread" + t)
+					.map(Ticket::getID).collect(Collectors.toList());
+			assertThat(tagged, hasSize(TOTAL));
+		}
+		for (Map.Entry<String, Integer> entry : notes.entrySet()) {
+			List<Integer> found = helpDesk.getTicketsByText(entry.getKey())
+					.map(Ticket::getID).collect(Collectors.toList());
+			assertThat(found, hasItem(entry.getValue()));
+			if (entry.getValue() == shared[0]) {
+				assertThat(found, hasSize(1 + REOPENED));
+			}
+		}
+		
+		assertThat(helpDesk.getLatestActivity(Integer.MAX_VALUE).count(), 
+				equalTo(helpDesk.getTickets().mapToLong(ticket -> ticket.getHistory()
+						.filter(event -> event.getTicketID() == ticket.getID()).count()).sum()));
+	}
+}
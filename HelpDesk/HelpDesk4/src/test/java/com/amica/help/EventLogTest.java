@@ -0,0 +1,85 @@
+package com.amica.help;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.amica.help.Ticket.Priority;
+
+/**
+ * Unit test for the {@link EventLog} class.
+ * 
+ * @author Will Provost
+ */
+public class EventLogTest {
+
+	private EventLog log = new EventLog();
+	private Ticket ticket = createTicket();
+
+	private static Ticket createTicket() {
+		Clock.setTime(0);
+		return new Ticket(1, "ORIGINATOR", "DESCRIPTION", Priority.LOW);
+	}
+	
+	private Event add(long timestamp, String note) {
+		Clock.setTime(timestamp);
+		Event event = new Event(ticket, note);
+		log.add(event);
+		return event;
+	}
+	
+	private static List<String> notes(Stream<Event> events) {
+		return events.map(Event::getNote).collect(Collectors.toList());
+	}
+	
+	@Test
+	public void testGetLatest() {
+		add(100, "A");
+		add(200, "B");
+		add(200, "C");
+		add(300, "D");
+		assertThat(notes(log.getLatest(3)), contains("D", "C", "B"));
+		assertThat(notes(log.getLatest(10)), contains("D", "C", "B", "A"));
+		assertThat(notes(log.getLatest(0)), empty());
+	}
+	
+	@Test
+	public void testGetEvents() {
+		add(100, "A");
+		add(200, "B");
+		add(200, "C");
+		add(300, "D");
+		assertThat(notes(log.getEvents(200, 300)), contains("B", "C"));
+		assertThat(notes(log.getEvents(0, 1000)), contains("A", "B", "C", "D"));
+		assertThat(notes(log.getEvents(150, 160)), empty());
+		assertThat(notes(log.getEvents(300, 100)), empty());
+	}
+	
+	@Test
+	public void testAdd_OutOfOrder() {
+		add(100, "A");
+		add(300, "C");
+		add(200, "B");
+		assertThat(notes(log.getEvents(0, 1000)), contains("A", "B", "C"));
+	}
+	
+	@Test
+	public void testAdd_ManySegments() {
+		final int EVENTS = EventLog.SEGMENT_SIZE * 2 + 10;
+		for (int i = 0; i < EVENTS; ++i) {
+			add(i * 10, Integer.toString(i));
+		}
+		assertThat(log.size(), equalTo(EVENTS));
+		assertThat(notes(log.getLatest(2)), 
+				contains(Integer.toString(EVENTS - 1), Integer.toString(EVENTS - 2)));
+		assertThat(notes(log.getEvents(EventLog.SEGMENT_SIZE * 10 - 10, 
+				EventLog.SEGMENT_SIZE * 10 + 10)), contains(
+					Integer.toString(EventLog.SEGMENT_SIZE - 1),
+					Integer.toString(EventLog.SEGMENT_SIZE)));
+	}
+}
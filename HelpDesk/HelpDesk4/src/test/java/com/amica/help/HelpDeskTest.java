@@ -5,6 +5,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -127,6 +128,23 @@ public class HelpDeskTest {
 		assertThat(helpDesk.getTicketByID(0), nullValue());
 	}
 
+	@Test
+	public void testGetTicketByID_OutOfRange(){
+		createTicket1();
+		assertThat(helpDesk.getTicketByID(-1), nullValue());
+		assertThat(helpDesk.getTicketByID(TICKET2_ID), nullValue());
+	}
+
+	@Test
+	public void testGetTicketByID_Reopened(){
+		createTicket1();
+		helpDesk.getTicketByID(TICKET1_ID).resolve("Resolved.");
+		int reopenedID = helpDesk.reopenTicket(TICKET1_ID, "Reopened.", Priority.HIGH);
+		assertThat(reopenedID, equalTo(TICKET2_ID));
+		assertThat(helpDesk.getTicketByID(reopenedID), instanceOf(ReopenedTicket.class));
+		assertThat(helpDesk.getTicketByID(TICKET1_ID), not(instanceOf(ReopenedTicket.class)));
+	}
+
 	@Test
 	public void testNoAddedTechnicians(){
 		HelpDesk localHelpDesk = new HelpDesk();
@@ -166,6 +184,34 @@ public class HelpDeskTest {
 		assertThat(helpDesk.getTicketsByNotStatus(Ticket.Status.WAITING), hasIDs(TICKET2_ID, TICKET1_ID));
 	}
 
+	@Test
+	public void testGetTicketsByStatus_Transitions(){
+		createTicket1();
+		createTicket2();
+		helpDesk.getTicketByID(TICKET1_ID).suspend("Waiting.");
+		assertThat(helpDesk.getTicketsByStatus(Ticket.Status.WAITING), hasIDs(TICKET1_ID));
+		assertThat(helpDesk.getTicketsByStatus(Ticket.Status.ASSIGNED), hasIDs(TICKET2_ID));
+		helpDesk.getTicketByID(TICKET1_ID).resume("Resumed.");
+		assertThat(helpDesk.getTicketsByStatus(Ticket.Status.WAITING), hasIDs());
+		assertThat(helpDesk.getTicketsByStatus(Ticket.Status.ASSIGNED), hasIDs(TICKET2_ID, TICKET1_ID));
+	}
+
+	@Test
+	public void testGetTicketsByNotStatus_Merged(){
+		createTicket1();
+		createTicket2();
+		int ticket3ID = helpDesk.createTicket(TICKET1_ORIGINATOR, TICKET1_DESCRIPTION, Priority.URGENT);
+		helpDesk.getTicketByID(TICKET1_ID).suspend("Waiting.");
+		helpDesk.getTicketByID(ticket3ID).resolve("Resolved.");
+		helpDesk.getTicketByID(TICKET1_ID).resume("Resumed.");
+		helpDesk.getTicketByID(TICKET1_ID).resolve("Resolved.");
+		int ticket4ID = helpDesk.reopenTicket(TICKET1_ID, "Reopened.", Priority.MEDIUM);
+		assertThat(helpDesk.getTicketsByNotStatus(Ticket.Status.ASSIGNED), hasIDs(ticket3ID, TICKET1_ID));
+		assertThat(helpDesk.getTicketsByNotStatus(Ticket.Status.WAITING), 
+				hasIDs(ticket3ID, TICKET2_ID, ticket4ID, TICKET1_ID));
+		assertThat(helpDesk.getTicketsByStatus(Ticket.Status.ASSIGNED), hasIDs(TICKET2_ID, ticket4ID));
+	}
+
 	@Test
 	public void testGetTicketsWithAnyTag(){
 		createTicket1();
@@ -177,6 +223,32 @@ public class HelpDeskTest {
 		assertThat(helpDesk.getTicketsWithAnyTag(TAG3), hasIDs(TICKET2_ID, TICKET1_ID));
 	}
 
+	@Test
+	public void testGetTicketsWithAllTags(){
+		createTicket1();
+		helpDesk.addTags(TICKET1_ID, TAG3, TAG1);
+		createTicket2();
+		helpDesk.addTags(TICKET2_ID, TAG2, TAG3);
+		assertThat(helpDesk.getTicketsWithAllTags(TAG1, TAG3), hasIDs(TICKET1_ID));
+		assertThat(helpDesk.getTicketsWithAllTags(TAG3), hasIDs(TICKET2_ID, TICKET1_ID));
+		assertThat(helpDesk.getTicketsWithAllTags(TAG1, TAG2), hasIDs());
+		assertThat(helpDesk.getTicketsWithAnyTag("TAG4"), hasIDs());
+	}
+
+	@Test
+	public void testGetTicketsWithAnyTag_Reopened(){
+		createTicket1();
+		helpDesk.addTags(TICKET1_ID, TAG1);
+		helpDesk.getTicketByID(TICKET1_ID).resolve("Resolved.");
+		int reopenedID = helpDesk.reopenTicket(TICKET1_ID, "Reopened.", Priority.HIGH);
+		helpDesk.addTags(TICKET1_ID, TAG2);
+		helpDesk.addTags(reopenedID, TAG3);
+		assertThat(helpDesk.getTicketsWithAnyTag(TAG1), hasIDs(reopenedID, TICKET1_ID));
+		assertThat(helpDesk.getTicketsWithAnyTag(TAG2), hasIDs(reopenedID, TICKET1_ID));
+		assertThat(helpDesk.getTicketsWithAnyTag(TAG3), hasIDs(reopenedID));
+		assertThat(helpDesk.getTicketsWithAllTags(TAG1, TAG3), hasIDs(reopenedID));
+	}
+
 	@Test
 	public void testGetTicketsByTechnician(){
 		createTicket1();
@@ -195,6 +267,84 @@ public class HelpDeskTest {
 		assertThat(helpDesk.getTicketsByText("note"), hasIDs(TICKET2_ID, TICKET1_ID));
 	}
 
+	@Test
+	public void testGetTicketsByText_Reopened(){
+		createTicket1();
+		createTicket2();
+		helpDesk.getTicketByID(TICKET1_ID).resolve("Resolved the first time.");
+		int reopenedID = helpDesk.reopenTicket(TICKET1_ID, "Came back.", Priority.LOW);
+		helpDesk.getTicketByID(TICKET1_ID).addNote("Late note on prior ticket");
+		assertThat(helpDesk.getTicketsByText("first time"), hasIDs(TICKET1_ID, reopenedID));
+		assertThat(helpDesk.getTicketsByText(TICKET1_DESCRIPTION), hasIDs(TICKET1_ID, reopenedID));
+		assertThat(helpDesk.getTicketsByText("Late note"), hasIDs(TICKET1_ID, reopenedID));
+		assertThat(helpDesk.getTicketsByText("Came back"), hasIDs(reopenedID));
+	}
+
+	@Test
+	public void testGetTicketsByText_ShortAndMissing(){
+		createTicket1();
+		createTicket2();
+		assertThat(helpDesk.getTicketsByText("2_"), hasIDs(TICKET2_ID));
+		assertThat(helpDesk.getTicketsByText(""), hasIDs(TICKET2_ID, TICKET1_ID));
+		assertThat(helpDesk.getTicketsByText("no such text"), hasIDs());
+		assertThat(helpDesk.getTicketsByText("ticket1_description"), hasIDs());
+	}
+
+	@Test
+	public void testGetLatestActivity(){
+		createTicket1();
+		Clock.setTime(200);
+		createTicket2();
+		Clock.setTime(300);
+		helpDesk.getTicketByID(TICKET1_ID).resolve("Resolved.");
+		Clock.setTime(400);
+		int reopenedID = helpDesk.reopenTicket(TICKET1_ID, "Reopened.", Priority.HIGH);
+		assertThat(helpDesk.getLatestActivity(3).map(Event::getTicketID)
+				.collect(Collectors.toList()), contains(reopenedID, reopenedID, TICKET1_ID));
+		assertThat(helpDesk.getLatestActivity(100).count(), equalTo(7L));
+	}
+
+	@Test
+	public void testGetActivity(){
+		createTicket1();
+		Clock.setTime(200);
+		createTicket2();
+		Clock.setTime(300);
+		helpDesk.getTicketByID(TICKET1_ID).addNote("Note.");
+		assertThat(helpDesk.getActivity(200, 300).map(Event::getTicketID)
+				.collect(Collectors.toList()), contains(TICKET2_ID, TICKET2_ID));
+		assertThat(helpDesk.getActivity(100, 1000).count(), equalTo(5L));
+	}
+
+	@Test
+	public void testMinutesToResolve(){
+		createTicket1();
+		createTicket2();
+		int ticket3ID = helpDesk.createTicket(TICKET1_ORIGINATOR, TICKET1_DESCRIPTION, Priority.URGENT);
+		Clock.setTime(100 + 10 * 60000);
+		helpDesk.getTicketByID(TICKET1_ID).resolve("Resolved.");
+		Clock.setTime(100 + 20 * 60000);
+		helpDesk.getTicketByID(TICKET2_ID).resolve("Resolved.");
+		Clock.setTime(100 + 60 * 60000);
+		helpDesk.getTicketByID(ticket3ID).resolve("Resolved.");
+		
+		assertThat(helpDesk.getAverageMinutesToResolve(), equalTo(30));
+		assertThat(helpDesk.getAverageMinutesToResolvePerTechnician(), 
+				allOf(hasEntry(TECH1, 10.0), hasEntry(TECH2, 20.0), hasEntry(TECH3, 60.0)));
+		assertThat(helpDesk.getPercentileMinutesToResolve(50), equalTo(20));
+		assertThat(helpDesk.getPercentileMinutesToResolve(99), equalTo(60));
+		assertThat(helpDesk.getPercentileMinutesToResolvePerTechnician(95), 
+				allOf(hasEntry(TECH1, 10), hasEntry(TECH2, 20), hasEntry(TECH3, 60)));
+	}
+
+	@Test
+	public void testMinutesToResolve_NoneResolved(){
+		createTicket1();
+		Assertions.assertThrows(NoSuchElementException.class, 
+				() -> helpDesk.getAverageMinutesToResolve());
+		assertThat(helpDesk.getAverageMinutesToResolvePerTechnician().keySet(), empty());
+	}
+
 // Step5 uses a generic stream matcher:
 //	public static Matcher<Stream<? extends Ticket>> hasIDs(Integer... IDs) {
 //		return HasKeys.hasKeys(Ticket::getID, IDs);
@@ -0,0 +1,104 @@
+package com.amica.help;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amica.help.Ticket.Priority;
+
+/**
+ * Unit test for the {@link LoadBalancedAssignment} strategies,
+ * including a check that loads stay balanced across a larger staff.
+ * 
+ * @author Will Provost
+ */
+public class LoadBalancedAssignmentTest {
+
+	public static final int TECHNICIANS = 20;
+	public static final int TICKETS_PER_TECHNICIAN = 10;
+	
+	private Technician tech1 = new Technician("TECH1", "TECH1", 1);
+	private Technician tech2 = new Technician("TECH2", "TECH2", 2);
+	private Technician tech3 = new Technician("TECH3", "TECH3", 3);
+	private int nextID = 0;
+	
+	@BeforeEach
+	public void setUp() {
+		Clock.setTime(100);
+	}
+	
+	private void addTechnicians(AssignmentStrategy strategy) {
+		for (Technician technician : new Technician[] { tech3, tech1, tech2 }) {
+			technician.setLoadListener(strategy::loadChanged);
+			strategy.addTechnician(technician);
+		}
+	}
+	
+	private Ticket assign(AssignmentStrategy strategy, Priority priority) {
+		Ticket ticket = new Ticket(++nextID, "ORIGINATOR", "DESCRIPTION", priority);
+		ticket.assign(strategy.chooseTechnician(ticket));
+		return ticket;
+	}
+	
+	@Test
+	public void testNoTechnicians() {
+		assertThat(LoadBalancedAssignment.leastLoaded()
+				.chooseTechnician(null), nullValue());
+	}
+	
+	@Test
+	public void testLeastLoaded() {
+		AssignmentStrategy strategy = LoadBalancedAssignment.leastLoaded();
+		addTechnicians(strategy);
+		
+		Ticket ticket1 = assign(strategy, Priority.URGENT);
+		assertThat(ticket1.getTechnician(), equalTo(tech1));
+		assertThat(assign(strategy, Priority.LOW).getTechnician(), equalTo(tech2));
+		assertThat(assign(strategy, Priority.LOW).getTechnician(), equalTo(tech3));
+		assertThat(assign(strategy, Priority.LOW).getTechnician(), equalTo(tech1));
+		
+		assign(strategy, Priority.LOW);
+		ticket1.resolve("Resolved.");
+		assertThat(assign(strategy, Priority.LOW).getTechnician(), equalTo(tech1));
+	}
+	
+	@Test
+	public void testPriorityWeighted() {
+		AssignmentStrategy strategy = LoadBalancedAssignment.priorityWeighted();
+		addTechnicians(strategy);
+		
+		assertThat(assign(strategy, Priority.URGENT).getTechnician(), equalTo(tech1));
+		assertThat(assign(strategy, Priority.HIGH).getTechnician(), equalTo(tech2));
+		for (int i = 0; i < 4; ++i) {
+			assertThat(assign(strategy, Priority.LOW).getTechnician(), equalTo(tech3));
+		}
+		assertThat(assign(strategy, Priority.LOW).getTechnician(), equalTo(tech2));
+	}
+	
+	@Test
+	public void testBalanced() {
+		HelpDesk helpDesk = new HelpDesk();
+		for (int t = 0; t < TECHNICIANS; ++t) {
+			helpDesk.addTechnician(String.format("T%05d", t), "Technician " + t, t);
+		}
+		
+		final int TICKETS = TECHNICIANS * TICKETS_PER_TECHNICIAN;
+		for (int i = 0; i < TICKETS; ++i) {
+			helpDesk.createTicket("ORIGINATOR", "DESCRIPTION", 
+					Priority.values()[i % Priority.values().length]);
+			if (i % 3 == 0) {
+				helpDesk.getTicketByID(i + 1).resolve("Resolved.");
+			}
+		}
+		
+		int[] loads = helpDesk.getTechnicians().stream()
+				.mapToInt(Technician::getActiveTicketCount).toArray();
+		int lightest = Arrays.stream(loads).min().getAsInt();
+		int heaviest = Arrays.stream(loads).max().getAsInt();
+		assertThat(heaviest - lightest, lessThanOrEqualTo(1));
+	}
+}
@@ -0,0 +1,64 @@
+package com.amica.help;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the {@link QuantileSketch} class.
+ * 
+ * @author Will Provost
+ */
+public class QuantileSketchTest {
+
+	private QuantileSketch sketch = new QuantileSketch();
+	
+	@Test
+	public void testSmallValues() {
+		for (int value = 1; value <= 10; ++value) {
+			sketch.add(value);
+		}
+		assertThat(Math.round(sketch.getQuantile(0)), equalTo(1L));
+		assertThat(Math.round(sketch.getQuantile(0.5)), equalTo(5L));
+		assertThat(Math.round(sketch.getQuantile(1)), equalTo(10L));
+	}
+	
+	@Test
+	public void testZeros() {
+		sketch.add(0);
+		sketch.add(0);
+		sketch.add(100);
+		assertThat(sketch.getQuantile(0.5), equalTo(0.0));
+		assertThat(sketch.getQuantile(0.99), closeTo(100, 1));
+	}
+	
+	@Test
+	public void testAccuracy() {
+		final int VALUES = 100000;
+		Random random = new Random(1);
+		long[] values = new long[VALUES];
+		for (int i = 0; i < VALUES; ++i) {
+			values[i] = (long) (Math.exp(random.nextGaussian() * 2 + 4));
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+		
+		for (double quantile : new double[] { 0.5, 0.95, 0.99 }) {
+			long exact = values[(int) Math.ceil(quantile * VALUES) - 1];
+			assertThat(sketch.getQuantile(quantile), 
+					closeTo(exact, exact * QuantileSketch.DEFAULT_ACCURACY + 0.5));
+		}
+		assertThat(sketch.getCount(), equalTo((long) VALUES));
+	}
+	
+	@Test
+	public void testEmpty() {
+		Assertions.assertThrows(IllegalStateException.class, 
+				() -> sketch.getQuantile(0.5));
+	}
+}
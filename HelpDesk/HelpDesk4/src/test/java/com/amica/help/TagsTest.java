@@ -0,0 +1,78 @@
+package com.amica.help;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the {@link Tags} class.
+ * 
+ * @author Will Provost
+ */
+public class TagsTest {
+
+	private Tags tags = new Tags();
+	
+	@Test
+	public void testGetTag_IgnoresCase() {
+		Tag tag = tags.getTag("GitHub");
+		assertThat(tags.getTag("github"), sameInstance(tag));
+		assertThat(tags.getTag("GITHUB"), sameInstance(tag));
+		assertThat(tag.getValue(), equalTo("GitHub"));
+		assertThat(tag.hashCode(), equalTo(new Tag("GITHUB").hashCode()));
+	}
+	
+	@Test
+	public void testGetTag_Synonym() {
+		tags.addSynonym("RDP", "remoting");
+		assertThat(tags.getTag("rdp"), sameInstance(tags.getTag("Remoting")));
+		assertThat(tags.getSynonyms(), hasKey("rdp"));
+		assertThat(tags.getTags(), hasSize(1));
+	}
+	
+	@Test
+	public void testGetTags_Sorted() {
+		tags.getTag("VPN");
+		tags.getTag("cma");
+		assertThat(tags.getTags().stream().map(Tag::getValue)
+				.collect(Collectors.toList()), contains("cma", "VPN"));
+		
+		tags.getTag("laptop");
+		tags.getTag("Laptop");
+		assertThat(tags.getTags().stream().map(Tag::getValue)
+				.collect(Collectors.toList()), contains("cma", "laptop", "VPN"));
+	}
+	
+	@Test
+	public void testGetTag_Concurrent() throws Exception {
+		final int THREADS = 8;
+		final int VALUES = 1000;
+		Set<Tag> interned = Collections.synchronizedSet
+				(Collections.newSetFromMap(new IdentityHashMap<>()));
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; ++t) {
+			final boolean upper = t % 2 == 0;
+			threads.add(new Thread(() -> {
+				for (int v = 0; v < VALUES; ++v) {
+					String value = "tag" + v;
+					interned.add(tags.getTag(upper ? value.toUpperCase() : value));
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertThat(tags.getTags(), hasSize(VALUES));
+		assertThat(interned, hasSize(VALUES));
+	}
+}
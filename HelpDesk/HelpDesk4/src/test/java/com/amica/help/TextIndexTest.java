@@ -0,0 +1,61 @@
+package com.amica.help;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the {@link TextIndex} class.
+ * 
+ * @author Will Provost
+ */
+public class TextIndexTest {
+
+	private TextIndex index = new TextIndex();
+	
+	private static int[] IDs(int... IDs) {
+		return IDs;
+	}
+	
+	@BeforeEach
+	public void setUp() {
+		index.add(1, "Unable to log in.");
+		index.add(2, "Can't connect to remote desktop.");
+		index.add(2, "Checking the VPN.");
+		index.add(3, "Need GitHub access.");
+	}
+	
+	@Test
+	public void testGetCandidates() {
+		assertThat(index.getCandidates("log in"), equalTo(IDs(1)));
+		assertThat(index.getCandidates("to "), equalTo(IDs(1, 2)));
+		assertThat(index.getCandidates("VPN"), equalTo(IDs(2)));
+	}
+	
+	@Test
+	public void testGetCandidates_Superset() {
+		assertThat(index.getCandidates("remote VPN"), equalTo(IDs(2)));
+	}
+	
+	@Test
+	public void testGetCandidates_None() {
+		assertThat(index.getCandidates("github"), equalTo(IDs()));
+		assertThat(index.getCandidates("printer"), equalTo(IDs()));
+	}
+	
+	@Test
+	public void testGetCandidates_Sparse() {
+		index.add(1000000, "Unable to log in again.");
+		index.add(4, "Can't log in.");
+		index.add(4, "Still can't log in.");
+		assertThat(index.getCandidates("log in"), equalTo(IDs(1, 4, 1000000)));
+		assertThat(index.getCandidates("again"), equalTo(IDs(1000000)));
+	}
+	
+	@Test
+	public void testGetCandidates_TooShort() {
+		assertThat(index.getCandidates("in"), nullValue());
+	}
+}
@@ -184,6 +184,17 @@ public class TicketTest {
     assertHasEvent(1, null, "This is a test note");
   }
 
+  /**
+   * This method tests that notes don't change the status of a ticket
+   */
+  @Test
+  public void testAddNoteKeepsStatus(){
+    assignTicket();
+    ticket.suspend("This is a test for suspending tickets");
+    ticket.addNote("This is a test note");
+    assertThat(ticket.getStatus(), equalTo(Status.WAITING));
+  }
+
   /**
    * This method tests that Ticket's constructor throws an IllegalArgumentException when it
    * a null value is passed for originator, description, or priority